@@ -0,0 +1,112 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import ij.gui.OvalRoi;
+import ij.gui.PointRoi;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+import ij.gui.ShapeRoi;
+
+/**
+ * Create ROIs of different types and complexity for benchmarks.
+ */
+public final class BenchmarkRois {
+
+	/**
+	 * Names of all the ROI types supported by {@link #createRoi(String, int)}.
+	 */
+	public static final String[] ROI_TYPES = {
+			"rectangle", "oval", "polygon", "freehand", "traced", "composite", "point", "polyline"
+	};
+
+	private BenchmarkRois() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Create a ROI centered at the origin.
+	 * @param type one of {@link #ROI_TYPES}
+	 * @param nVertices the approximate number of vertices; for rectangles and ovals, this only affects the size
+	 * @return
+	 */
+	public static Roi createRoi(String type, int nVertices) {
+		return createRoi(type, nVertices, 0, 0);
+	}
+
+	/**
+	 * Create a ROI with a specified center.
+	 * @param type one of {@link #ROI_TYPES}
+	 * @param nVertices the approximate number of vertices; for rectangles and ovals, this only affects the size
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public static Roi createRoi(String type, int nVertices, double cx, double cy) {
+		// Radius chosen so that traced ROIs have roughly the requested number of vertices
+		double radius = Math.max(nVertices / 8.0, 4.0);
+		switch (type) {
+		case "rectangle":
+			return new Roi(cx - radius, cy - radius, radius * 2, radius * 1.5);
+		case "oval":
+			return new OvalRoi(cx - radius, cy - radius, radius * 2, radius * 2);
+		case "polygon":
+			return createCircle(nVertices, radius, cx, cy, Roi.POLYGON);
+		case "freehand":
+			return createCircle(nVertices, radius, cx, cy, Roi.FREEROI);
+		case "traced":
+			return createTracedCircle(radius, (int)cx, (int)cy);
+		case "composite":
+			ShapeRoi outer = new ShapeRoi(createCircle(nVertices, radius, cx, cy, Roi.POLYGON));
+			ShapeRoi inner = new ShapeRoi(createCircle(nVertices, radius / 2, cx, cy, Roi.POLYGON));
+			return outer.not(inner);
+		case "point":
+			PolygonRoi circle = createCircle(nVertices, radius, cx, cy, Roi.POLYGON);
+			return new PointRoi(circle.getFloatPolygon());
+		case "polyline":
+			return createCircle(nVertices, radius, cx, cy, Roi.POLYLINE);
+		default:
+			throw new IllegalArgumentException("Unknown ROI type " + type);
+		}
+	}
+
+	private static PolygonRoi createCircle(int n, double radius, double cx, double cy, int type) {
+		n = Math.max(n, 3);
+		float[] x = new float[n];
+		float[] y = new float[n];
+		for (int i = 0; i < n; i++) {
+			double theta = 2 * Math.PI * i / n;
+			x[i] = (float)(cx + radius * Math.cos(theta));
+			y[i] = (float)(cy + radius * Math.sin(theta));
+		}
+		return new PolygonRoi(x, y, type);
+	}
+
+	/**
+	 * Create a circle with an integer, axis-aligned outline (as the wand tool would produce).
+	 */
+	private static Roi createTracedCircle(double radius, int cx, int cy) {
+		int r = (int)Math.ceil(radius);
+		int nRows = 2 * r;
+		int[] x = new int[nRows * 4];
+		int[] y = new int[nRows * 4];
+		int n = 0;
+		// Right side, top to bottom
+		for (int row = 0; row < nRows; row++) {
+			int half = halfWidth(row, r);
+			x[n] = cx + half; y[n++] = cy - r + row;
+			x[n] = cx + half; y[n++] = cy - r + row + 1;
+		}
+		// Left side, bottom to top
+		for (int row = nRows - 1; row >= 0; row--) {
+			int half = halfWidth(row, r);
+			x[n] = cx - half; y[n++] = cy - r + row + 1;
+			x[n] = cx - half; y[n++] = cy - r + row;
+		}
+		return new PolygonRoi(x, y, n, Roi.TRACED_ROI);
+	}
+
+	private static int halfWidth(int row, int r) {
+		double dy = row + 0.5 - r;
+		return Math.max(1, (int)Math.round(Math.sqrt(Math.max(r * r - dy * dy, 0))));
+	}
+
+}
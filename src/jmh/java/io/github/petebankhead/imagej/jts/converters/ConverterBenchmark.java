@@ -0,0 +1,80 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+
+/**
+ * Measure the cost of converting each type of ROI to a geometry and back again.
+ * <p>
+ * Results are reported as microseconds per ROI.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+	@Param({"rectangle", "oval", "polygon", "traced", "composite", "point", "polyline"})
+	public String roiType;
+
+	@Param({"16", "256", "4096"})
+	public int nVertices;
+
+	private RoiToGeometryConverter roiConverter;
+	private GeometryToRoiConverter geometryConverter;
+
+	private Roi roi;
+	private Geometry geometry;
+	private Feature feature;
+
+	@Setup
+	public void setup() {
+		roiConverter = new RoiToGeometryConverter();
+		geometryConverter = new GeometryToRoiConverter();
+		roi = BenchmarkRois.createRoi(roiType, nVertices);
+		roi.setName("Benchmark");
+		geometry = roiConverter.roiToGeometry(roi);
+		feature = roiConverter.roiToFeature(roi);
+	}
+
+	@Benchmark
+	public Geometry roiToGeometry() {
+		return roiConverter.roiToGeometry(roi);
+	}
+
+	@Benchmark
+	public Roi geometryToRoi() {
+		return geometryConverter.geometryToRoi(geometry);
+	}
+
+	/**
+	 * Convert a ROI to a feature (including its properties) and back, as for a GeoJSON export and import.
+	 */
+	@Benchmark
+	public Roi roundTrip() {
+		return geometryConverter.featureToRoi(roiConverter.roiToFeature(roi));
+	}
+
+	@Benchmark
+	public Roi featureToRoi() {
+		return geometryConverter.featureToRoi(feature);
+	}
+
+}
@@ -0,0 +1,66 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ij.gui.Roi;
+import ij.gui.ShapeRoi;
+
+/**
+ * Compare converting area ROIs to geometries using {@link RoiToGeometryConverter#roiToGeometry(Roi)}
+ * (which creates polygons directly where possible) and the general route via {@link ShapeRoi}.
+ * <p>
+ * Results are reported as microseconds per ROI.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoiToGeometryBenchmark {
+
+	@Param({"polygon", "freehand", "traced", "oval", "composite"})
+	public String roiType;
+
+	@Param({"16", "256", "4096"})
+	public int nVertices;
+
+	private RoiToGeometryConverter converter;
+	private Roi roi;
+
+	@Setup
+	public void setup() {
+		converter = new RoiToGeometryConverter();
+		roi = BenchmarkRois.createRoi(roiType, nVertices);
+	}
+
+	/**
+	 * Default conversion, using the fast path for polygons.
+	 */
+	@Benchmark
+	public Geometry roiToGeometry() {
+		return converter.roiToGeometry(roi);
+	}
+
+	/**
+	 * Conversion via ShapeRoi, Area, union and polygonizing.
+	 */
+	@Benchmark
+	public Geometry shapeRoiToGeometry() {
+		return converter.shapeRoiToGeometry(roi);
+	}
+
+}
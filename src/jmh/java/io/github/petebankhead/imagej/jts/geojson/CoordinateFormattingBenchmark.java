@@ -0,0 +1,108 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare the cost of formatting vertices for GeoJSON using {@link NumberFormat} 
+ * (the previous approach) and {@link DoubleFormatter}.
+ * <p>
+ * Results are reported as vertices per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateFormattingBenchmark {
+
+	private static final int N_VERTICES = 10_000;
+
+	private double[] x;
+	private double[] y;
+
+	private NumberFormat nf;
+	private DoubleFormatter formatter;
+	private StringBuilder sb;
+
+	@Setup
+	public void setup() {
+		Random rand = new Random(42L);
+		x = new double[N_VERTICES];
+		y = new double[N_VERTICES];
+		for (int i = 0; i < N_VERTICES; i++) {
+			x[i] = rand.nextDouble() * 100_000;
+			y[i] = rand.nextDouble() * 100_000;
+		}
+		nf = NumberFormat.getInstance(Locale.US);
+		nf.setGroupingUsed(false);
+		nf.setMaximumFractionDigits(3);
+		formatter = DoubleFormatter.createWithDecimalPlaces(3);
+		sb = new StringBuilder(N_VERTICES * 24);
+	}
+
+	/**
+	 * Format each vertex as a new String with NumberFormat.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(N_VERTICES)
+	public void numberFormat(Blackhole bh) {
+		for (int i = 0; i < N_VERTICES; i++) {
+			bh.consume("[" + nf.format(x[i]) + ", " + nf.format(y[i]) + "]");
+		}
+	}
+
+	/**
+	 * Append all vertices to a reusable StringBuilder, creating a single String at the end.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(N_VERTICES)
+	public void doubleFormatter(Blackhole bh) {
+		sb.setLength(0);
+		sb.append('[');
+		for (int i = 0; i < N_VERTICES; i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('[');
+			formatter.append(sb, x[i]);
+			sb.append(',');
+			formatter.append(sb, y[i]);
+			sb.append(']');
+		}
+		sb.append(']');
+		bh.consume(sb.toString());
+	}
+
+	/**
+	 * Shortest round-trip representation, for comparison.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(N_VERTICES)
+	public void shortestRoundTrip(Blackhole bh) {
+		DoubleFormatter shortest = DoubleFormatter.createShortestRoundTrip();
+		sb.setLength(0);
+		for (int i = 0; i < N_VERTICES; i++) {
+			shortest.append(sb, x[i]);
+			sb.append(',');
+			shortest.append(sb, y[i]);
+		}
+		bh.consume(sb.length());
+	}
+
+}
@@ -0,0 +1,149 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.BenchmarkRois;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+/**
+ * Measure GeoJSON read and write throughput for synthetic FeatureCollections.
+ * <p>
+ * Features are polygons of different sizes, with ImageJ properties.
+ * To avoid needing to hold a million features in memory, a smaller pool of distinct features
+ * is written repeatedly.
+ * <p>
+ * Each invocation reads or writes a complete collection, so results are reported as milliseconds
+ * per collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GeoJsonBenchmark {
+
+	private static final int POOL_SIZE = 1024;
+
+	@Param({"10000", "100000", "1000000"})
+	public int nFeatures;
+
+	private List<Feature> pool;
+
+	private Path geoJsonPath;
+	private Path cachePath;
+
+	@Setup
+	public void setup() throws IOException {
+		Random rand = new Random(42L);
+		RoiToGeometryConverter converter = new RoiToGeometryConverter();
+		pool = new ArrayList<>();
+		for (int i = 0; i < POOL_SIZE; i++) {
+			int nVertices = 8 + rand.nextInt(56);
+			Roi roi = BenchmarkRois.createRoi("polygon", nVertices, rand.nextDouble() * 10_000, rand.nextDouble() * 10_000);
+			roi.setName("Feature " + i);
+			pool.add(converter.roiToFeature(roi));
+		}
+
+		geoJsonPath = Files.createTempFile("benchmark", ".geojson");
+		cachePath = BinaryFeatureFormat.getCachePath(geoJsonPath);
+		try (BinaryFeatureWriter cache = BinaryFeatureWriter.create(cachePath, geoJsonPath);
+				GeoJsonWriter writer = GeoJsonWriter.create(Files.newBufferedWriter(geoJsonPath))) {
+			writer.beginFeatureCollection();
+			for (int i = 0; i < nFeatures; i++) {
+				Feature feature = pool.get(i % POOL_SIZE);
+				writer.writeFeature(feature);
+				cache.writeFeature(feature);
+			}
+			writer.endFeatureCollection();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(geoJsonPath);
+		Files.deleteIfExists(cachePath);
+	}
+
+	/**
+	 * Write compact GeoJSON, discarding the output.
+	 */
+	@Benchmark
+	public long writeGeoJson() throws IOException {
+		CountingWriter counter = new CountingWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(counter)) {
+			writer.beginFeatureCollection();
+			for (int i = 0; i < nFeatures; i++)
+				writer.writeFeature(pool.get(i % POOL_SIZE));
+			writer.endFeatureCollection();
+		}
+		return counter.count;
+	}
+
+	/**
+	 * Read GeoJSON from a file (which is likely to be in the OS cache).
+	 */
+	@Benchmark
+	public void readGeoJson(Blackhole bh) throws IOException {
+		try (Reader reader = Files.newBufferedReader(geoJsonPath)) {
+			GeoJsonReader.readFeatures(reader, bh::consume);
+		}
+	}
+
+	/**
+	 * Read the same features from a binary cache.
+	 */
+	@Benchmark
+	public void readBinaryCache(Blackhole bh) throws IOException {
+		try (BinaryFeatureReader reader = BinaryFeatureReader.open(cachePath)) {
+			reader.forEachRemaining(bh::consume);
+		}
+	}
+
+
+	private static class CountingWriter extends Writer {
+
+		private long count = 0;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+
+	}
+
+}
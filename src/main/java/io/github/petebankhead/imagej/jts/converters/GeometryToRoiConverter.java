@@ -5,12 +5,17 @@ import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.locationtech.jts.awt.ShapeWriter;
-import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.LineString;
@@ -18,6 +23,7 @@ import org.locationtech.jts.geom.Lineal;
 import org.locationtech.jts.geom.MultiLineString;
 import org.locationtech.jts.geom.MultiPoint;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.geom.Polygonal;
 import org.locationtech.jts.geom.Puntal;
 
@@ -28,18 +34,50 @@ import ij.gui.Roi;
 import ij.gui.ShapeRoi;
 import ij.process.FloatPolygon;
 import io.github.petebankhead.imagej.jts.geojson.Feature;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
 
 
+/**
+ * Convert JTS Geometries and GeoJSON Features to ImageJ ROIs.
+ * <p>
+ * Converters are stateless, and may be used from multiple threads.
+ */
 public class GeometryToRoiConverter {
 	
+	private static final GeometryToRoiConverter DEFAULT_CONVERTER = new GeometryToRoiConverter();
+	
+	/**
+	 * Keys of the feature properties used by {@link #featureToRoi(Feature)}.
+	 * Readers can use these to skip other properties.
+	 * @see io.github.petebankhead.imagej.jts.geojson.GeoJsonReader#keepProperties(Collection)
+	 */
+	public static final List<String> ROI_PROPERTY_KEYS = Collections.unmodifiableList(Arrays.asList("imagej", "plane"));
+	
 	
 	public static Roi convertToRoi(Geometry geometry) {
-		return new GeometryToRoiConverter().geometryToRoi(geometry);
+		return DEFAULT_CONVERTER.geometryToRoi(geometry);
 	}
 	
 	
 	public static Roi convertToRoi(Feature feature) {
-		return new GeometryToRoiConverter().featureToRoi(feature);
+		return DEFAULT_CONVERTER.featureToRoi(feature);
+	}
+	
+	
+	/**
+	 * Convert features to ROIs in parallel.
+	 * @param features the features to convert
+	 * @param pool the pool to use for conversion; if null, the common pool is used
+	 * @param monitor optional progress monitor; if this requests cancellation, a {@link CancellationException} is thrown
+	 * @return a list of ROIs, in the same order as the features
+	 * @throws CancellationException
+	 */
+	public List<Roi> featuresToRois(Collection<? extends Feature> features, ForkJoinPool pool, ProgressMonitor monitor) throws CancellationException {
+		return ParallelMapper.create(this::featureToRoi)
+				.pool(pool)
+				.progress(monitor)
+				.apply(features);
 	}
 	
 	
@@ -121,22 +159,32 @@ public class GeometryToRoiConverter {
 			return new PointRoi(point.getX(), point.getY());
 		} else if (geometry instanceof MultiPoint) {
 			MultiPoint multipoint = (MultiPoint)geometry;
-			Coordinate[] coordinates = multipoint.getCoordinates();
-			return new PointRoi(coordinatesToFloatPolygon(coordinates));
+			int n = multipoint.getNumGeometries();
+			float[] x = new float[n];
+			float[] y = new float[n];
+			for (int i = 0; i < n; i++) {
+				Point point = (Point)multipoint.getGeometryN(i);
+				x[i] = (float)point.getX();
+				y[i] = (float)point.getY();
+			}
+			return new PointRoi(new FloatPolygon(x, y, n));
 		} else if (geometry instanceof LineString) {
-			LineString multipoint = (LineString)geometry;
-			Coordinate[] coordinates = multipoint.getCoordinates();
-			if (coordinates.length == 2)
+			CoordinateSequence seq = ((LineString)geometry).getCoordinateSequence();
+			if (seq.size() == 2)
 				return new Line(
-						coordinates[0].x,
-						coordinates[0].y,
-						coordinates[1].x,
-						coordinates[1].y
+						seq.getX(0),
+						seq.getY(0),
+						seq.getX(1),
+						seq.getY(1)
 						);
-			return new PolygonRoi(coordinatesToFloatPolygon(coordinates), Roi.POLYLINE);
+			return new PolygonRoi(sequenceToFloatPolygon(seq, seq.size()), Roi.POLYLINE);
 		} else if (geometry instanceof MultiLineString) {
 			throw new UnsupportedOperationException("ImageJ does not support MultiLineStrings!");
 		} else if (geometry instanceof Polygonal) {
+			Roi roi = polygonToRoiOrNull(geometry);
+			if (roi != null)
+				return roi;
+			// Holes and multiple parts require a ShapeRoi
 			Shape shape = new ShapeWriter().toShape(geometry);
 			Area area = shape instanceof Area ? (Area)shape : new Area(shape);
 			if (area.isRectangular()) {
@@ -151,14 +199,89 @@ public class GeometryToRoiConverter {
 	}
 	
 	
-	private static FloatPolygon coordinatesToFloatPolygon(Coordinate[] coords) {
-		float[] x = new float[coords.length];
-		float[] y = new float[coords.length];
-		for (int i = 0; i < coords.length; i++) {
-			x[i] = (float)coords[i].getX();
-			y[i] = (float)coords[i].getY();
+	/**
+	 * Create a ROI directly from the coordinates of a polygon, if it has a single part and no holes.
+	 * This avoids the high cost of creating an {@link Area} for polygons with many vertices.
+	 * @param geometry
+	 * @return a rectangle or polygon ROI, or null if the geometry cannot be converted directly
+	 */
+	private static Roi polygonToRoiOrNull(Geometry geometry) {
+		if (geometry.getNumGeometries() != 1)
+			return null;
+		Polygon polygon = (Polygon)geometry.getGeometryN(0);
+		if (polygon.isEmpty() || polygon.getNumInteriorRing() > 0)
+			return null;
+		
+		CoordinateSequence seq = polygon.getExteriorRing().getCoordinateSequence();
+		if (isRectangle(seq)) {
+			Envelope env = polygon.getEnvelopeInternal();
+			return new Roi(env.getMinX(), env.getMinY(), env.getWidth(), env.getHeight());
+		}
+		
+		// Don't duplicate the closing point
+		int n = seq.size() - 1;
+		if (n < 3)
+			return null;
+		
+		// Use a traced ROI if we have integer coordinates and horizontal/vertical lines only
+		if (isTraced(seq, n)) {
+			int[] x = new int[n];
+			int[] y = new int[n];
+			for (int i = 0; i < n; i++) {
+				x[i] = (int)seq.getX(i);
+				y[i] = (int)seq.getY(i);
+			}
+			return new PolygonRoi(x, y, n, Roi.TRACED_ROI);
+		}
+		
+		return new PolygonRoi(sequenceToFloatPolygon(seq, n), Roi.POLYGON);
+	}
+	
+	/**
+	 * Check if a closed ring is an axis-aligned rectangle, defined by 4 vertices.
+	 */
+	private static boolean isRectangle(CoordinateSequence seq) {
+		if (seq.size() != 5)
+			return false;
+		for (int i = 0; i < 4; i++) {
+			boolean sameX = seq.getX(i) == seq.getX(i+1);
+			boolean sameY = seq.getY(i) == seq.getY(i+1);
+			// Each edge must be either horizontal or vertical (and not zero length)
+			if (sameX == sameY)
+				return false;
+		}
+		// Consecutive edges must alternate between horizontal and vertical
+		return (seq.getX(0) == seq.getX(1)) != (seq.getX(1) == seq.getX(2)) &&
+				(seq.getX(1) == seq.getX(2)) != (seq.getX(2) == seq.getX(3));
+	}
+	
+	/**
+	 * Check if the first n vertices of a ring have integer coordinates, joined by horizontal or vertical lines.
+	 */
+	private static boolean isTraced(CoordinateSequence seq, int n) {
+		for (int i = 0; i < n; i++) {
+			double x = seq.getX(i);
+			double y = seq.getY(i);
+			if (x != Math.rint(x) || y != Math.rint(y))
+				return false;
+			if (x != seq.getX(i+1) && y != seq.getY(i+1))
+				return false;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Create a FloatPolygon from the first n vertices of a coordinate sequence.
+	 */
+	private static FloatPolygon sequenceToFloatPolygon(CoordinateSequence seq, int n) {
+		float[] x = new float[n];
+		float[] y = new float[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = (float)seq.getX(i);
+			y[i] = (float)seq.getY(i);
 		}
-		return new FloatPolygon(x, y);
+		return new FloatPolygon(x, y, n);
 	}
 	
 	
@@ -0,0 +1,232 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.locationtech.jts.geom.Geometry;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.BinaryFeatureWriter;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonWriter;
+import io.github.petebankhead.imagej.jts.ops.GeometrySimplifier;
+
+/**
+ * Cache of serialized features for ROIs, so that ROIs that haven't changed don't need to be
+ * converted and serialized again each time they are exported.
+ * <p>
+ * ROIs are identified by object identity, and checked for changes using a {@link RoiFingerprint}.
+ * Only weak references to ROIs are kept, so a ROI that is no longer used is removed from the cache.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RoiFeatureCache {
+
+	private final RoiGeometryCache geometryCache;
+	private UnaryOperator<Geometry> transform;
+
+	private final Map<RoiReference, Entry> map = new HashMap<>();
+	private final ReferenceQueue<Roi> queue = new ReferenceQueue<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Create a cache that gets geometries from the default {@link RoiGeometryCache}.
+	 */
+	public RoiFeatureCache() {
+		this(RoiGeometryCache.getDefault());
+	}
+
+	/**
+	 * Create a cache that gets geometries from a specific {@link RoiGeometryCache}.
+	 * @param geometryCache
+	 */
+	public RoiFeatureCache(RoiGeometryCache geometryCache) {
+		Objects.requireNonNull(geometryCache, "Geometry cache must not be null!");
+		this.geometryCache = geometryCache;
+	}
+
+	/**
+	 * Set a transform to apply to geometries before they are serialized, such as a {@link GeometrySimplifier}.
+	 * If the transform is not equal to the previous transform, all cached features are removed.
+	 * This should not be called while features are being requested from other threads.
+	 * @param transform the transform, or null if geometries should be serialized unchanged
+	 */
+	public void setGeometryTransform(UnaryOperator<Geometry> transform) {
+		synchronized (map) {
+			if (!Objects.equals(this.transform, transform))
+				clear();
+			this.transform = transform;
+		}
+	}
+
+	/**
+	 * Get the transform applied to geometries before they are serialized.
+	 * @return the transform, or null if geometries are serialized unchanged
+	 */
+	public UnaryOperator<Geometry> getGeometryTransform() {
+		synchronized (map) {
+			return transform;
+		}
+	}
+
+	/**
+	 * Get the serialized feature for a ROI, converting it only if it is not already cached or has changed.
+	 * @param roi
+	 * @param includeBinary if true, ensure that {@link SerializedFeature#getBinary()} is available
+	 * @return
+	 */
+	public SerializedFeature getSerializedFeature(Roi roi, boolean includeBinary) {
+		long fingerprint = RoiFingerprint.compute(roi);
+		RoiReference lookup = new RoiReference(roi, null);
+		Entry entry;
+		synchronized (map) {
+			expungeStaleEntries();
+			entry = map.get(lookup);
+		}
+		if (entry != null && entry.fingerprint == fingerprint &&
+				(!includeBinary || entry.feature.binary != null)) {
+			hits.increment();
+			return entry.feature;
+		}
+
+		misses.increment();
+		Feature feature = geometryCache.getFeature(roi);
+		int sourceVertexCount = feature.getGeometry().getNumPoints();
+		UnaryOperator<Geometry> transform = getGeometryTransform();
+		if (transform != null)
+			feature = Feature.create(transform.apply(feature.getGeometry()), feature.getProperties());
+		SerializedFeature serialized = new SerializedFeature(
+				GeoJsonWriter.toJson(feature),
+				includeBinary ? BinaryFeatureWriter.toBytes(feature) : null,
+				sourceVertexCount,
+				feature.getGeometry().getNumPoints());
+		synchronized (map) {
+			map.put(new RoiReference(roi, queue), new Entry(fingerprint, serialized));
+		}
+		return serialized;
+	}
+
+	/**
+	 * Get the number of requests that were served from the cache since the counts were last reset.
+	 * @return
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of requests that required conversion since the counts were last reset.
+	 * @return
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Reset the hit and miss counts.
+	 */
+	public void resetCounts() {
+		hits.reset();
+		misses.reset();
+	}
+
+	/**
+	 * Remove all cached features.
+	 */
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+			while (queue.poll() != null)
+				continue;
+		}
+	}
+
+	/**
+	 * Get the number of ROIs in the cache.
+	 * @return
+	 */
+	public int size() {
+		synchronized (map) {
+			expungeStaleEntries();
+			return map.size();
+		}
+	}
+
+	private void expungeStaleEntries() {
+		Object ref;
+		while ((ref = queue.poll()) != null)
+			map.remove(ref);
+	}
+
+
+	/**
+	 * A feature that has been serialized in formats that can be written directly by
+	 * {@link GeoJsonWriter#writeRawFeature(String)} and {@link BinaryFeatureWriter#writeRawFeature(byte[])}.
+	 */
+	public static class SerializedFeature {
+
+		private final String json;
+		private final byte[] binary;
+		private final int sourceVertexCount;
+		private final int vertexCount;
+
+		private SerializedFeature(String json, byte[] binary, int sourceVertexCount, int vertexCount) {
+			this.json = json;
+			this.binary = binary;
+			this.sourceVertexCount = sourceVertexCount;
+			this.vertexCount = vertexCount;
+		}
+
+		/**
+		 * Get the feature as compact GeoJSON.
+		 * @return
+		 */
+		public String getJson() {
+			return json;
+		}
+
+		/**
+		 * Get the feature as a binary cache record, if available.
+		 * @return the binary record, or null if it was not requested
+		 */
+		public byte[] getBinary() {
+			return binary;
+		}
+
+		/**
+		 * Get the number of vertices in the geometry of the ROI, before any transform was applied.
+		 * @return
+		 */
+		public int getSourceVertexCount() {
+			return sourceVertexCount;
+		}
+
+		/**
+		 * Get the number of vertices in the serialized geometry.
+		 * @return
+		 */
+		public int getVertexCount() {
+			return vertexCount;
+		}
+
+	}
+
+	private static class Entry {
+
+		private final long fingerprint;
+		private final SerializedFeature feature;
+
+		private Entry(long fingerprint, SerializedFeature feature) {
+			this.fingerprint = fingerprint;
+			this.feature = feature;
+		}
+
+	}
+
+}
@@ -0,0 +1,95 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+
+import ij.gui.Roi;
+import ij.process.FloatPolygon;
+
+/**
+ * Cheap 64-bit content hash for ROIs, used to detect when a ROI has changed since it was last converted.
+ * <p>
+ * The hash covers everything that affects the output of {@link RoiToGeometryConverter#roiToFeature(Roi)}:
+ * the type, bounds, vertices and the attributes stored as properties.
+ * Equal ROIs always have the same fingerprint; different ROIs <i>almost</i> always have different fingerprints.
+ */
+public final class RoiFingerprint {
+
+	private static final long SEED = 0xcbf29ce484222325L;
+	private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private RoiFingerprint() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Compute the fingerprint for a ROI, including its shape and all its attributes.
+	 * @param roi
+	 * @return
+	 */
+	public static long compute(Roi roi) {
+		long h = mixShape(SEED, roi);
+
+		String name = roi.getName();
+		h = mix(h, name == null ? -1 : name.hashCode());
+		h = mix(h, roi.getPosition());
+		h = mix(h, roi.getCPosition());
+		h = mix(h, roi.getZPosition());
+		h = mix(h, roi.getTPosition());
+		h = mix(h, roi.getGroup());
+		// Group names are global, but are written as a classification
+		String groupName = Roi.getGroupName(roi.getGroup());
+		h = mix(h, groupName == null ? -1 : groupName.hashCode());
+		h = mix(h, roi.getStrokeWidth());
+		h = mix(h, colorToLong(roi.getStrokeColor()));
+		h = mix(h, colorToLong(roi.getFillColor()));
+		return h;
+	}
+
+	/**
+	 * Compute the fingerprint for the shape of a ROI only, ignoring attributes such as the name and color.
+	 * This is sufficient to detect changes that affect {@link RoiToGeometryConverter#roiToGeometry(Roi)}.
+	 * @param roi
+	 * @return
+	 */
+	public static long computeShape(Roi roi) {
+		return mixShape(SEED, roi);
+	}
+
+	private static long mixShape(long h, Roi roi) {
+		int type = roi.getType();
+		h = mix(h, type);
+
+		Rectangle2D bounds = roi.getFloatBounds();
+		h = mix(h, bounds.getX());
+		h = mix(h, bounds.getY());
+		h = mix(h, bounds.getWidth());
+		h = mix(h, bounds.getHeight());
+
+		// Rectangles and ovals are fully defined by their bounds
+		if (type != Roi.RECTANGLE && type != Roi.OVAL) {
+			FloatPolygon polygon = roi.getFloatPolygon();
+			h = mix(h, polygon.npoints);
+			for (int i = 0; i < polygon.npoints; i++) {
+				h = mix(h, Float.floatToIntBits(polygon.xpoints[i]));
+				h = mix(h, Float.floatToIntBits(polygon.ypoints[i]));
+			}
+		}
+		return h;
+	}
+
+	private static long colorToLong(Color color) {
+		// Distinguish between a missing color and transparent black
+		return color == null ? -1L : color.getRGB() & 0xFFFFFFFFL;
+	}
+
+	private static long mix(long h, double value) {
+		return mix(h, Double.doubleToLongBits(value));
+	}
+
+	private static long mix(long h, long value) {
+		h = (h ^ value) * MULTIPLIER;
+		return h ^ (h >>> 29);
+	}
+
+}
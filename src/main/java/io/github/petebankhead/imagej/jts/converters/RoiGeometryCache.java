@@ -0,0 +1,262 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.locationtech.jts.geom.Geometry;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Cache of geometries converted from ROIs, so that workflows applying several operations to the same
+ * ROIs only need to convert each ROI once.
+ * <p>
+ * ROIs are identified by object identity, and checked for edits using {@link RoiFingerprint#computeShape(Roi)}.
+ * Only weak references to ROIs are kept. The cache is bounded by the total number of vertices in the
+ * cached geometries, and the least recently used geometries are removed first.
+ * <p>
+ * Cached geometries are shared, and so must not be modified.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RoiGeometryCache {
+
+	/**
+	 * Default maximum number of vertices in all cached geometries.
+	 * With packed coordinates this corresponds to around 80 MB.
+	 */
+	public static final long DEFAULT_MAX_VERTICES = 5_000_000L;
+
+	private static final RoiGeometryCache DEFAULT_CACHE = new RoiGeometryCache(new RoiToGeometryConverter(), DEFAULT_MAX_VERTICES);
+
+	private final RoiToGeometryConverter converter;
+	private final long maxVertices;
+
+	// Access order, so that iteration starts with the least recently used entry
+	private final LinkedHashMap<RoiReference, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+	private final ReferenceQueue<Roi> queue = new ReferenceQueue<>();
+	private long nVertices = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Create a cache.
+	 * @param converter converter used for ROIs that are not in the cache
+	 * @param maxVertices maximum number of vertices in all cached geometries
+	 */
+	public RoiGeometryCache(RoiToGeometryConverter converter, long maxVertices) {
+		Objects.requireNonNull(converter, "Converter must not be null!");
+		this.converter = converter;
+		this.maxVertices = maxVertices;
+	}
+
+	/**
+	 * Get the cache shared by the plugins, which uses the default {@link RoiToGeometryConverter}.
+	 * @return
+	 */
+	public static RoiGeometryCache getDefault() {
+		return DEFAULT_CACHE;
+	}
+
+	/**
+	 * Get the geometry for a ROI, converting it only if it is not already cached or has changed.
+	 * @param roi
+	 * @return
+	 */
+	public Geometry getGeometry(Roi roi) {
+		long fingerprint = RoiFingerprint.computeShape(roi);
+		RoiReference lookup = new RoiReference(roi, null);
+		synchronized (map) {
+			expungeStaleEntries();
+			Entry entry = map.get(lookup);
+			if (entry != null && entry.fingerprint == fingerprint) {
+				hits.increment();
+				return entry.geometry;
+			}
+		}
+		misses.increment();
+		Geometry geometry = converter.roiToGeometry(roi);
+		put(roi, new Entry(fingerprint, geometry));
+		return geometry;
+	}
+
+	/**
+	 * Get a feature for a ROI, using the cached geometry if possible.
+	 * @param roi
+	 * @return
+	 * @see RoiToGeometryConverter#roiToFeature(Roi)
+	 */
+	public Feature getFeature(Roi roi) {
+		return Feature.create(getGeometry(roi), RoiToGeometryConverter.createPropertyMapFromRoi(roi));
+	}
+
+	/**
+	 * Get geometries for ROIs in parallel, converting only those that are not already cached or have changed.
+	 * @param rois the ROIs
+	 * @param pool the pool to use for conversion; if null, the common pool is used
+	 * @param monitor optional progress monitor; if this requests cancellation, a {@link CancellationException} is thrown
+	 * @return a list of geometries, in the same order as the ROIs
+	 * @throws CancellationException
+	 */
+	public List<Geometry> getGeometries(Collection<? extends Roi> rois, ForkJoinPool pool, ProgressMonitor monitor) throws CancellationException {
+		return ParallelMapper.create(this::getGeometry)
+				.pool(pool)
+				.progress(monitor)
+				.apply(rois);
+	}
+
+	/**
+	 * Get features for ROIs in parallel, using cached geometries if possible.
+	 * @param rois the ROIs
+	 * @param pool the pool to use for conversion; if null, the common pool is used
+	 * @param monitor optional progress monitor; if this requests cancellation, a {@link CancellationException} is thrown
+	 * @return a list of features, in the same order as the ROIs
+	 * @throws CancellationException
+	 */
+	public List<Feature> getFeatures(Collection<? extends Roi> rois, ForkJoinPool pool, ProgressMonitor monitor) throws CancellationException {
+		return ParallelMapper.create(this::getFeature)
+				.pool(pool)
+				.progress(monitor)
+				.apply(rois);
+	}
+
+	private void put(Roi roi, Entry entry) {
+		RoiReference key = new RoiReference(roi, queue);
+		synchronized (map) {
+			// Don't allow a single huge geometry to flush everything else
+			if (entry.nVertices > maxVertices) {
+				removeEntry(map.remove(key));
+				return;
+			}
+			removeEntry(map.put(key, entry));
+			nVertices += entry.nVertices;
+			Iterator<Entry> iter = map.values().iterator();
+			while (nVertices > maxVertices && iter.hasNext()) {
+				Entry eldest = iter.next();
+				iter.remove();
+				removeEntry(eldest);
+				evictions.increment();
+			}
+		}
+	}
+
+	private void removeEntry(Entry entry) {
+		if (entry != null)
+			nVertices -= entry.nVertices;
+	}
+
+	private void expungeStaleEntries() {
+		Object ref;
+		while ((ref = queue.poll()) != null)
+			removeEntry(map.remove(ref));
+	}
+
+	/**
+	 * Get the number of requests that were served from the cache since the counts were last reset.
+	 * @return
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of requests that required conversion since the counts were last reset.
+	 * @return
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of geometries removed to keep the cache within its size limit since the counts were last reset.
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Reset the hit, miss and eviction counts.
+	 */
+	public void resetCounts() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * Get the total number of vertices in all cached geometries.
+	 * @return
+	 */
+	public long getVertexCount() {
+		synchronized (map) {
+			expungeStaleEntries();
+			return nVertices;
+		}
+	}
+
+	/**
+	 * Get the maximum number of vertices in all cached geometries.
+	 * @return
+	 */
+	public long getMaxVertices() {
+		return maxVertices;
+	}
+
+	/**
+	 * Get the number of ROIs in the cache.
+	 * @return
+	 */
+	public int size() {
+		synchronized (map) {
+			expungeStaleEntries();
+			return map.size();
+		}
+	}
+
+	/**
+	 * Remove all cached geometries.
+	 */
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+			nVertices = 0;
+			while (queue.poll() != null)
+				continue;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RoiGeometryCache [size=" + size() + ", vertices=" + getVertexCount() + "/" + maxVertices +
+				", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+
+	private static class Entry {
+
+		private final long fingerprint;
+		private final Geometry geometry;
+		private final int nVertices;
+
+		private Entry(long fingerprint, Geometry geometry) {
+			this.fingerprint = fingerprint;
+			this.geometry = geometry;
+			this.nVertices = geometry.getNumPoints();
+		}
+
+	}
+
+}
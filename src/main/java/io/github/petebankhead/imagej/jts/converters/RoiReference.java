@@ -0,0 +1,38 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import ij.gui.Roi;
+
+/**
+ * Weak reference to a ROI that uses the identity of the ROI for equality, for use as a map key.
+ * <p>
+ * A reference whose ROI has been garbage collected is only equal to itself, so it can still be
+ * removed from a map after it has been enqueued.
+ */
+class RoiReference extends WeakReference<Roi> {
+
+	private final int hash;
+
+	RoiReference(Roi roi, ReferenceQueue<Roi> queue) {
+		super(roi, queue);
+		this.hash = System.identityHashCode(roi);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof RoiReference))
+			return false;
+		Roi roi = get();
+		return roi != null && roi == ((RoiReference)obj).get();
+	}
+
+}
@@ -15,14 +15,19 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.locationtech.jts.awt.ShapeReader;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.locationtech.jts.operation.polygonize.Polygonizer;
 import org.locationtech.jts.util.GeometricShapeFactory;
 
@@ -31,43 +36,66 @@ import ij.gui.ShapeRoi;
 import ij.process.FloatPolygon;
 import io.github.petebankhead.imagej.jts.geojson.Feature;
 import io.github.petebankhead.imagej.jts.geojson.FeatureCollection;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
 
 
+/**
+ * Convert ImageJ ROIs to JTS Geometries.
+ * <p>
+ * A converter stores only its configuration, and so a single instance may be used from multiple 
+ * threads provided that the configuration is not changed during conversion.
+ */
 public class RoiToGeometryConverter {
 	
+	/**
+	 * Shared converter used by the static methods, to avoid creating a new GeometryFactory for each ROI.
+	 */
+	private static final RoiToGeometryConverter DEFAULT_CONVERTER = new RoiToGeometryConverter();
+	
 	private GeometryFactory factory;
 	
 	private double flatness = 0.1;
 	
 	
 	public static Feature convertToFeature(Roi roi) {
-		return Feature.create(
-				convertToGeometry(roi),
-				createPropertyMapFromRoi(roi));
+		return DEFAULT_CONVERTER.roiToFeature(roi);
 	}
 	
 	public static FeatureCollection convertToFeatureCollection(Roi... rois) {
 		return convertToFeatureCollection(Arrays.asList(rois));
 	}
 	
+	/**
+	 * Convert ROIs to a FeatureCollection. Conversion is performed in parallel using the common pool, 
+	 * but the order of the features matches the order of the ROIs.
+	 * @param rois
+	 * @return
+	 */
 	public static FeatureCollection convertToFeatureCollection(Collection<? extends Roi> rois) {
-		List<Feature> features = new ArrayList<>();
-		for (Roi roi : rois) {
-			features.add(convertToFeature(roi));
-		}
-		return FeatureCollection.wrap(features);
+		return FeatureCollection.wrap(DEFAULT_CONVERTER.roisToFeatures(rois, null, null));
 	}
 	
 	public static Geometry convertToGeometry(Roi roi) {
-		RoiToGeometryConverter converter = new RoiToGeometryConverter();
-		return converter.roiToGeometry(roi);
+		return DEFAULT_CONVERTER.roiToGeometry(roi);
+	}
+	
+	/**
+	 * Convert ROIs to Geometries in parallel, using the common pool.
+	 * @param rois
+	 * @return a list of geometries, in the same order as the ROIs
+	 */
+	public static List<Geometry> convertToGeometries(Collection<? extends Roi> rois) {
+		return DEFAULT_CONVERTER.roisToGeometries(rois, null, null);
 	}
 
 	
 	
 	public RoiToGeometryConverter() {
 		this(new GeometryFactory(
-			new PrecisionModel(100.0)
+			new PrecisionModel(100.0),
+			0,
+			PackedCoordinateSequenceFactory.DOUBLE_FACTORY
 			));
 	}
 	
@@ -153,6 +181,43 @@ public class RoiToGeometryConverter {
 	}
 	
 	
+	public Feature roiToFeature(Roi roi) {
+		return Feature.create(
+				roiToGeometry(roi),
+				createPropertyMapFromRoi(roi));
+	}
+	
+	/**
+	 * Convert ROIs to Geometries in parallel.
+	 * @param rois the ROIs to convert
+	 * @param pool the pool to use for conversion; if null, the common pool is used
+	 * @param monitor optional progress monitor; if this requests cancellation, a {@link CancellationException} is thrown
+	 * @return a list of geometries, in the same order as the ROIs
+	 * @throws CancellationException
+	 */
+	public List<Geometry> roisToGeometries(Collection<? extends Roi> rois, ForkJoinPool pool, ProgressMonitor monitor) throws CancellationException {
+		return ParallelMapper.create(this::roiToGeometry)
+				.pool(pool)
+				.progress(monitor)
+				.apply(rois);
+	}
+	
+	/**
+	 * Convert ROIs to Features in parallel.
+	 * @param rois the ROIs to convert
+	 * @param pool the pool to use for conversion; if null, the common pool is used
+	 * @param monitor optional progress monitor; if this requests cancellation, a {@link CancellationException} is thrown
+	 * @return a list of features, in the same order as the ROIs
+	 * @throws CancellationException
+	 */
+	public List<Feature> roisToFeatures(Collection<? extends Roi> rois, ForkJoinPool pool, ProgressMonitor monitor) throws CancellationException {
+		return ParallelMapper.create(this::roiToFeature)
+				.pool(pool)
+				.progress(monitor)
+				.apply(rois);
+	}
+	
+	
 	public Geometry roiToGeometry(Roi roi) {
 		switch (roi.getType()) {
 		case Roi.RECTANGLE:
@@ -163,12 +228,47 @@ public class RoiToGeometryConverter {
 		case Roi.POLYLINE:
 		case Roi.FREELINE:
 			return createLineString(roi.getFloatPolygon());
+		case Roi.POLYGON:
+		case Roi.FREEROI:
+		case Roi.TRACED_ROI:
+			Geometry polygon = createPolygonOrNull(roi.getFloatPolygon());
+			if (polygon != null)
+				return polygon;
+			// Self-intersecting polygons need to be resolved via an Area
+			return shapeRoiToGeometry(roi);
 		default:
-			Shape shape = new ShapeRoi(roi).getShape();
-			return shapeToGeometry(shape, AffineTransform.getTranslateInstance(roi.getXBase(), roi.getYBase()));
+			return shapeRoiToGeometry(roi);
 		}
 	}
 	
+	/**
+	 * Convert a ROI to a Geometry via a {@link ShapeRoi}. This works for any area ROI, 
+	 * but can be very much slower than creating a polygon directly.
+	 * @param roi
+	 * @return
+	 */
+	Geometry shapeRoiToGeometry(Roi roi) {
+		Shape shape = new ShapeRoi(roi).getShape();
+		return shapeToGeometry(shape, AffineTransform.getTranslateInstance(roi.getXBase(), roi.getYBase()));
+	}
+	
+	/**
+	 * Create a polygon directly from the vertices of a FloatPolygon.
+	 * @param polygon
+	 * @return the polygon, or null if the vertices do not form a valid polygon
+	 *         (e.g. because the boundary self-intersects)
+	 */
+	private Polygon createPolygonOrNull(FloatPolygon polygon) {
+		int n = polygon.npoints;
+		if (n < 3)
+			return null;
+		CoordinateSequence seq = toCoordinateSequence(polygon.xpoints, polygon.ypoints, n, true);
+		if (seq.size() < 4)
+			return null;
+		Polygon result = factory.createPolygon(seq);
+		return result.isValid() ? result : null;
+	}
+	
 	private Geometry shapeToGeometry(Shape shape, AffineTransform transform) {
 		if (shape instanceof Area)
     		return areaToGeometry((Area)shape, transform);
@@ -185,22 +285,74 @@ public class RoiToGeometryConverter {
 	private Geometry areaToGeometry(Area area, AffineTransform transform) {
 		PathIterator iter = area.getPathIterator(transform, flatness);
 
-    	PrecisionModel precisionModel = factory.getPrecisionModel();
     	Polygonizer polygonizer = new Polygonizer(true);
 
-    	List<Coordinate[]> coords = (List<Coordinate[]>)ShapeReader.toCoordinates(iter);
     	List<Geometry> geometries = new ArrayList<>();
-    	for (Coordinate[] array : coords) {
-    		for (Coordinate c : array)
-    			precisionModel.makePrecise(c);
-
-    		LineString lineString = factory.createLineString(array);
+    	for (CoordinateSequence seq : toCoordinateSequences(iter)) {
+    		LineString lineString = factory.createLineString(seq);
     		geometries.add(lineString);
     	}
     	polygonizer.add(factory.buildGeometry(geometries).union());
     	return polygonizer.getGeometry();
 	}
 	
+	/**
+	 * Read the vertices of each subpath of a flattened path, applying the precision model.
+	 * Subpaths that end with SEG_CLOSE are closed by repeating the first vertex, if necessary.
+	 * <p>
+	 * This is equivalent to {@link ShapeReader#toCoordinates(PathIterator)}, but avoids creating 
+	 * a {@link Coordinate} for every vertex.
+	 * @param iterator
+	 * @return
+	 */
+	private List<CoordinateSequence> toCoordinateSequences(PathIterator iterator) {
+		PrecisionModel pm = factory.getPrecisionModel();
+		List<CoordinateSequence> list = new ArrayList<>();
+		double[] seg = new double[6];
+		double[] xy = new double[256];
+		int n = 0;
+		while (!iterator.isDone()) {
+			int type = iterator.currentSegment(seg);
+			if (type == PathIterator.SEG_MOVETO) {
+				addSequence(list, xy, n);
+				n = 0;
+			}
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+				if (xy.length < n*2 + 2)
+					xy = Arrays.copyOf(xy, xy.length * 2);
+				xy[n*2] = pm.makePrecise(seg[0]);
+				xy[n*2+1] = pm.makePrecise(seg[1]);
+				n++;
+			} else if (type == PathIterator.SEG_CLOSE) {
+				if (n > 0 && (xy[0] != xy[n*2-2] || xy[1] != xy[n*2-1])) {
+					if (xy.length < n*2 + 2)
+						xy = Arrays.copyOf(xy, xy.length * 2);
+					xy[n*2] = xy[0];
+					xy[n*2+1] = xy[1];
+					n++;
+				}
+				addSequence(list, xy, n);
+				n = 0;
+			} else
+				throw new IllegalArgumentException("Unsupported segment type " + type + " - path iterator should be flattened");
+			iterator.next();
+		}
+		addSequence(list, xy, n);
+		return list;
+	}
+	
+	private void addSequence(List<CoordinateSequence> list, double[] xy, int n) {
+		// Line strings need at least two vertices
+		if (n < 2)
+			return;
+		CoordinateSequence seq = factory.getCoordinateSequenceFactory().create(n, 2);
+		for (int i = 0; i < n; i++) {
+			seq.setOrdinate(i, CoordinateSequence.X, xy[i*2]);
+			seq.setOrdinate(i, CoordinateSequence.Y, xy[i*2+1]);
+		}
+		list.add(seq);
+	}
+	
 	/**
      * Test of an iterator contains closed segments, indicating the iterator relates to an area.
      * @param iterator
@@ -218,29 +370,42 @@ public class RoiToGeometryConverter {
 	
 
 	private Geometry createLineString(FloatPolygon polygon) {
-		Coordinate[] coords = toCoordinateArray(polygon);
-		return factory.createLineString(coords);
+		CoordinateSequence seq = toCoordinateSequence(polygon.xpoints, polygon.ypoints, polygon.npoints, false);
+		return factory.createLineString(seq);
 	}
 	
 	private Geometry createPoints(FloatPolygon polygon) {
-		Coordinate[] coords = toCoordinateArray(polygon);
-		if (coords.length == 1)
-			return factory.createPoint(coords[0]);
+		CoordinateSequence seq = toCoordinateSequence(polygon.xpoints, polygon.ypoints, polygon.npoints, false);
+		if (seq.size() == 1)
+			return factory.createPoint(seq);
 		else
-			return factory.createMultiPointFromCoords(coords);
+			return factory.createMultiPoint(seq);
 	}
 	
 	
-	private Coordinate[] toCoordinateArray(FloatPolygon polygon) {
-		Coordinate[] coords = new Coordinate[polygon.npoints];
+	/**
+	 * Create a coordinate sequence directly from float arrays, applying the precision model.
+	 * @param x
+	 * @param y
+	 * @param n number of vertices to use from the arrays
+	 * @param closeRing if true, the first vertex is repeated at the end if needed to close a ring
+	 * @return
+	 */
+	private CoordinateSequence toCoordinateSequence(float[] x, float[] y, int n, boolean closeRing) {
 		PrecisionModel pm = factory.getPrecisionModel();
-		for (int i = 0; i < coords.length; i++) {
-			coords[i] = new Coordinate(
-					pm.makePrecise(polygon.xpoints[i]),
-					pm.makePrecise(polygon.ypoints[i])
-					);
+		boolean addClosingVertex = closeRing && n > 0 &&
+				(pm.makePrecise(x[0]) != pm.makePrecise(x[n-1]) || pm.makePrecise(y[0]) != pm.makePrecise(y[n-1]));
+		int size = addClosingVertex ? n + 1 : n;
+		CoordinateSequence seq = factory.getCoordinateSequenceFactory().create(size, 2);
+		for (int i = 0; i < n; i++) {
+			seq.setOrdinate(i, CoordinateSequence.X, pm.makePrecise(x[i]));
+			seq.setOrdinate(i, CoordinateSequence.Y, pm.makePrecise(y[i]));
+		}
+		if (addClosingVertex) {
+			seq.setOrdinate(n, CoordinateSequence.X, seq.getX(0));
+			seq.setOrdinate(n, CoordinateSequence.Y, seq.getY(0));
 		}
-		return coords;
+		return seq;
 	}
 	
 	
@@ -0,0 +1,132 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Compact binary format for caching features read from GeoJSON, so that they can be reloaded
+ * without parsing text.
+ * <p>
+ * A cache file is written alongside the source file, and records the size and last modified time
+ * of the source. It is only used if these still match, i.e. if the source has not changed since the
+ * cache was written.
+ * <p>
+ * All values are little-endian. The file starts with a fixed-size header:
+ * <pre>
+ *   int  magic
+ *   int  version
+ *   long source size, in bytes
+ *   long source last modified time, in milliseconds
+ *   long number of features
+ *   long reserved
+ * </pre>
+ * This is followed by one record per feature:
+ * <pre>
+ *   int    record length in bytes (excluding this value)
+ *   geom   geometry
+ *   int    properties length in bytes (0 if there are no properties)
+ *   byte[] properties as compact UTF-8 JSON
+ * </pre>
+ * Geometries are written recursively as a byte giving the type, followed by
+ * <ul>
+ *   <li>Point, LineString: int vertex count, then float x, y pairs</li>
+ *   <li>Polygon: int ring count, then each ring as for a LineString</li>
+ *   <li>Multi-geometries and GeometryCollection: int part count, then each part as a geometry</li>
+ * </ul>
+ * Coordinates are stored as floats, which matches the precision of ImageJ ROIs.
+ *
+ * @see BinaryFeatureWriter
+ * @see BinaryFeatureReader
+ */
+public final class BinaryFeatureFormat {
+
+	static final int MAGIC = 0x4653544A; // 'JTSF' when read as little-endian bytes
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 40;
+
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	static final byte TYPE_NULL = 0;
+	static final byte TYPE_POINT = 1;
+	static final byte TYPE_LINESTRING = 2;
+	static final byte TYPE_POLYGON = 3;
+	static final byte TYPE_MULTIPOINT = 4;
+	static final byte TYPE_MULTILINESTRING = 5;
+	static final byte TYPE_MULTIPOLYGON = 6;
+	static final byte TYPE_GEOMETRYCOLLECTION = 7;
+
+	/**
+	 * Extension appended to the source file name to give the cache file name.
+	 */
+	public static final String CACHE_EXTENSION = ".ijcache";
+
+	private BinaryFeatureFormat() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Get the path to the cache file for a source file.
+	 * @param source
+	 * @return
+	 */
+	public static Path getCachePath(Path source) {
+		return source.resolveSibling(source.getFileName().toString() + CACHE_EXTENSION);
+	}
+
+	/**
+	 * Check whether a cache file exists for a source file, and matches its current size and last modified time.
+	 * @param source
+	 * @return
+	 */
+	public static boolean hasValidCache(Path source) {
+		return isValidCache(getCachePath(source), source);
+	}
+
+	/**
+	 * Check whether a cache file is complete, and matches the current size and last modified time of a source file.
+	 * @param cache
+	 * @param source
+	 * @return
+	 */
+	public static boolean isValidCache(Path cache, Path source) {
+		if (!Files.isRegularFile(cache) || !Files.isRegularFile(source))
+			return false;
+		try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(channel);
+			if (header == null)
+				return false;
+			BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+			return header.getLong(8) == attrs.size() &&
+					header.getLong(16) == attrs.lastModifiedTime().toMillis();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Read the header from the start of a channel.
+	 * @param channel
+	 * @return the header, or null if the channel does not contain a complete header for the current version
+	 * @throws IOException
+	 */
+	static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_SIZE)
+			return null;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0)
+				return null;
+		}
+		header.flip();
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+			return null;
+		return header;
+	}
+
+}
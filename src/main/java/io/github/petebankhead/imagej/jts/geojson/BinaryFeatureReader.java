@@ -0,0 +1,345 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static io.github.petebankhead.imagej.jts.geojson.BinaryFeatureFormat.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Reader for the binary feature cache format described in {@link BinaryFeatureFormat}.
+ * <p>
+ * The file is read one region at a time into a reusable buffer, with each region starting at
+ * a record boundary, so opening even a very large cache is fast; features are only decoded as
+ * they are requested.
+ * The file is not memory-mapped, since a mapped file cannot be deleted or replaced on Windows
+ * until the mapping is garbage collected.
+ * If a region is set, features outside it are skipped by scanning their coordinates, without
+ * decoding geometries or properties.
+ */
+public class BinaryFeatureReader implements FeatureReader {
+
+	// Number of records to read between progress updates
+	private static final int PROGRESS_INTERVAL = 4096;
+
+	/**
+	 * Maximum number of bytes to read at once; a record must fit within this
+	 */
+	static final int MAX_REGION_SIZE = 1 << 30;
+
+	// Initial buffer size, which is increased if a record does not fit
+	private static final int INITIAL_REGION_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int maxRegionSize;
+	private final long count;
+
+	// Region of the file that has been read, and the file offset at which it starts
+	private ByteBuffer buffer;
+	private long bufferStart;
+
+	private final GeometryFactory factory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+	private Envelope region;
+	private final Envelope envelope = new Envelope();
+
+	private long index = 0;
+
+	private ProgressMonitor monitor;
+	private long nextReport = 0;
+
+	BinaryFeatureReader(Path path, int maxRegionSize) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.maxRegionSize = maxRegionSize;
+		try {
+			ByteBuffer header = readHeader(channel);
+			if (header == null)
+				throw new IOException(path + " is not a complete feature cache");
+			this.size = channel.size();
+			this.count = header.getLong(24);
+			long regionSize = Math.min(size - HEADER_SIZE, Math.min(maxRegionSize, INITIAL_REGION_SIZE));
+			this.buffer = ByteBuffer.allocate((int)regionSize).order(BYTE_ORDER);
+			readRegion(HEADER_SIZE);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the region of the file starting at the specified offset into the buffer.
+	 * @param start
+	 * @throws IOException
+	 */
+	private void readRegion(long start) throws IOException {
+		buffer.clear();
+		buffer.limit((int)Math.min(size - start, buffer.capacity()));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0)
+				throw new IOException("Unexpected end of feature cache at " + (start + buffer.position()));
+		}
+		buffer.flip();
+		bufferStart = start;
+	}
+
+	/**
+	 * Ensure that the next record is entirely within the buffer, reading a new region 
+	 * (and enlarging the buffer) if necessary.
+	 */
+	private void ensureRecordBuffered() {
+		if (bufferStart + buffer.limit() == size || isRecordBuffered())
+			return;
+		try {
+			readRegion(bufferStart + buffer.position());
+			while (!isRecordBuffered() && bufferStart + buffer.limit() < size) {
+				if (buffer.capacity() >= maxRegionSize)
+					throw new IOException("Feature cache record at " + bufferStart + " is too large to read");
+				int capacity = (int)Math.min(maxRegionSize, Math.max(64L, buffer.capacity() * 2L));
+				buffer = ByteBuffer.allocate(capacity).order(BYTE_ORDER);
+				readRegion(bufferStart);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean isRecordBuffered() {
+		return buffer.remaining() >= 4 && buffer.remaining() - 4 >= buffer.getInt(buffer.position());
+	}
+
+	/**
+	 * Open a reader for a cache file.
+	 * @param path
+	 * @return
+	 * @throws IOException if the file cannot be read, or is not a complete cache file
+	 */
+	public static BinaryFeatureReader open(Path path) throws IOException {
+		return new BinaryFeatureReader(path, MAX_REGION_SIZE);
+	}
+
+	/**
+	 * Get the total number of features in the file.
+	 * @return
+	 */
+	public long getFeatureCount() {
+		return count;
+	}
+
+	/**
+	 * Only return features with a geometry whose envelope intersects the specified region.
+	 * Features without a geometry are skipped.
+	 * @param region the region, or null to return all features
+	 * @return this reader
+	 */
+	public BinaryFeatureReader region(Envelope region) {
+		this.region = region == null ? null : new Envelope(region);
+		return this;
+	}
+
+	/**
+	 * Report progress as the file is read, measured in kilobytes.
+	 * If the monitor requests cancellation, {@link #hasNext()} throws a {@link CancellationException}.
+	 * @param monitor the monitor, or null if progress should not be reported
+	 * @return this reader
+	 */
+	public BinaryFeatureReader progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		this.nextReport = index;
+		return this;
+	}
+
+	/**
+	 * Get a reader that only returns features that match a predicate.
+	 * If the predicate is a {@link FeatureFilter} with a region, features outside the region's
+	 * envelope are skipped before they are decoded.
+	 */
+	@Override
+	public FeatureReader filter(Predicate<? super Feature> predicate) {
+		if (predicate instanceof FeatureFilter) {
+			Envelope filterRegion = ((FeatureFilter)predicate).getRegionEnvelope();
+			if (filterRegion != null)
+				region(filterRegion);
+		}
+		return FeatureReader.super.filter(predicate);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (region != null)
+			skipToRegion();
+		else
+			updateProgress();
+		if (index < count) {
+			ensureRecordBuffered();
+			return true;
+		}
+		return false;
+	}
+
+	private void updateProgress() {
+		if (monitor == null || index < nextReport)
+			return;
+		nextReport = index + PROGRESS_INTERVAL;
+		if (monitor.isCancelled())
+			throw new CancellationException("Reading cancelled");
+		monitor.updateProgress((int)((bufferStart + buffer.position()) >> 10), (int)Math.min(Integer.MAX_VALUE, size >> 10));
+	}
+
+	private void skipToRegion() {
+		while (index < count) {
+			updateProgress();
+			ensureRecordBuffered();
+			int start = buffer.position();
+			int length = buffer.getInt(start);
+			envelope.setToNull();
+			expandEnvelope(start + 4, envelope);
+			if (!envelope.isNull() && region.intersects(envelope))
+				return;
+			buffer.position(start + 4 + length);
+			index++;
+		}
+	}
+
+	/**
+	 * Expand an envelope to include the geometry at the specified position, without decoding it.
+	 * @param pos
+	 * @param envelope
+	 * @return the position after the geometry
+	 */
+	private int expandEnvelope(int pos, Envelope envelope) {
+		byte type = buffer.get(pos++);
+		switch (type) {
+		case TYPE_NULL:
+			return pos;
+		case TYPE_POINT:
+		case TYPE_LINESTRING:
+			return expandEnvelopeBySequence(pos, envelope);
+		case TYPE_POLYGON:
+			int nRings = buffer.getInt(pos);
+			pos += 4;
+			for (int i = 0; i < nRings; i++)
+				pos = expandEnvelopeBySequence(pos, envelope);
+			return pos;
+		case TYPE_MULTIPOINT:
+		case TYPE_MULTILINESTRING:
+		case TYPE_MULTIPOLYGON:
+		case TYPE_GEOMETRYCOLLECTION:
+			int nGeometries = buffer.getInt(pos);
+			pos += 4;
+			for (int i = 0; i < nGeometries; i++)
+				pos = expandEnvelope(pos, envelope);
+			return pos;
+		default:
+			throw new UncheckedIOException(new IOException("Unknown geometry type " + type + " in feature cache"));
+		}
+	}
+
+	private int expandEnvelopeBySequence(int pos, Envelope envelope) {
+		int n = buffer.getInt(pos);
+		pos += 4;
+		for (int i = 0; i < n; i++) {
+			envelope.expandToInclude(buffer.getFloat(pos), buffer.getFloat(pos + 4));
+			pos += 8;
+		}
+		return pos;
+	}
+
+	@Override
+	public Feature next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more features available");
+		int length = buffer.getInt();
+		int end = buffer.position() + length;
+		Geometry geometry = readGeometry();
+		int propertyLength = buffer.getInt();
+		Map<String, Object> properties = null;
+		if (propertyLength > 0) {
+			byte[] bytes = new byte[propertyLength];
+			buffer.get(bytes);
+			// Values are only decoded if they are requested
+			properties = LazyProperties.of(new String(bytes, StandardCharsets.UTF_8));
+		}
+		buffer.position(end);
+		index++;
+		return Feature.create(geometry, properties);
+	}
+
+	private Geometry readGeometry() {
+		byte type = buffer.get();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_POINT:
+			return factory.createPoint(readSequence());
+		case TYPE_LINESTRING:
+			return factory.createLineString(readSequence());
+		case TYPE_POLYGON:
+			int nRings = buffer.getInt();
+			LinearRing shell = factory.createLinearRing(readSequence());
+			LinearRing[] holes = new LinearRing[nRings - 1];
+			for (int i = 0; i < holes.length; i++)
+				holes[i] = factory.createLinearRing(readSequence());
+			return factory.createPolygon(shell, holes);
+		case TYPE_MULTIPOINT:
+			Point[] points = new Point[buffer.getInt()];
+			for (int i = 0; i < points.length; i++)
+				points[i] = (Point)readGeometry();
+			return factory.createMultiPoint(points);
+		case TYPE_MULTILINESTRING:
+			LineString[] lines = new LineString[buffer.getInt()];
+			for (int i = 0; i < lines.length; i++)
+				lines[i] = (LineString)readGeometry();
+			return factory.createMultiLineString(lines);
+		case TYPE_MULTIPOLYGON:
+			Polygon[] polygons = new Polygon[buffer.getInt()];
+			for (int i = 0; i < polygons.length; i++)
+				polygons[i] = (Polygon)readGeometry();
+			return factory.createMultiPolygon(polygons);
+		case TYPE_GEOMETRYCOLLECTION:
+			Geometry[] geometries = new Geometry[buffer.getInt()];
+			for (int i = 0; i < geometries.length; i++)
+				geometries[i] = readGeometry();
+			return factory.createGeometryCollection(geometries);
+		default:
+			throw new UncheckedIOException(new IOException("Unknown geometry type " + type + " in feature cache"));
+		}
+	}
+
+	private CoordinateSequence readSequence() {
+		int n = buffer.getInt();
+		CoordinateSequence seq = factory.getCoordinateSequenceFactory().create(n, 2);
+		for (int i = 0; i < n; i++) {
+			seq.setOrdinate(i, CoordinateSequence.X, buffer.getFloat());
+			seq.setOrdinate(i, CoordinateSequence.Y, buffer.getFloat());
+		}
+		return seq;
+	}
+
+	@Override
+	public void close() throws IOException {
+		index = count;
+		channel.close();
+	}
+
+}
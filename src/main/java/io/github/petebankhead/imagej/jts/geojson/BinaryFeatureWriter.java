@@ -0,0 +1,246 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static io.github.petebankhead.imagej.jts.geojson.BinaryFeatureFormat.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import com.google.gson.Gson;
+
+/**
+ * Writer for the binary feature cache format described in {@link BinaryFeatureFormat}.
+ * <p>
+ * The header is only written when the writer is closed, after the source file is complete.
+ * This means that an incomplete cache is never considered to be valid.
+ */
+public class BinaryFeatureWriter implements Closeable {
+
+	private static final Gson GSON = GsonUtils.newBuilder().create();
+
+	private final FileChannel channel;
+	private final Path source;
+
+	private ByteBuffer record = ByteBuffer.allocate(64 * 1024).order(BYTE_ORDER);
+	private long count = 0;
+
+	private BinaryFeatureWriter(Path path, Path source) throws IOException {
+		Objects.requireNonNull(path, "Path must not be null!");
+		this.source = source;
+		this.channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		// Reserve space for the header
+		channel.position(HEADER_SIZE);
+	}
+
+	/**
+	 * Create a writer for a cache file.
+	 * @param path the cache file to write
+	 * @param source the source file that the cache corresponds to; this should be complete before
+	 *               the writer is closed, so that its size and last modified time can be recorded.
+	 *               If null, the cache will never be considered valid.
+	 * @return
+	 * @throws IOException
+	 */
+	public static BinaryFeatureWriter create(Path path, Path source) throws IOException {
+		return new BinaryFeatureWriter(path, source);
+	}
+
+	/**
+	 * Write a feature.
+	 * @param feature
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public BinaryFeatureWriter writeFeature(Feature feature) throws IOException {
+		return writeFeature(feature.getGeometry(), feature.getProperties());
+	}
+
+	/**
+	 * Write a feature with the specified geometry and properties.
+	 * @param geometry
+	 * @param properties
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public BinaryFeatureWriter writeFeature(Geometry geometry, Map<String, ?> properties) throws IOException {
+		byte[] propertyBytes = toPropertyBytes(properties);
+		int size = recordSize(geometry, propertyBytes);
+		if (record.capacity() < size)
+			record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2)).order(BYTE_ORDER);
+		record.clear();
+		putRecord(record, geometry, propertyBytes);
+		record.flip();
+		return writeRecord(record);
+	}
+
+	/**
+	 * Write a feature record that has previously been created with {@link #toBytes(Feature)}.
+	 * @param bytes
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public BinaryFeatureWriter writeRawFeature(byte[] bytes) throws IOException {
+		return writeRecord(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Encode a feature as a record, which can later be written with {@link #writeRawFeature(byte[])}.
+	 * This is useful to cache the encoding of features that are written repeatedly.
+	 * @param feature
+	 * @return
+	 */
+	public static byte[] toBytes(Feature feature) {
+		byte[] propertyBytes = toPropertyBytes(feature.getProperties());
+		Geometry geometry = feature.getGeometry();
+		ByteBuffer buffer = ByteBuffer.allocate(recordSize(geometry, propertyBytes)).order(BYTE_ORDER);
+		putRecord(buffer, geometry, propertyBytes);
+		return buffer.array();
+	}
+
+	private BinaryFeatureWriter writeRecord(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		count++;
+		return this;
+	}
+
+	private static byte[] toPropertyBytes(Map<String, ?> properties) {
+		if (properties instanceof LazyProperties)
+			return ((LazyProperties)properties).toJson().getBytes(StandardCharsets.UTF_8);
+		if (properties == null || properties.isEmpty())
+			return new byte[0];
+		return GSON.toJson(properties, Map.class).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int recordSize(Geometry geometry, byte[] propertyBytes) {
+		return 4 + sizeOf(geometry) + 4 + propertyBytes.length;
+	}
+
+	private static void putRecord(ByteBuffer buffer, Geometry geometry, byte[] propertyBytes) {
+		buffer.putInt(recordSize(geometry, propertyBytes) - 4);
+		putGeometry(buffer, geometry);
+		buffer.putInt(propertyBytes.length);
+		buffer.put(propertyBytes);
+	}
+
+	private static int sizeOf(Geometry geometry) {
+		if (geometry == null)
+			return 1;
+		if (geometry instanceof Point || geometry instanceof LineString)
+			return 1 + sizeOf(getSequence(geometry));
+		if (geometry instanceof Polygon) {
+			Polygon polygon = (Polygon)geometry;
+			int size = 1 + 4 + sizeOf(polygon.getExteriorRing().getCoordinateSequence());
+			for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+				size += sizeOf(polygon.getInteriorRingN(i).getCoordinateSequence());
+			return size;
+		}
+		int size = 1 + 4;
+		for (int i = 0; i < geometry.getNumGeometries(); i++)
+			size += sizeOf(geometry.getGeometryN(i));
+		return size;
+	}
+
+	private static int sizeOf(CoordinateSequence seq) {
+		return 4 + seq.size() * 8;
+	}
+
+	private static CoordinateSequence getSequence(Geometry geometry) {
+		if (geometry instanceof Point)
+			return ((Point)geometry).getCoordinateSequence();
+		return ((LineString)geometry).getCoordinateSequence();
+	}
+
+	private static void putGeometry(ByteBuffer buffer, Geometry geometry) {
+		if (geometry == null) {
+			buffer.put(TYPE_NULL);
+		} else if (geometry instanceof Point) {
+			buffer.put(TYPE_POINT);
+			putSequence(buffer, getSequence(geometry));
+		} else if (geometry instanceof LineString) {
+			buffer.put(TYPE_LINESTRING);
+			putSequence(buffer, getSequence(geometry));
+		} else if (geometry instanceof Polygon) {
+			Polygon polygon = (Polygon)geometry;
+			buffer.put(TYPE_POLYGON);
+			buffer.putInt(polygon.getNumInteriorRing() + 1);
+			putSequence(buffer, polygon.getExteriorRing().getCoordinateSequence());
+			for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+				putSequence(buffer, polygon.getInteriorRingN(i).getCoordinateSequence());
+		} else {
+			buffer.put(getCollectionType(geometry));
+			buffer.putInt(geometry.getNumGeometries());
+			for (int i = 0; i < geometry.getNumGeometries(); i++)
+				putGeometry(buffer, geometry.getGeometryN(i));
+		}
+	}
+
+	private static byte getCollectionType(Geometry geometry) {
+		if (geometry instanceof MultiPoint)
+			return TYPE_MULTIPOINT;
+		if (geometry instanceof MultiLineString)
+			return TYPE_MULTILINESTRING;
+		if (geometry instanceof MultiPolygon)
+			return TYPE_MULTIPOLYGON;
+		if (geometry instanceof GeometryCollection)
+			return TYPE_GEOMETRYCOLLECTION;
+		throw new IllegalArgumentException("Unsupported geometry type " + geometry.getGeometryType());
+	}
+
+	private static void putSequence(ByteBuffer buffer, CoordinateSequence seq) {
+		int n = seq.size();
+		buffer.putInt(n);
+		for (int i = 0; i < n; i++) {
+			buffer.putFloat((float)seq.getX(i));
+			buffer.putFloat((float)seq.getY(i));
+		}
+	}
+
+	/**
+	 * Write the header and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			long sourceSize = -1L;
+			long sourceModified = -1L;
+			if (source != null && Files.isRegularFile(source)) {
+				BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+				sourceSize = attrs.size();
+				sourceModified = attrs.lastModifiedTime().toMillis();
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(sourceSize);
+			header.putLong(sourceModified);
+			header.putLong(count);
+			header.putLong(0L);
+			header.flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Locale-independent formatter for writing double values as JSON numbers.
+ * <p>
+ * Values are appended directly to a {@link StringBuilder}, which can be reused between calls.
+ * This avoids the overhead (and lack of thread-safety) of {@link java.text.NumberFormat}.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public class DoubleFormatter {
+
+	/**
+	 * Maximum number of decimal places supported for fixed-decimal formatting.
+	 */
+	public static final int MAX_DECIMAL_PLACES = 15;
+
+	private static final long[] POW10 = new long[MAX_DECIMAL_PLACES + 1];
+
+	static {
+		long val = 1;
+		for (int i = 0; i < POW10.length; i++) {
+			POW10[i] = val;
+			val *= 10;
+		}
+	}
+
+	/**
+	 * Scaled values must be below this to be rounded reliably using a long
+	 */
+	private static final double MAX_SCALED = 1e12;
+
+	private final int numDecimalPlaces;
+	private final double scale;
+
+	private DoubleFormatter(int numDecimalPlaces) {
+		if (numDecimalPlaces > MAX_DECIMAL_PLACES)
+			throw new IllegalArgumentException("Number of decimal places must be <= " + MAX_DECIMAL_PLACES);
+		this.numDecimalPlaces = numDecimalPlaces;
+		this.scale = numDecimalPlaces < 0 ? Double.NaN : POW10[numDecimalPlaces];
+	}
+
+	/**
+	 * Create a formatter that rounds to a maximum number of decimal places.
+	 * The exact value of the double is rounded half-even, as by {@link BigDecimal#setScale(int, RoundingMode)}.
+	 * Trailing zeros are removed.
+	 * @param numDecimalPlaces number of decimal places; if negative, the shortest representation
+	 *                         that round-trips is used instead
+	 * @return
+	 */
+	public static DoubleFormatter createWithDecimalPlaces(int numDecimalPlaces) {
+		return new DoubleFormatter(numDecimalPlaces);
+	}
+
+	/**
+	 * Create a formatter that uses the shortest representation that round-trips to the same double.
+	 * @return
+	 */
+	public static DoubleFormatter createShortestRoundTrip() {
+		return new DoubleFormatter(-1);
+	}
+
+	/**
+	 * Get the maximum number of decimal places, or -1 if the shortest round-trip representation is used.
+	 * @return
+	 */
+	public int getNumDecimalPlaces() {
+		return numDecimalPlaces < 0 ? -1 : numDecimalPlaces;
+	}
+
+	/**
+	 * Format a value as a String. Where possible, {@link #append(StringBuilder, double)} should be
+	 * preferred to avoid creating a new String.
+	 * @param value
+	 * @return
+	 */
+	public String format(double value) {
+		return append(new StringBuilder(24), value).toString();
+	}
+
+	/**
+	 * Append a value to a StringBuilder.
+	 * Non-finite values are written as NaN, Infinity or -Infinity.
+	 * @param sb
+	 * @param value
+	 * @return the StringBuilder
+	 */
+	public StringBuilder append(StringBuilder sb, double value) {
+		if (Double.isNaN(value))
+			return sb.append("NaN");
+		if (Double.isInfinite(value))
+			return sb.append(value > 0 ? "Infinity" : "-Infinity");
+		if (numDecimalPlaces < 0)
+			return appendShortest(sb, value);
+
+		double scaled = value * scale;
+		if (Math.abs(scaled) >= MAX_SCALED)
+			return appendExact(sb, value);
+		// The product may be rounded across a tie, so near-ties are rounded using the exact value
+		double remainder = scaled - Math.floor(scaled);
+		if (Math.abs(remainder - 0.5) <= 2 * Math.ulp(scaled))
+			return appendExact(sb, value);
+
+		long rounded = (long)Math.rint(scaled);
+		if (rounded == 0L)
+			return sb.append('0');
+		if (rounded < 0) {
+			sb.append('-');
+			rounded = -rounded;
+		}
+
+		long factor = POW10[numDecimalPlaces];
+		sb.append(rounded / factor);
+		long fraction = rounded % factor;
+		if (fraction != 0L) {
+			int nDigits = numDecimalPlaces;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				nDigits--;
+			}
+			sb.append('.');
+			for (int i = nDigits - 1; i > 0 && fraction < POW10[i]; i--)
+				sb.append('0');
+			sb.append(fraction);
+		}
+		return sb;
+	}
+
+	/**
+	 * Append a value after rounding its exact decimal representation (half-even), 
+	 * for values that are too large or too close to a tie to round using doubles.
+	 * @param sb
+	 * @param value
+	 * @return the StringBuilder
+	 */
+	private StringBuilder appendExact(StringBuilder sb, double value) {
+		BigDecimal rounded = new BigDecimal(value).setScale(numDecimalPlaces, RoundingMode.HALF_EVEN);
+		if (rounded.signum() == 0)
+			return sb.append('0');
+		return sb.append(rounded.stripTrailingZeros().toPlainString());
+	}
+
+	private static StringBuilder appendShortest(StringBuilder sb, double value) {
+		// Avoid a trailing '.0' for integers, which are common for pixel coordinates
+		if (value == Math.rint(value) && Math.abs(value) < MAX_SCALED) {
+			long asLong = (long)value;
+			if (asLong == 0 && Double.doubleToRawLongBits(value) != 0L)
+				return sb.append("-0");
+			return sb.append(asLong);
+		}
+		return sb.append(value);
+	}
+
+}
@@ -28,6 +28,9 @@ public class Feature {
 	public Map<String, ?> getProperties() {
 		if (properties == null)
 			return Collections.emptyMap();
+		else if (properties instanceof LazyProperties)
+			// Already read-only, and writers can copy the JSON directly
+			return properties;
 		else
 			return Collections.unmodifiableMap(properties);
 	}
@@ -33,9 +33,7 @@ public class FeatureDeserializer implements JsonDeserializer<Feature> {
 		Geometry geometry = context.deserialize(objGeometry, Geometry.class);
 		Map<String, Object> properties = context.deserialize(objProperties, Map.class);
 
-		Feature feature = Feature.create(geometry, properties);
-		System.err.println(feature);
-		return feature;
+		return Feature.create(geometry, properties);
 	}
 	
 }
\ No newline at end of file
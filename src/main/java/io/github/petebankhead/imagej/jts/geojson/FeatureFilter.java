@@ -0,0 +1,138 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.util.function.Predicate;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+import io.github.petebankhead.imagej.jts.index.ImagePlane;
+
+/**
+ * Predicate to select features by location and image plane, so that only features relevant to
+ * part of an image need to be converted to ROIs.
+ * <p>
+ * Typical use is
+ * <pre>
+ * FeatureFilter filter = FeatureFilter.create()
+ *         .region(new Envelope(0, 1024, 0, 1024))
+ *         .plane(0, 2, 0);
+ * </pre>
+ * Planes are matched using {@link ImagePlane#fromProperties(java.util.Map)}, so the filter applies
+ * the same rules as {@link io.github.petebankhead.imagej.jts.index.PlanePartition}:
+ * features without a plane, or with a negative value for a dimension, are considered to belong
+ * to all planes.
+ */
+public class FeatureFilter implements Predicate<Feature> {
+
+	private Envelope envelope;
+	private PreparedGeometry prepared;
+
+	private ImagePlane plane = ImagePlane.ALL;
+
+	private FeatureFilter() {}
+
+	/**
+	 * Create a filter that accepts all features, which can then be restricted.
+	 * @return
+	 */
+	public static FeatureFilter create() {
+		return new FeatureFilter();
+	}
+
+	/**
+	 * Only accept features with a geometry whose envelope intersects the specified envelope.
+	 * @param envelope the region; if null, features are not filtered by location
+	 * @return this filter
+	 */
+	public FeatureFilter region(Envelope envelope) {
+		this.envelope = envelope == null ? null : new Envelope(envelope);
+		this.prepared = null;
+		return this;
+	}
+
+	/**
+	 * Only accept features with a geometry that intersects the specified geometry.
+	 * @param geometry the region; if null, features are not filtered by location
+	 * @return this filter
+	 */
+	public FeatureFilter region(Geometry geometry) {
+		if (geometry == null)
+			return region((Envelope)null);
+		this.envelope = geometry.getEnvelopeInternal();
+		// No need for the exact test if the geometry is a rectangle
+		this.prepared = geometry.isRectangle() ? null : PreparedGeometryFactory.prepare(geometry);
+		return this;
+	}
+
+	/**
+	 * Get the envelope of the region, if any.
+	 * Readers may use this to skip features before they are fully decoded.
+	 * @return the envelope, or null if features are not filtered by location
+	 * @see BinaryFeatureReader#region(Envelope)
+	 */
+	public Envelope getRegionEnvelope() {
+		return envelope == null ? null : new Envelope(envelope);
+	}
+
+	/**
+	 * Only accept features on the specified plane.
+	 * This replaces any plane or position set previously.
+	 * @param c zero-based channel, or -1 to accept any channel
+	 * @param z zero-based slice, or -1 to accept any slice
+	 * @param t zero-based time point, or -1 to accept any time point
+	 * @return this filter
+	 */
+	public FeatureFilter plane(int c, int z, int t) {
+		return plane(ImagePlane.of(c, z, t));
+	}
+
+	/**
+	 * Only accept features with the specified ImageJ stack position, as used for ROIs on stacks
+	 * that are not hyperstacks. Features without a position are accepted.
+	 * This replaces any plane or position set previously.
+	 * @param position one-based stack position, or 0 to accept any position
+	 * @return this filter
+	 */
+	public FeatureFilter position(int position) {
+		return plane(ImagePlane.ofPosition(position));
+	}
+
+	/**
+	 * Only accept features that match the specified plane.
+	 * @param plane the plane; if null, features are not filtered by plane
+	 * @return this filter
+	 * @see ImagePlane#matches(ImagePlane)
+	 */
+	public FeatureFilter plane(ImagePlane plane) {
+		this.plane = plane == null ? ImagePlane.ALL : plane;
+		return this;
+	}
+
+	/**
+	 * Get the plane used to filter features.
+	 * @return the plane, or {@link ImagePlane#ALL} if features are not filtered by plane
+	 */
+	public ImagePlane getPlane() {
+		return plane;
+	}
+
+	@Override
+	public boolean test(Feature feature) {
+		return feature != null && testRegion(feature.getGeometry()) && testPlane(feature);
+	}
+
+	private boolean testRegion(Geometry geometry) {
+		if (envelope == null)
+			return true;
+		if (geometry == null || !envelope.intersects(geometry.getEnvelopeInternal()))
+			return false;
+		return prepared == null || prepared.intersects(geometry);
+	}
+
+	private boolean testPlane(Feature feature) {
+		return plane == ImagePlane.ALL || ImagePlane.fromFeature(feature).matches(plane);
+	}
+
+}
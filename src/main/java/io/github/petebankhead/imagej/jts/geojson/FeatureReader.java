@@ -0,0 +1,48 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reader that returns features one at a time.
+ * <p>
+ * Implementations may throw an {@link UncheckedIOException} from {@link #hasNext()} or {@link #next()}
+ * if an error occurs while reading.
+ */
+public interface FeatureReader extends Iterator<Feature>, Closeable {
+
+	/**
+	 * Get a sequential stream of the features. Closing the stream closes this reader.
+	 * @return
+	 */
+	default Stream<Feature> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> {
+					try {
+						close();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+	}
+
+	/**
+	 * Get a reader that only returns features that match a predicate.
+	 * Closing the returned reader closes this reader.
+	 * @param predicate
+	 * @return
+	 * @see FeatureFilter
+	 */
+	default FeatureReader filter(Predicate<? super Feature> predicate) {
+		return new FilteredFeatureReader(this, predicate);
+	}
+
+}
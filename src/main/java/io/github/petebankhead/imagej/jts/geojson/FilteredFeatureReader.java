@@ -0,0 +1,51 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Reader that only returns the features of another reader that match a predicate.
+ * @see FeatureReader#filter(Predicate)
+ */
+class FilteredFeatureReader implements FeatureReader {
+
+	private final FeatureReader reader;
+	private final Predicate<? super Feature> predicate;
+
+	private Feature next;
+
+	FilteredFeatureReader(FeatureReader reader, Predicate<? super Feature> predicate) {
+		Objects.requireNonNull(reader, "Reader must not be null!");
+		Objects.requireNonNull(predicate, "Predicate must not be null!");
+		this.reader = reader;
+		this.predicate = predicate;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null && reader.hasNext()) {
+			Feature feature = reader.next();
+			if (predicate.test(feature))
+				next = feature;
+		}
+		return next != null;
+	}
+
+	@Override
+	public Feature next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more features available");
+		Feature feature = next;
+		next = null;
+		return feature;
+	}
+
+	@Override
+	public void close() throws IOException {
+		next = null;
+		reader.close();
+	}
+
+}
@@ -0,0 +1,252 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Open GeoJSON files for reading and writing, with optional gzip compression.
+ * <p>
+ * Compressed files are detected when reading by checking for the gzip magic bytes,
+ * so the file extension doesn't matter.
+ * When writing, compression and file output happen on a background thread, so that they 
+ * overlap with converting and serializing features.
+ */
+public final class GeoJsonFiles {
+
+	/**
+	 * Extension for gzip-compressed files.
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	/**
+	 * Extension for newline-delimited GeoJSON, with one feature per line.
+	 */
+	public static final String SEQUENCE_EXTENSION = ".geojsonl";
+
+	/**
+	 * Extension for GeoJSON text sequences (RFC 8142), where each feature is also preceded by a record separator.
+	 */
+	public static final String TEXT_SEQUENCE_EXTENSION = ".geojsons";
+
+	private static final String[] SEQUENCE_EXTENSIONS = {
+			SEQUENCE_EXTENSION, TEXT_SEQUENCE_EXTENSION, ".geojsonseq", ".ndjson", ".jsonl"
+	};
+
+	/**
+	 * Compression level to write uncompressed text.
+	 */
+	public static final int NO_COMPRESSION = 0;
+
+	/**
+	 * Compression level giving a good balance between speed and file size.
+	 */
+	public static final int DEFAULT_COMPRESSION = 6;
+
+	/**
+	 * Compression level giving the smallest files.
+	 */
+	public static final int BEST_COMPRESSION = Deflater.BEST_COMPRESSION;
+
+	// Large buffers, since the files are often on network storage
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int MAX_QUEUED_BUFFERS = 8;
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+
+	private GeoJsonFiles() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Open a reader for a GeoJSON file, decompressing it if it is gzipped.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static Reader newReader(Path path) throws IOException {
+		return newReader(path, null);
+	}
+
+	/**
+	 * Open a reader for a GeoJSON file, decompressing it if it is gzipped, and reporting progress as the file is read.
+	 * Progress is measured in kilobytes read from the file (before decompression).
+	 * If the monitor requests cancellation, reading throws a {@link CancellationException}.
+	 * @param path
+	 * @param monitor optional progress monitor
+	 * @return
+	 * @throws IOException
+	 */
+	public static Reader newReader(Path path, ProgressMonitor monitor) throws IOException {
+		return new BufferedReader(new InputStreamReader(newInputStream(path, monitor), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Open an input stream for a file, decompressing it if it is gzipped.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static InputStream newInputStream(Path path) throws IOException {
+		return newInputStream(path, null);
+	}
+
+	private static InputStream newInputStream(Path path, ProgressMonitor monitor) throws IOException {
+		InputStream stream = Files.newInputStream(path);
+		if (monitor != null)
+			stream = new ProgressInputStream(stream, Files.size(path), monitor);
+		stream = new BufferedInputStream(stream, BUFFER_SIZE);
+		try {
+			if (isGzipped(stream))
+				return new GZIPInputStream(stream, GZIP_BUFFER_SIZE);
+			return stream;
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Check whether a file starts with the gzip magic bytes.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isGzipped(Path path) throws IOException {
+		try (InputStream stream = Files.newInputStream(path)) {
+			return isGzipped(stream.read(), stream.read());
+		}
+	}
+
+	private static boolean isGzipped(InputStream stream) throws IOException {
+		stream.mark(2);
+		boolean gzipped = isGzipped(stream.read(), stream.read());
+		stream.reset();
+		return gzipped;
+	}
+
+	private static boolean isGzipped(int b1, int b2) {
+		return b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2;
+	}
+
+	/**
+	 * Open a writer for a GeoJSON file, compressing it with the default level if the file name ends with {@link #GZIP_EXTENSION}.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static Writer newWriter(Path path) throws IOException {
+		return newWriter(path, isGzipPath(path) ? DEFAULT_COMPRESSION : NO_COMPRESSION);
+	}
+
+	/**
+	 * Open a writer for a GeoJSON file with a specified compression level.
+	 * The file is written on a background thread, and is only complete once the writer has been closed.
+	 * @param path
+	 * @param compressionLevel {@link #NO_COMPRESSION} for uncompressed text, or 1 (fastest) to 9 (smallest) for gzip
+	 * @return
+	 * @throws IOException
+	 */
+	public static Writer newWriter(Path path, int compressionLevel) throws IOException {
+		if (compressionLevel < NO_COMPRESSION || compressionLevel > BEST_COMPRESSION)
+			throw new IllegalArgumentException("Compression level must be between 0 and 9, but was " + compressionLevel);
+		OutputStream stream = Files.newOutputStream(path);
+		try {
+			if (compressionLevel != NO_COMPRESSION)
+				stream = new LevelGZIPOutputStream(stream, compressionLevel);
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+		stream = new PipelinedOutputStream(stream, BUFFER_SIZE, MAX_QUEUED_BUFFERS, "geojson-writer-" + path.getFileName());
+		return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Check whether a file contains a GeoJSON sequence, with one feature per line.
+	 * This is true if the file has an extension commonly used for newline-delimited GeoJSON 
+	 * (ignoring any {@link #GZIP_EXTENSION}), or if it starts with a record separator as in RFC 8142.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 * @see GeoJsonSeqReader
+	 */
+	public static boolean isSequence(Path path) throws IOException {
+		if (isSequencePath(path))
+			return true;
+		try (InputStream stream = newInputStream(path)) {
+			return stream.read() == RecordSeparatorReader.RECORD_SEPARATOR;
+		}
+	}
+
+	/**
+	 * Check whether a file name has an extension commonly used for GeoJSON sequences, ignoring any {@link #GZIP_EXTENSION}.
+	 * Unlike {@link #isSequence(Path)}, this never reads the file, so can be used to choose the format when writing.
+	 * @param path
+	 * @return
+	 */
+	public static boolean isSequencePath(Path path) {
+		String name = stripGzipExtension(path);
+		for (String ext : SEQUENCE_EXTENSIONS) {
+			if (name.endsWith(ext))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether a file should be written as a GeoJSON text sequence (RFC 8142), with a record separator 
+	 * before each feature. This is the case if the extension is {@link #TEXT_SEQUENCE_EXTENSION}, 
+	 * ignoring any {@link #GZIP_EXTENSION}.
+	 * @param path
+	 * @return
+	 */
+	public static boolean isTextSequencePath(Path path) {
+		return stripGzipExtension(path).endsWith(TEXT_SEQUENCE_EXTENSION);
+	}
+
+	private static String stripGzipExtension(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		if (name.endsWith(GZIP_EXTENSION))
+			name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+		return name;
+	}
+
+	/**
+	 * Check whether a file name ends with {@link #GZIP_EXTENSION}.
+	 * @param path
+	 * @return
+	 */
+	public static boolean isGzipPath(Path path) {
+		return path.getFileName().toString().toLowerCase().endsWith(GZIP_EXTENSION);
+	}
+
+
+	private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+		private LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+			super(out, GZIP_BUFFER_SIZE);
+			def.setLevel(level);
+		}
+
+	}
+
+}
@@ -0,0 +1,375 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.locationtech.jts.geom.Geometry;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Pull-based reader for GeoJSON that returns features one at a time.
+ * <p>
+ * This never builds a JSON tree for the full document: the 'features' array of a FeatureCollection
+ * is consumed lazily, and coordinates are parsed straight into coordinate sequences.
+ * This means that peak memory use is bounded by the largest single feature, rather than the file size.
+ * <p>
+ * Single Feature and Geometry objects are also supported, in which case they are returned as a single feature.
+ * <p>
+ * A reader created with {@link #createSequence(Reader)} also accepts a sequence of GeoJSON objects, 
+ * such as newline-delimited GeoJSON or a GeoJSON text sequence (RFC 8142).
+ * <p>
+ * Properties are returned as {@link LazyProperties}, which keep the JSON text and only decode values 
+ * when requested. If only some properties are needed, {@link #keepProperties(Collection)} avoids 
+ * copying the others at all.
+ */
+public class GeoJsonReader implements FeatureReader {
+
+	private final JsonReader in;
+	private final boolean sequence;
+	private final GeometryTypeAdapter geometryAdapter = new GeometryTypeAdapter();
+	private final TypeAdapter<Object> valueAdapter = new Gson().getAdapter(Object.class);
+
+	// Top-level property keys to keep, or null to keep all properties
+	private Set<String> keepProperties;
+	private final StringWriter propertiesBuffer = new StringWriter();
+
+	private boolean started = false;
+	private boolean inFeatures = false;
+	private boolean done = false;
+	private boolean foundFeatures = false;
+
+	// Fields read from the top-level object, in case it isn't a FeatureCollection
+	private FeatureFields topLevelFields = new FeatureFields();
+
+	private Feature next;
+
+	private GeoJsonReader(Reader reader, boolean sequence) {
+		// Lenient parsing is also needed to read multiple top-level values
+		this.in = new JsonReader(sequence ? new RecordSeparatorReader(reader) : reader);
+		this.in.setLenient(true);
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Create a new reader for the GeoJSON provided by a {@link Reader}.
+	 * The reader will be closed when this is closed.
+	 * @param reader
+	 * @return
+	 */
+	public static GeoJsonReader create(Reader reader) {
+		return new GeoJsonReader(reader, false);
+	}
+
+	/**
+	 * Create a new reader for a sequence of GeoJSON objects provided by a {@link Reader}.
+	 * Objects may be separated by whitespace (e.g. one feature per line) and optionally preceded by the 
+	 * ASCII record separator character, as in a GeoJSON text sequence (RFC 8142).
+	 * Each object may be a FeatureCollection, Feature or Geometry; an ordinary GeoJSON document 
+	 * is therefore also a valid sequence.
+	 * The reader will be closed when this is closed.
+	 * @param reader
+	 * @return
+	 */
+	public static GeoJsonReader createSequence(Reader reader) {
+		return new GeoJsonReader(reader, true);
+	}
+
+	/**
+	 * Only keep the specified top-level properties of each feature; others are skipped without being stored.
+	 * This reduces the time and memory needed to read features with many properties, when only a few are used.
+	 * The 'plane' is kept only if it is included.
+	 * @param keys the property keys to keep, or null to keep all properties
+	 * @return this reader
+	 */
+	public GeoJsonReader keepProperties(Collection<String> keys) {
+		this.keepProperties = keys == null ? null : new HashSet<>(keys);
+		return this;
+	}
+
+	/**
+	 * Read all features from the reader, passing each to a consumer as soon as it has been parsed.
+	 * The reader is not closed.
+	 * @param reader
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void readFeatures(Reader reader, Consumer<? super Feature> consumer) throws IOException {
+		GeoJsonReader geoJsonReader = create(reader);
+		try {
+			geoJsonReader.forEachRemaining(consumer);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Read all features from a file, passing each to a consumer as soon as it has been parsed.
+	 * The file may be gzip-compressed.
+	 * @param path
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public static void readFeatures(Path path, Consumer<? super Feature> consumer) throws IOException {
+		try (Reader reader = GeoJsonFiles.newReader(path)) {
+			readFeatures(reader, consumer);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !done) {
+			try {
+				next = readNext();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public Feature next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more features available");
+		Feature feature = next;
+		next = null;
+		return feature;
+	}
+
+	@Override
+	public void close() throws IOException {
+		done = true;
+		in.close();
+	}
+
+
+	private Feature readNext() throws IOException {
+		Feature feature = null;
+		while (feature == null && !done)
+			feature = readNextInObject();
+		return feature;
+	}
+
+	/**
+	 * Read the next feature from the current top-level object.
+	 * @return the next feature, or null if there are no more features in the object
+	 * @throws IOException
+	 */
+	private Feature readNextInObject() throws IOException {
+		if (!started) {
+			if (sequence && in.peek() == JsonToken.END_DOCUMENT) {
+				done = true;
+				return null;
+			}
+			started = true;
+			if (in.peek() != JsonToken.BEGIN_OBJECT)
+				throw new IOException("Expected a GeoJSON object, but found " + in.peek());
+			in.beginObject();
+		}
+		if (inFeatures) {
+			Feature feature = readNextInFeatures();
+			if (feature != null)
+				return feature;
+		}
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if ("features".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+				in.beginArray();
+				inFeatures = true;
+				foundFeatures = true;
+				Feature feature = readNextInFeatures();
+				if (feature != null)
+					return feature;
+			} else
+				readField(name, topLevelFields);
+		}
+		in.endObject();
+		FeatureFields fields = topLevelFields;
+		boolean wasFeatureCollection = foundFeatures;
+		if (sequence) {
+			// Prepare for the next object
+			started = false;
+			foundFeatures = false;
+			topLevelFields = new FeatureFields();
+		} else
+			done = true;
+		if (wasFeatureCollection)
+			return null;
+		// We don't have a FeatureCollection, so return a single Feature (if we can)
+		return fields.toFeature(geometryAdapter);
+	}
+
+	private Feature readNextInFeatures() throws IOException {
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				continue;
+			}
+			Feature feature = readFeature();
+			if (feature != null)
+				return feature;
+		}
+		in.endArray();
+		inFeatures = false;
+		return null;
+	}
+
+	private Feature readFeature() throws IOException {
+		FeatureFields fields = new FeatureFields();
+		in.beginObject();
+		while (in.hasNext())
+			readField(in.nextName(), fields);
+		in.endObject();
+		return fields.toFeature(geometryAdapter);
+	}
+
+	private void readField(String name, FeatureFields fields) throws IOException {
+		switch (name) {
+		case "type":
+			fields.type = in.nextString();
+			break;
+		case "geometry":
+			if (in.peek() == JsonToken.NULL)
+				in.nextNull();
+			else
+				fields.geometry = geometryAdapter.readGeometry(in, (key, reader) -> {
+					// QuPath stores the 'plane' inside the geometry
+					if ("plane".equals(key) && keepProperty(key))
+						fields.plane = valueAdapter.read(reader);
+					else
+						reader.skipValue();
+				});
+			break;
+		case "properties":
+			if (in.peek() == JsonToken.BEGIN_OBJECT)
+				fields.properties = readProperties();
+			else
+				in.skipValue();
+			break;
+		case "coordinates":
+		case "geometries":
+			// Used only for bare geometries
+			fields.addGeometryField(name, in, geometryAdapter);
+			break;
+		default:
+			in.skipValue();
+		}
+	}
+
+
+	private boolean keepProperty(String key) {
+		return keepProperties == null || keepProperties.contains(key);
+	}
+
+	/**
+	 * Copy the properties object as compact JSON, without decoding any values.
+	 * Numbers are copied as they were written, so are never converted or boxed.
+	 * @return
+	 * @throws IOException
+	 */
+	private LazyProperties readProperties() throws IOException {
+		propertiesBuffer.getBuffer().setLength(0);
+		JsonWriter out = new JsonWriter(propertiesBuffer);
+		in.beginObject();
+		out.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (keepProperty(name)) {
+				out.name(name);
+				copyValue(out);
+			} else
+				in.skipValue();
+		}
+		in.endObject();
+		out.endObject();
+		return LazyProperties.of(propertiesBuffer.toString());
+	}
+
+	private void copyValue(JsonWriter out) throws IOException {
+		switch (in.peek()) {
+		case BEGIN_ARRAY:
+			in.beginArray();
+			out.beginArray();
+			while (in.hasNext())
+				copyValue(out);
+			in.endArray();
+			out.endArray();
+			break;
+		case BEGIN_OBJECT:
+			in.beginObject();
+			out.beginObject();
+			while (in.hasNext()) {
+				out.name(in.nextName());
+				copyValue(out);
+			}
+			in.endObject();
+			out.endObject();
+			break;
+		case NUMBER:
+			out.jsonValue(in.nextString());
+			break;
+		case BOOLEAN:
+			out.value(in.nextBoolean());
+			break;
+		case NULL:
+			in.nextNull();
+			out.nullValue();
+			break;
+		case STRING:
+		default:
+			out.value(in.nextString());
+		}
+	}
+
+
+	/**
+	 * Fields collected for a single feature (or geometry), which may be encountered in any order.
+	 */
+	private static class FeatureFields {
+
+		private String type;
+		private Geometry geometry;
+		private LazyProperties properties;
+		private Object plane;
+
+		private GeometryTypeAdapter.GeometryFields geometryFields;
+
+		void addGeometryField(String name, JsonReader in, GeometryTypeAdapter adapter) throws IOException {
+			if (geometryFields == null)
+				geometryFields = new GeometryTypeAdapter.GeometryFields();
+			adapter.readGeometryField(name, in, geometryFields);
+		}
+
+		Feature toFeature(GeometryTypeAdapter adapter) throws IOException {
+			if (type == null)
+				return null;
+			if (!"feature".equalsIgnoreCase(type)) {
+				// Treat as a bare geometry
+				geometryFields = geometryFields == null ? new GeometryTypeAdapter.GeometryFields() : geometryFields;
+				geometryFields.type = type;
+				return Feature.create(adapter.createGeometry(geometryFields));
+			}
+			if (plane != null) {
+				if (properties == null)
+					properties = LazyProperties.of("{}");
+				properties.putExtra("plane", plane);
+			}
+			return Feature.create(geometry, properties);
+		}
+
+	}
+
+}
@@ -0,0 +1,237 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Reader for newline-delimited GeoJSON and GeoJSON text sequences (RFC 8142), which parses 
+ * the file in parallel.
+ * <p>
+ * The file is split into chunks of several megabytes, which are parsed in parallel, but features are 
+ * returned in the same order as in the file.
+ * Only a few chunks are parsed ahead of the features being requested, so memory use doesn't 
+ * depend upon the file size.
+ * <p>
+ * If the file starts with a record separator, it is treated as a text sequence, and each chunk ends 
+ * immediately before a record separator; records may then span multiple lines.
+ * Otherwise, each chunk ends at a line break, which requires that no feature spans multiple lines.
+ * Compressed files can't be split, and so are read sequentially.
+ *
+ * @see GeoJsonReader#createSequence(java.io.Reader)
+ * @see GeoJsonWriter#beginSequence(boolean)
+ */
+public class GeoJsonSeqReader implements FeatureReader {
+
+	/**
+	 * Approximate number of bytes in each chunk
+	 */
+	static final int CHUNK_SIZE = 8 << 20;
+
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+	private final int maxPendingChunks;
+	private final boolean textSequence;
+
+	private final Deque<Chunk> pending = new ArrayDeque<>();
+	private long nextChunkStart = 0;
+	private Iterator<Feature> current = Collections.emptyIterator();
+
+	private ProgressMonitor monitor;
+	private Collection<String> keepProperties;
+
+	GeoJsonSeqReader(Path path, int chunkSize, ForkJoinPool pool) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.chunkSize = chunkSize;
+		this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+		this.maxPendingChunks = this.pool.getParallelism() * 2;
+		ByteBuffer first = ByteBuffer.allocate(1);
+		this.textSequence = channel.read(first, 0) == 1 && first.get(0) == RecordSeparatorReader.RECORD_SEPARATOR;
+	}
+
+	/**
+	 * Open a reader for a newline-delimited GeoJSON file or GeoJSON text sequence.
+	 * Uncompressed files are parsed in parallel using the common pool; gzipped files are read sequentially.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static FeatureReader open(Path path) throws IOException {
+		return open(path, null);
+	}
+
+	/**
+	 * Open a reader for a newline-delimited GeoJSON file or GeoJSON text sequence, reporting progress 
+	 * as the file is read.
+	 * If the monitor requests cancellation, reading throws a {@link CancellationException}.
+	 * @param path
+	 * @param monitor optional progress monitor
+	 * @return
+	 * @throws IOException
+	 */
+	public static FeatureReader open(Path path, ProgressMonitor monitor) throws IOException {
+		return open(path, monitor, null);
+	}
+
+	/**
+	 * Open a reader for a newline-delimited GeoJSON file or GeoJSON text sequence, reporting progress 
+	 * as the file is read and keeping only the specified properties.
+	 * @param path
+	 * @param monitor optional progress monitor
+	 * @param keepProperties the property keys to keep, or null to keep all properties
+	 * @return
+	 * @throws IOException
+	 * @see GeoJsonReader#keepProperties(Collection)
+	 */
+	public static FeatureReader open(Path path, ProgressMonitor monitor, Collection<String> keepProperties) throws IOException {
+		if (GeoJsonFiles.isGzipped(path))
+			return GeoJsonReader.createSequence(GeoJsonFiles.newReader(path, monitor)).keepProperties(keepProperties);
+		GeoJsonSeqReader reader = new GeoJsonSeqReader(path, CHUNK_SIZE, null);
+		reader.monitor = monitor;
+		reader.keepProperties = keepProperties == null ? null : new ArrayList<>(keepProperties);
+		return reader;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			submitChunks();
+			Chunk chunk = pending.poll();
+			if (chunk == null)
+				return false;
+			current = chunk.join().iterator();
+			if (monitor != null) {
+				if (monitor.isCancelled())
+					throw new CancellationException("Reading cancelled");
+				monitor.updateProgress((int)(chunk.end >> 10), (int)Math.min(Integer.MAX_VALUE, size >> 10));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Feature next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more features available");
+		return current.next();
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Chunk chunk : pending)
+			chunk.future.cancel(false);
+		pending.clear();
+		current = Collections.emptyIterator();
+		nextChunkStart = size;
+		channel.close();
+	}
+
+	private void submitChunks() {
+		while (pending.size() < maxPendingChunks && nextChunkStart < size) {
+			long start = nextChunkStart;
+			long end;
+			try {
+				end = findChunkEnd(Math.min(size, start + chunkSize));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			nextChunkStart = end;
+			pending.add(new Chunk(end, CompletableFuture.supplyAsync(() -> parseChunk(start, end), pool)));
+		}
+	}
+
+	/**
+	 * Find the end of the chunk containing the specified position.
+	 * For text sequences, this is the position of the first record separator at or after the position; 
+	 * otherwise, it is the position immediately after the first line break.
+	 * @param pos
+	 * @return the end of the chunk, or the file size if there are no more separators
+	 * @throws IOException
+	 */
+	private long findChunkEnd(long pos) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		while (pos < size) {
+			buffer.clear();
+			int n = channel.read(buffer, pos);
+			if (n < 0)
+				break;
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (textSequence && b == RecordSeparatorReader.RECORD_SEPARATOR)
+					return pos + i;
+				if (!textSequence && b == '\n')
+					return pos + i + 1;
+			}
+			pos += n;
+		}
+		return size;
+	}
+
+	private List<Feature> parseChunk(long start, long end) {
+		try {
+			// Separators can't occur within multi-byte UTF-8 characters, so each chunk can be decoded separately
+			ByteBuffer buffer = ByteBuffer.allocate((int)(end - start));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0)
+					throw new IOException("Unexpected end of file at " + (start + buffer.position()));
+			}
+			String text = new String(buffer.array(), StandardCharsets.UTF_8);
+			List<Feature> features = new ArrayList<>();
+			try (GeoJsonReader reader = GeoJsonReader.createSequence(new StringReader(text)).keepProperties(keepProperties)) {
+				reader.forEachRemaining(features::add);
+			}
+			return features;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	private static class Chunk {
+
+		private final long end;
+		private final CompletableFuture<List<Feature>> future;
+
+		private Chunk(long end, CompletableFuture<List<Feature>> future) {
+			this.end = end;
+			this.future = future;
+		}
+
+		private List<Feature> join() {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+				throw e;
+			}
+		}
+
+	}
+
+}
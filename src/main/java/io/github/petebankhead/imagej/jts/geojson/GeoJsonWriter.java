@@ -0,0 +1,259 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Objects;
+
+import org.locationtech.jts.geom.Geometry;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming writer for GeoJSON features.
+ * <p>
+ * Features are written immediately to the underlying {@link Writer}, so that a FeatureCollection
+ * can be created without ever holding all the features in memory.
+ * <p>
+ * Typical use is
+ * <pre>
+ * try (GeoJsonWriter writer = GeoJsonWriter.create(Files.newBufferedWriter(path))) {
+ *     writer.beginFeatureCollection();
+ *     for (Feature feature : features)
+ *         writer.writeFeature(feature);
+ *     writer.endFeatureCollection();
+ * }
+ * </pre>
+ * Alternatively, {@link #beginSequence(boolean)} writes one feature per line, which gives files 
+ * that can be appended to and split without parsing them.
+ */
+public class GeoJsonWriter implements Closeable, Flushable {
+
+	private final Writer writer;
+	private final JsonWriter out;
+	private final boolean prettyPrint;
+	private final GeometryTypeAdapter geometryAdapter;
+	private final Gson gson;
+
+	private boolean inFeatureCollection = false;
+	private boolean inSequence = false;
+	private boolean recordSeparator = false;
+	private boolean empty = true;
+
+	private GeoJsonWriter(Writer writer, boolean prettyPrint) {
+		Objects.requireNonNull(writer, "Writer must not be null!");
+		this.writer = writer;
+		this.out = new JsonWriter(writer);
+		this.prettyPrint = prettyPrint;
+		if (prettyPrint)
+			this.out.setIndent("  ");
+		this.out.setSerializeNulls(false);
+		this.geometryAdapter = new GeometryTypeAdapter();
+		this.gson = GsonUtils.newBuilder().create();
+	}
+
+	/**
+	 * Create a writer that writes compact GeoJSON, without any extra whitespace.
+	 * The writer will be closed when this is closed.
+	 * @param writer
+	 * @return
+	 */
+	public static GeoJsonWriter create(Writer writer) {
+		return create(writer, false);
+	}
+
+	/**
+	 * Create a writer for GeoJSON, optionally using pretty printing.
+	 * The writer will be closed when this is closed.
+	 * @param writer
+	 * @param prettyPrint if true, add indentation and line breaks to make the output more readable
+	 * @return
+	 */
+	public static GeoJsonWriter create(Writer writer, boolean prettyPrint) {
+		return new GeoJsonWriter(writer, prettyPrint);
+	}
+
+	/**
+	 * Begin writing a FeatureCollection. Subsequent calls to {@link #writeFeature(Feature)}
+	 * will add features to the collection until {@link #endFeatureCollection()} is called.
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public GeoJsonWriter beginFeatureCollection() throws IOException {
+		if (inFeatureCollection)
+			throw new IllegalStateException("FeatureCollection has already been started");
+		if (inSequence)
+			throw new IllegalStateException("Cannot write a FeatureCollection within a sequence");
+		empty = false;
+		out.beginObject();
+		out.name("type");
+		out.value("FeatureCollection");
+		out.name("features");
+		out.beginArray();
+		inFeatureCollection = true;
+		return this;
+	}
+
+	/**
+	 * End the current FeatureCollection.
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public GeoJsonWriter endFeatureCollection() throws IOException {
+		if (!inFeatureCollection)
+			throw new IllegalStateException("No FeatureCollection has been started");
+		out.endArray();
+		out.endObject();
+		inFeatureCollection = false;
+		return this;
+	}
+
+	/**
+	 * Begin writing a sequence of features, with each feature on a separate line.
+	 * This is often called newline-delimited GeoJSON, or a GeoJSON text sequence (RFC 8142) if each 
+	 * feature is preceded by a record separator character.
+	 * Features are always written compactly, even if pretty printing was requested.
+	 * @param recordSeparator if true, precede each feature with the ASCII record separator as required by RFC 8142
+	 * @return this writer
+	 * @see GeoJsonReader#createSequence(java.io.Reader)
+	 */
+	public GeoJsonWriter beginSequence(boolean recordSeparator) {
+		if (inFeatureCollection)
+			throw new IllegalStateException("Cannot start a sequence within a FeatureCollection");
+		if (inSequence)
+			throw new IllegalStateException("Sequence has already been started");
+		// Each feature is a separate top-level value
+		out.setLenient(true);
+		out.setIndent("");
+		this.recordSeparator = recordSeparator;
+		inSequence = true;
+		return this;
+	}
+
+	/**
+	 * End the current sequence.
+	 * @return this writer
+	 */
+	public GeoJsonWriter endSequence() {
+		if (!inSequence)
+			throw new IllegalStateException("No sequence has been started");
+		out.setLenient(false);
+		if (prettyPrint)
+			out.setIndent("  ");
+		inSequence = false;
+		return this;
+	}
+
+	/**
+	 * Write a feature. If a FeatureCollection has been started, the feature will be added to it.
+	 * @param feature
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public GeoJsonWriter writeFeature(Feature feature) throws IOException {
+		return writeFeature(feature.getGeometry(), feature.getProperties());
+	}
+
+	/**
+	 * Write a feature with the specified geometry and properties.
+	 * If a FeatureCollection has been started, the feature will be added to it.
+	 * @param geometry
+	 * @param properties
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public GeoJsonWriter writeFeature(Geometry geometry, Map<String, ?> properties) throws IOException {
+		beginSequenceRecord();
+		out.beginObject();
+		out.name("type");
+		out.value("Feature");
+		out.name("geometry");
+		if (geometry == null) {
+			// Geometry is required, even if null
+			boolean serializeNulls = out.getSerializeNulls();
+			out.setSerializeNulls(true);
+			out.nullValue();
+			out.setSerializeNulls(serializeNulls);
+		} else
+			geometryAdapter.write(out, geometry);
+		out.name("properties");
+		if (properties instanceof LazyProperties) {
+			// Copy properties that were read from JSON without decoding them
+			out.jsonValue(((LazyProperties)properties).toJson());
+		} else if (properties == null || properties.isEmpty()) {
+			out.beginObject();
+			out.endObject();
+		} else
+			gson.toJson(properties, Map.class, out);
+		out.endObject();
+		endSequenceRecord();
+		return this;
+	}
+
+	/**
+	 * Write a feature that has already been serialized, e.g. using {@link #toJson(Feature)}.
+	 * The JSON is written unchanged, without any validation.
+	 * This is useful to avoid converting and serializing features that haven't changed since they were last written.
+	 * @param json a complete JSON object for a single feature
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public GeoJsonWriter writeRawFeature(String json) throws IOException {
+		beginSequenceRecord();
+		out.jsonValue(json);
+		endSequenceRecord();
+		return this;
+	}
+
+	private void beginSequenceRecord() throws IOException {
+		empty = false;
+		if (inSequence && recordSeparator)
+			writer.write(RecordSeparatorReader.RECORD_SEPARATOR);
+	}
+
+	private void endSequenceRecord() throws IOException {
+		if (inSequence)
+			writer.write('\n');
+	}
+	
+	/**
+	 * Serialize a single feature as compact JSON, suitable for {@link #writeRawFeature(String)}.
+	 * @param feature
+	 * @return
+	 */
+	public static String toJson(Feature feature) {
+		StringWriter stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = create(stringWriter)) {
+			writer.writeFeature(feature);
+		} catch (IOException e) {
+			// Shouldn't happen with a StringWriter
+			throw new UncheckedIOException(e);
+		}
+		return stringWriter.toString();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Close the writer. 
+	 * If a FeatureCollection is still in progress, it is not ended: the output is left incomplete 
+	 * so that a failed export cannot be mistaken for a valid file containing fewer features.
+	 */
+	@Override
+	public void close() throws IOException {
+		// JsonWriter rejects an empty or incomplete document, but an empty sequence is valid
+		if (empty || inFeatureCollection)
+			writer.close();
+		else
+			out.close();
+	}
+
+}
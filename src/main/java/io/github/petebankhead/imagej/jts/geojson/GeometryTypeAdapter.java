@@ -1,14 +1,14 @@
 package io.github.petebankhead.imagej.jts.geojson;
 
 import java.io.IOException;
-import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.LinearRing;
@@ -18,28 +18,30 @@ import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.TypeAdapter;
-import com.google.gson.internal.bind.TypeAdapters;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 public class GeometryTypeAdapter extends TypeAdapter<Geometry> {
 	
-	private NumberFormat nf;
-	private GeometryFactory factory = new GeometryFactory();
+	private final DoubleFormatter formatter;
+	// Packed sequences store coordinates in a single double[], rather than as Coordinate objects
+	private GeometryFactory factory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
 	
 	public GeometryTypeAdapter() {
 		this(3);
 	}
 	
+	/**
+	 * Create a type adapter that writes coordinates with a maximum number of decimal places.
+	 * @param numDecimalPlaces the number of decimal places; if negative, the shortest representation that 
+	 *                         round-trips to the same double value is used
+	 */
 	public GeometryTypeAdapter(int numDecimalPlaces) {
-		nf = NumberFormat.getInstance(Locale.US);
-		nf.setGroupingUsed(false);
-		nf.setMaximumFractionDigits(numDecimalPlaces);
+		formatter = DoubleFormatter.createWithDecimalPlaces(numDecimalPlaces);
 	}
 	
 
@@ -58,13 +60,13 @@ public class GeometryTypeAdapter extends TypeAdapter<Geometry> {
 
 	@Override
 	public Geometry read(JsonReader in) throws IOException {
-		JsonElement element = TypeAdapters.JSON_ELEMENT.read(in);
-		if (element.isJsonObject())
-			return parseGeometry(element.getAsJsonObject(), factory);
-		else if (element.isJsonNull())
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
 			return null;
+		} else if (in.peek() == JsonToken.BEGIN_OBJECT)
+			return readGeometry(in, null);
 		else
-			throw new IOException("Unable to parse Geometry from ");
+			throw new IOException("Unable to parse Geometry from " + in.peek());
 	}
 	
 	
@@ -77,6 +79,10 @@ public class GeometryTypeAdapter extends TypeAdapter<Geometry> {
 	 * @throws IOException
 	 */
 	private void writeGeometry(Geometry geometry, JsonWriter out) throws IOException {
+		writeGeometry(geometry, out, new StringBuilder(256));
+	}
+	
+	private void writeGeometry(Geometry geometry, JsonWriter out, StringBuilder sb) throws IOException {
 		String type = geometry.getGeometryType();
 		
 		out.name("type");
@@ -86,191 +92,394 @@ public class GeometryTypeAdapter extends TypeAdapter<Geometry> {
 			out.name("geometries");
 			out.beginArray();
 			for (int i = 0; i < geometry.getNumGeometries(); i++) {
-				writeGeometry(geometry.getGeometryN(i), out);
+				writeGeometry(geometry.getGeometryN(i), out, sb);
 			}
 			out.endArray();
 		} else {
 			out.name("coordinates");
-			writeCoordinates(geometry, out);			
+			writeCoordinates(geometry, out, sb);
 		}
 	}
 
 
-	private void writeCoordinates(Geometry geometry, JsonWriter out) throws IOException {
+	/**
+	 * Write the coordinates of a geometry. 
+	 * Each array of positions is formatted into the (reusable) StringBuilder and written as a single 
+	 * raw JSON value, so that we avoid creating Strings for every ordinate.
+	 */
+	private void writeCoordinates(Geometry geometry, JsonWriter out, StringBuilder sb) throws IOException {
 		if (geometry instanceof Point)
-			writeCoordinates((Point)geometry, out);
+			writeCoordinates((Point)geometry, out, sb);
 		else if (geometry instanceof MultiPoint)
-			writeCoordinates((MultiPoint)geometry, out);
+			writeCoordinates((MultiPoint)geometry, out, sb);
 		else if (geometry instanceof LineString)
-			writeCoordinates((LineString)geometry, out);
+			writeCoordinates((LineString)geometry, out, sb);
 		else if (geometry instanceof MultiLineString)
-			writeCoordinates((MultiLineString)geometry, out);
+			writeCoordinates((MultiLineString)geometry, out, sb);
 		else if (geometry instanceof Polygon)
-			writeCoordinates((Polygon)geometry, out);
+			writeCoordinates((Polygon)geometry, out, sb);
 		else if (geometry instanceof MultiPolygon)
-			writeCoordinates((MultiPolygon)geometry, out);
+			writeCoordinates((MultiPolygon)geometry, out, sb);
 		else
 			throw new IllegalArgumentException("Unable to write coordinates for geometry type " + geometry.getGeometryType());
 	}
 
-	private void writeCoordinates(Point point, JsonWriter out) throws IOException {
-		out.jsonValue(coordinateToString(point.getCoordinate()));
+	private void writeCoordinates(Point point, JsonWriter out, StringBuilder sb) throws IOException {
+		sb.setLength(0);
+		if (point.isEmpty())
+			sb.append("[]");
+		else
+			appendCoordinate(sb, point.getX(), point.getY());
+		out.jsonValue(sb.toString());
 	}
 
-	private void writeCoordinates(MultiPoint multiPoint, JsonWriter out) throws IOException {
-		Coordinate[] coords = multiPoint.getCoordinates();
-		out.beginArray();
-		for (Coordinate c : coords)
-			out.jsonValue(coordinateToString(c));
-		out.endArray();
+	private void writeCoordinates(MultiPoint multiPoint, JsonWriter out, StringBuilder sb) throws IOException {
+		sb.setLength(0);
+		sb.append('[');
+		for (int i = 0; i < multiPoint.getNumGeometries(); i++) {
+			Point point = (Point)multiPoint.getGeometryN(i);
+			if (i > 0)
+				sb.append(',');
+			appendCoordinate(sb, point.getX(), point.getY());
+		}
+		sb.append(']');
+		out.jsonValue(sb.toString());
 	}
 
-	private void writeCoordinates(LineString lineString, JsonWriter out) throws IOException {
-		Coordinate[] coords = lineString.getCoordinates();
-		out.beginArray();
-		for (Coordinate c : coords)
-			out.jsonValue(coordinateToString(c));
-		out.endArray();
+	private void writeCoordinates(LineString lineString, JsonWriter out, StringBuilder sb) throws IOException {
+		CoordinateSequence seq = lineString.getCoordinateSequence();
+		sb.setLength(0);
+		sb.append('[');
+		for (int i = 0; i < seq.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			appendCoordinate(sb, seq.getX(i), seq.getY(i));
+		}
+		sb.append(']');
+		out.jsonValue(sb.toString());
 	}
 	
-	private void writeCoordinates(Polygon polygon, JsonWriter out) throws IOException {
+	private void writeCoordinates(Polygon polygon, JsonWriter out, StringBuilder sb) throws IOException {
 		out.beginArray();
-		writeCoordinates(polygon.getExteriorRing(), out);
-		for (int i = 0; i < polygon.getNumInteriorRing(); i++)
-			writeCoordinates(polygon.getInteriorRingN(i), out);
+		if (!polygon.isEmpty()) {
+			writeCoordinates(polygon.getExteriorRing(), out, sb);
+			for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+				writeCoordinates(polygon.getInteriorRingN(i), out, sb);
+		}
 		out.endArray();
 	}
 	
-	private void writeCoordinates(MultiLineString multiLineString, JsonWriter out) throws IOException {
+	private void writeCoordinates(MultiLineString multiLineString, JsonWriter out, StringBuilder sb) throws IOException {
 		out.beginArray();
 		for (int i = 0; i < multiLineString.getNumGeometries(); i++)
-			writeCoordinates(multiLineString.getGeometryN(i), out);
+			writeCoordinates(multiLineString.getGeometryN(i), out, sb);
 		out.endArray();
 	}
 	
-	private void writeCoordinates(MultiPolygon multiPolygon, JsonWriter out) throws IOException {
+	private void writeCoordinates(MultiPolygon multiPolygon, JsonWriter out, StringBuilder sb) throws IOException {
 		out.beginArray();
 		for (int i = 0; i < multiPolygon.getNumGeometries(); i++)
-			writeCoordinates(multiPolygon.getGeometryN(i), out);
+			writeCoordinates(multiPolygon.getGeometryN(i), out, sb);
 		out.endArray();
 	}
 
-	private String coordinateToString(Coordinate coord) {
-		return coordinateToString(coord.x, coord.y);
+	private void appendCoordinate(StringBuilder sb, double x, double y) {
+		sb.append('[');
+		formatter.append(sb, x);
+		sb.append(',');
+		formatter.append(sb, y);
+		sb.append(']');
 	}
-
-	private String coordinateToString(double x, double y) {
-		return "[" + nf.format(x) + ", "
-				+ nf.format(y) + "]";		
+	
+	
+	
+	
+	/**
+	 * Read a Geometry from a GeoJSON object, streaming coordinates directly into 
+	 * {@link CoordinateSequence CoordinateSequences} without first building a JSON tree.
+	 * Fields are accepted in any order.
+	 * @param in the reader, positioned at the start of the geometry object
+	 * @param otherFieldHandler optional handler for any fields other than 'type', 'coordinates' 
+	 *                          and 'geometries'; this must consume the value. If null, other values are skipped.
+	 * @return the geometry, or null if the object has no 'type'
+	 * @throws IOException
+	 */
+	Geometry readGeometry(JsonReader in, FieldHandler otherFieldHandler) throws IOException {
+		GeometryFields fields = new GeometryFields();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (readGeometryField(name, in, fields))
+				continue;
+			if (otherFieldHandler == null)
+				in.skipValue();
+			else
+				otherFieldHandler.handleField(name, in);
+		}
+		in.endObject();
+		return createGeometry(fields);
 	}
 	
+	/**
+	 * Read the value of a field if it is needed to create a Geometry.
+	 * @param name
+	 * @param in
+	 * @param fields
+	 * @return true if the field was read, false if it was not recognized (and so has not been consumed)
+	 * @throws IOException
+	 */
+	boolean readGeometryField(String name, JsonReader in, GeometryFields fields) throws IOException {
+		switch (name) {
+		case "type":
+			fields.type = in.nextString();
+			return true;
+		case "coordinates":
+			fields.coordinates = readCoordinates(in);
+			return true;
+		case "geometries":
+			fields.geometries = readGeometries(in);
+			return true;
+		default:
+			return false;
+		}
+	}
 	
+	/**
+	 * Fields required to create a Geometry, which may be encountered in any order.
+	 */
+	static class GeometryFields {
+		
+		String type;
+		Object coordinates;
+		List<Geometry> geometries;
+		
+	}
 	
 	
-	private Geometry parseGeometry(JsonObject obj, GeometryFactory factory) {
-		if (!obj.has("type"))
-			return null;
+	/**
+	 * Handler for additional fields found when reading a GeoJSON object.
+	 */
+	@FunctionalInterface
+	interface FieldHandler {
 		
-		String type = obj.get("type").getAsString();
-		JsonArray coordinates = null;
-		if (obj.has("coordinates"))
-			coordinates = obj.getAsJsonArray("coordinates").getAsJsonArray();
-			
-		switch (type) {
-		case "Point":
-			return parsePoint(coordinates, factory);
-		case "MultiPoint":
-			return parseMultiPoint(coordinates, factory);
-		case "LineString":
-			return parseLineString(coordinates, factory);
-		case "MultiLineString":
-			return parseMultiLineString(coordinates, factory);
-		case "Polygon":
-			return parsePolygon(coordinates, factory);
-		case "MultiPolygon":
-			return parseMultiPolygon(coordinates, factory);
-		case "GeometryCollection":
-			return parseGeometryCollection(obj, factory);
+		/**
+		 * Handle the next value of the reader, which corresponds to the specified name.
+		 * Implementations must consume the value.
+		 * @param name
+		 * @param in
+		 * @throws IOException
+		 */
+		void handleField(String name, JsonReader in) throws IOException;
+		
+	}
+	
+	
+	private List<Geometry> readGeometries(JsonReader in) throws IOException {
+		List<Geometry> geometries = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.NULL)
+				in.nextNull();
+			else
+				geometries.add(readGeometry(in, null));
 		}
-		throw new IllegalArgumentException("No Geometry type found for object " + obj);
+		in.endArray();
+		return geometries;
 	}
-
+	
+	
 	/**
-	 * Parse a coordinate from a JsonArray. No error checking is performed. Supports either two elements (x,y) or three (x,y,z).
-	 * @param array
+	 * Read a GeoJSON 'coordinates' value of any depth.
+	 * <p>
+	 * A single position is returned as a {@code double[]}, an array of positions as a 
+	 * {@link CoordinateSequence} and anything deeper as a {@code List} of these.
+	 * @param in
 	 * @return
+	 * @throws IOException
 	 */
-	private Coordinate parseCoordinate(JsonArray array) {
-		double x = array.get(0).getAsDouble();
-		double y = array.get(1).getAsDouble();
-		if (array.size() == 2)
-			return new Coordinate(x, y);
-		else {
-			double z = array.get(2).getAsDouble();
-			return new Coordinate(x, y, z);
+	private Object readCoordinates(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
 		}
+		in.beginArray();
+		if (in.peek() == JsonToken.NUMBER)
+			return readPositionContents(in);
+		return readArrayContents(in);
 	}
-
-	private Coordinate[] parseCoordinateArray(JsonArray array) {
-		Coordinate[] coordinates = new Coordinate[array.size()];
-		for (int i = 0; i < array.size(); i++) {
-			coordinates[i]  = parseCoordinate(array.get(i).getAsJsonArray());
+	
+	/**
+	 * Read the remainder of an array of positions, or an array of arrays, after 
+	 * {@link JsonReader#beginArray()} has been called.
+	 */
+	private Object readArrayContents(JsonReader in) throws IOException {
+		CoordinateBuffer buffer = null;
+		List<Object> children = null;
+		while (in.hasNext()) {
+			in.beginArray();
+			if (in.peek() == JsonToken.NUMBER) {
+				if (buffer == null)
+					buffer = new CoordinateBuffer();
+				buffer.add(in);
+			} else {
+				if (children == null)
+					children = new ArrayList<>();
+				children.add(readArrayContents(in));
+			}
 		}
-		return coordinates;
-	}
-
-	private Point parsePoint(JsonArray coord, GeometryFactory factory) {
-		return factory.createPoint(parseCoordinate(coord));
+		in.endArray();
+		if (buffer != null)
+			return buffer.toSequence(factory);
+		return children == null ? Collections.emptyList() : children;
 	}
-
-	private MultiPoint parseMultiPoint(JsonArray coords, GeometryFactory factory) {
-		return factory.createMultiPointFromCoords(parseCoordinateArray(coords));
+	
+	private static double[] readPositionContents(JsonReader in) throws IOException {
+		double x = in.nextDouble();
+		double y = in.nextDouble();
+		double[] position;
+		if (in.hasNext())
+			position = new double[] {x, y, in.nextDouble()};
+		else
+			position = new double[] {x, y};
+		// Skip any additional values (e.g. measures)
+		while (in.hasNext())
+			in.skipValue();
+		in.endArray();
+		return position;
 	}
-
-	private LineString parseLineString(JsonArray coords, GeometryFactory factory) {
-		return factory.createLineString(parseCoordinateArray(coords));
+	
+	
+	/**
+	 * Growable buffer for the positions of a single coordinate array. 
+	 * This avoids creating a {@link Coordinate} for each position.
+	 */
+	private static class CoordinateBuffer {
+		
+		private double[] values = new double[64];
+		private int dimension = 2;
+		private int n = 0;
+		
+		void add(JsonReader in) throws IOException {
+			ensureCapacity((n + 1) * 3);
+			int ind = n * 3;
+			values[ind] = in.nextDouble();
+			values[ind+1] = in.nextDouble();
+			if (in.hasNext()) {
+				values[ind+2] = in.nextDouble();
+				dimension = 3;
+			} else
+				values[ind+2] = Coordinate.NULL_ORDINATE;
+			while (in.hasNext())
+				in.skipValue();
+			in.endArray();
+			n++;
+		}
+		
+		private void ensureCapacity(int capacity) {
+			if (capacity > values.length)
+				values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+		}
+		
+		CoordinateSequence toSequence(GeometryFactory factory) {
+			CoordinateSequence seq = factory.getCoordinateSequenceFactory().create(n, dimension);
+			for (int i = 0; i < n; i++) {
+				seq.setOrdinate(i, CoordinateSequence.X, values[i*3]);
+				seq.setOrdinate(i, CoordinateSequence.Y, values[i*3+1]);
+				if (dimension > 2)
+					seq.setOrdinate(i, CoordinateSequence.Z, values[i*3+2]);
+			}
+			return seq;
+		}
+		
 	}
-
-	private MultiLineString parseMultiLineString(JsonArray coords, GeometryFactory factory) {
-		LineString[] lineStrings = new LineString[coords.size()];
-		for (int i = 0; i < coords.size(); i++) {
-			JsonArray array = coords.get(i).getAsJsonArray();
-			lineStrings[i] = factory.createLineString(parseCoordinateArray(array));
+	
+	
+	Geometry createGeometry(GeometryFields fields) throws IOException {
+		String type = fields.type;
+		if (type == null)
+			return null;
+		Object coordinates = fields.coordinates;
+		List<Geometry> geometries = fields.geometries;
+		switch (type) {
+		case "Point":
+			return createPoint(coordinates);
+		case "MultiPoint":
+			return factory.createMultiPoint(toSequence(coordinates));
+		case "LineString":
+			return factory.createLineString(toSequence(coordinates));
+		case "MultiLineString":
+			return createMultiLineString(coordinates);
+		case "Polygon":
+			return createPolygon(coordinates);
+		case "MultiPolygon":
+			return createMultiPolygon(coordinates);
+		case "GeometryCollection":
+			if (geometries == null)
+				return factory.createGeometryCollection();
+			return factory.createGeometryCollection(geometries.toArray(new Geometry[0]));
 		}
+		throw new IOException("Unknown Geometry type " + type);
+	}
+	
+	private Point createPoint(Object coordinates) throws IOException {
+		if (coordinates == null || (coordinates instanceof List && ((List<?>)coordinates).isEmpty()))
+			return factory.createPoint();
+		if (!(coordinates instanceof double[]))
+			throw new IOException("Invalid Point coordinates");
+		double[] position = (double[])coordinates;
+		if (position.length == 2)
+			return factory.createPoint(new Coordinate(position[0], position[1]));
+		else
+			return factory.createPoint(new Coordinate(position[0], position[1], position[2]));
+	}
+	
+	private MultiLineString createMultiLineString(Object coordinates) throws IOException {
+		List<?> list = toList(coordinates);
+		LineString[] lineStrings = new LineString[list.size()];
+		for (int i = 0; i < lineStrings.length; i++)
+			lineStrings[i] = factory.createLineString(toSequence(list.get(i)));
 		return factory.createMultiLineString(lineStrings);
 	}
-
-	private Polygon parsePolygon(JsonArray coords, GeometryFactory factory) {
-		int n = coords.size();
+	
+	private Polygon createPolygon(Object coordinates) throws IOException {
+		List<?> list = toList(coordinates);
+		int n = list.size();
 		if (n == 0)
 			return factory.createPolygon();
-		JsonArray array = coords.get(0).getAsJsonArray();
-		LinearRing shell = factory.createLinearRing(parseCoordinateArray(array));
+		LinearRing shell = factory.createLinearRing(toSequence(list.get(0)));
 		if (n == 1)
 			return factory.createPolygon(shell);
 		LinearRing[] holes = new LinearRing[n-1];
-		for (int i = 1; i < n; i++) {
-			array = coords.get(i).getAsJsonArray();
-			holes[i-1] = factory.createLinearRing(parseCoordinateArray(array));
-		}
+		for (int i = 1; i < n; i++)
+			holes[i-1] = factory.createLinearRing(toSequence(list.get(i)));
 		return factory.createPolygon(shell, holes);
 	}
-
-	private MultiPolygon parseMultiPolygon(JsonArray coords, GeometryFactory factory) {
-		int n = coords.size();
-		Polygon[]  polygons = new Polygon[n];
-		for (int i = 0; i < n; i++) {
-			polygons[i] = parsePolygon(coords.get(i).getAsJsonArray(), factory);
-		}
+	
+	private MultiPolygon createMultiPolygon(Object coordinates) throws IOException {
+		List<?> list = toList(coordinates);
+		Polygon[] polygons = new Polygon[list.size()];
+		for (int i = 0; i < polygons.length; i++)
+			polygons[i] = createPolygon(list.get(i));
 		return factory.createMultiPolygon(polygons);
 	}
-
-	private GeometryCollection parseGeometryCollection(JsonObject obj, GeometryFactory factory) {
-		JsonArray array = obj.get("geometries").getAsJsonArray();
-		List<Geometry> geometries = new ArrayList<>();
-		for (int i = 0; i < array.size(); i++)
-			geometries.add(parseGeometry(array.get(i).getAsJsonObject(), factory));
-		return new GeometryCollection(geometries.toArray(new Geometry[0]), factory);
+	
+	private CoordinateSequence toSequence(Object coordinates) throws IOException {
+		if (coordinates instanceof CoordinateSequence)
+			return (CoordinateSequence)coordinates;
+		if (coordinates == null || (coordinates instanceof List && ((List<?>)coordinates).isEmpty()))
+			return factory.getCoordinateSequenceFactory().create(0, 2);
+		throw new IOException("Expected an array of positions, but found " + coordinates);
+	}
+	
+	private static List<?> toList(Object coordinates) throws IOException {
+		if (coordinates == null)
+			return Collections.emptyList();
+		if (coordinates instanceof List)
+			return (List<?>)coordinates;
+		// An array of positions where an array of arrays was expected
+		if (coordinates instanceof CoordinateSequence)
+			return Collections.singletonList(coordinates);
+		throw new IOException("Invalid coordinates " + coordinates);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Read-only map of feature properties that keeps the raw JSON object, and only decodes values when they are requested.
+ * <p>
+ * Features often have many properties (e.g. dozens of measurements per cell), but importing them as ROIs 
+ * needs only a few. Decoding every value would create a map and box every number for each feature, 
+ * which dominates the cost of reading large files.
+ * Instead, the top-level keys are located the first time any property is requested, and each value is 
+ * decoded (and kept) the first time it is requested.
+ * Decoded values have the same types as Gson would produce for a {@code Map}, i.e. numbers are doubles, 
+ * and nested objects are maps.
+ * <p>
+ * If the properties haven't been modified since they were read, {@link #toJson()} returns the original JSON 
+ * so that writers can copy it without decoding.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see GeoJsonReader
+ */
+public final class LazyProperties extends AbstractMap<String, Object> {
+
+	private static final TypeAdapter<Object> VALUE_ADAPTER = new Gson().getAdapter(Object.class);
+
+	private static final Gson GSON = GsonUtils.newBuilder().create();
+
+	private final String json;
+
+	// Entries added after reading, which take precedence over the JSON
+	private Map<String, Object> extra;
+
+	// Key/offset table, created when first needed
+	private String[] keys;
+	private int[] starts;
+	private int[] ends;
+	private Object[] values;
+	private boolean[] decoded;
+
+	private Set<Entry<String, Object>> entrySet;
+
+	private LazyProperties(String json) {
+		this.json = json;
+	}
+
+	/**
+	 * Create properties backed by a JSON object.
+	 * The JSON is not validated until a property is requested.
+	 * @param json JSON for an object, e.g. {@code {"name": "Cell", "Area": 25.0}}
+	 * @return
+	 */
+	public static LazyProperties of(String json) {
+		return new LazyProperties(json);
+	}
+
+	/**
+	 * Get JSON for the properties. If no entries have been added since the properties were read, 
+	 * this is the original JSON.
+	 * @return
+	 */
+	public synchronized String toJson() {
+		if (extra == null)
+			return json;
+		return GSON.toJson(new LinkedHashMap<>(this), Map.class);
+	}
+
+	/**
+	 * Add an entry, replacing any value in the JSON. 
+	 * This is only used while features are being read, since the map is otherwise read-only.
+	 * @param key
+	 * @param value
+	 */
+	synchronized void putExtra(String key, Object value) {
+		if (extra == null)
+			extra = new LinkedHashMap<>();
+		extra.put(key, value);
+		entrySet = null;
+	}
+
+	@Override
+	public synchronized Object get(Object key) {
+		if (extra != null && extra.containsKey(key))
+			return extra.get(key);
+		int ind = indexOf(key);
+		return ind < 0 ? null : getValue(ind);
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return (extra != null && extra.containsKey(key)) || indexOf(key) >= 0;
+	}
+
+	@Override
+	public synchronized int size() {
+		return entrySet().size();
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		ensureIndexed();
+		return keys.length == 0 && (extra == null || extra.isEmpty());
+	}
+
+	/**
+	 * Get all the entries. This requires all values to be decoded.
+	 */
+	@Override
+	public synchronized Set<Entry<String, Object>> entrySet() {
+		if (entrySet == null) {
+			ensureIndexed();
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (int i = 0; i < keys.length; i++)
+				map.put(keys[i], getValue(i));
+			if (extra != null)
+				map.putAll(extra);
+			entrySet = Collections.unmodifiableMap(map).entrySet();
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Find the index of a key; if it occurs more than once, the last occurrence is used (as for a map).
+	 */
+	private int indexOf(Object key) {
+		ensureIndexed();
+		for (int i = keys.length - 1; i >= 0; i--) {
+			if (keys[i].equals(key))
+				return i;
+		}
+		return -1;
+	}
+
+	private Object getValue(int ind) {
+		if (!decoded[ind]) {
+			values[ind] = decode(starts[ind], ends[ind]);
+			decoded[ind] = true;
+		}
+		return values[ind];
+	}
+
+	private Object decode(int start, int end) {
+		try {
+			JsonReader reader = new JsonReader(new StringReader(json.substring(start, end)));
+			reader.setLenient(true);
+			return VALUE_ADAPTER.read(reader);
+		} catch (IOException e) {
+			// Shouldn't happen with a StringReader
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * Scan the JSON to find the position of the value for each top-level key, without decoding the values.
+	 */
+	private void ensureIndexed() {
+		if (keys != null)
+			return;
+		int n = 0;
+		String[] keys = new String[8];
+		int[] starts = new int[8];
+		int[] ends = new int[8];
+		int i = skipWhitespace(0);
+		expect(i, '{');
+		i = skipWhitespace(i + 1);
+		if (charAt(i) == '}')
+			i++;
+		else {
+			while (true) {
+				expect(i, '"');
+				int keyEnd = skipString(i);
+				String key = json.substring(i + 1, keyEnd - 1);
+				if (key.indexOf('\\') >= 0)
+					key = (String)decode(i, keyEnd);
+				i = skipWhitespace(keyEnd);
+				expect(i, ':');
+				int start = skipWhitespace(i + 1);
+				int end = skipValue(start);
+				if (n == keys.length) {
+					keys = Arrays.copyOf(keys, n * 2);
+					starts = Arrays.copyOf(starts, n * 2);
+					ends = Arrays.copyOf(ends, n * 2);
+				}
+				keys[n] = key;
+				starts[n] = start;
+				ends[n] = end;
+				n++;
+				i = skipWhitespace(end);
+				if (charAt(i) == ',') {
+					i = skipWhitespace(i + 1);
+					continue;
+				}
+				expect(i, '}');
+				break;
+			}
+		}
+		this.starts = Arrays.copyOf(starts, n);
+		this.ends = Arrays.copyOf(ends, n);
+		this.values = new Object[n];
+		this.decoded = new boolean[n];
+		this.keys = Arrays.copyOf(keys, n);
+	}
+
+	private char charAt(int i) {
+		if (i >= json.length())
+			throw new IllegalStateException("Unexpected end of JSON properties");
+		return json.charAt(i);
+	}
+
+	private void expect(int i, char c) {
+		if (charAt(i) != c)
+			throw new IllegalStateException("Expected '" + c + "' at position " + i + " of JSON properties, but found '" + json.charAt(i) + "'");
+	}
+
+	private int skipWhitespace(int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i)))
+			i++;
+		return i;
+	}
+
+	/**
+	 * Skip a string starting at the specified position, returning the position after the closing quote.
+	 */
+	private int skipString(int i) {
+		i++;
+		while (true) {
+			char c = charAt(i);
+			if (c == '\\')
+				i += 2;
+			else if (c == '"')
+				return i + 1;
+			else
+				i++;
+		}
+	}
+
+	/**
+	 * Skip a value starting at the specified position, returning the position after it.
+	 */
+	private int skipValue(int i) {
+		char c = charAt(i);
+		if (c == '"')
+			return skipString(i);
+		if (c == '{' || c == '[') {
+			int depth = 0;
+			while (true) {
+				c = charAt(i);
+				if (c == '"') {
+					i = skipString(i);
+					continue;
+				}
+				if (c == '{' || c == '[')
+					depth++;
+				else if (c == '}' || c == ']') {
+					depth--;
+					if (depth == 0)
+						return i + 1;
+				}
+				i++;
+			}
+		}
+		// Number or literal
+		while (i < json.length()) {
+			c = json.charAt(i);
+			if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+				break;
+			i++;
+		}
+		return i;
+	}
+
+}
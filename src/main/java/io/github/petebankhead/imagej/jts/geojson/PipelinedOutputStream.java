@@ -0,0 +1,181 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Output stream that passes bytes to another stream on a background thread.
+ * <p>
+ * Bytes are collected into large chunks, which are queued for the background thread. 
+ * This means that slow work done by the wrapped stream (e.g. compression, or writing to network storage) 
+ * can overlap with the work needed to produce the bytes.
+ * If the queue is full, writing blocks until the background thread catches up, so memory use is bounded.
+ * <p>
+ * Exceptions thrown by the wrapped stream are rethrown by the next call to write, flush or close
+ * (unchecked exceptions and errors are wrapped in an {@link IOException}).
+ * Bytes are only guaranteed to have reached the wrapped stream after the stream has been closed.
+ * <p>
+ * This class is not thread-safe: it should only be written to by one thread.
+ */
+class PipelinedOutputStream extends OutputStream {
+
+	private static final Chunk END = new Chunk(new byte[0], 0);
+
+	private final OutputStream out;
+	private final int chunkSize;
+	private final BlockingQueue<Chunk> queue;
+	private final Thread thread;
+
+	private byte[] buffer;
+	private int count;
+	private boolean closed = false;
+
+	private volatile IOException exception;
+
+	/**
+	 * Create a stream that writes to another stream on a background thread.
+	 * @param out the stream to write to; this will be closed on the background thread when this stream is closed
+	 * @param chunkSize number of bytes to collect before passing them to the background thread
+	 * @param maxQueuedChunks maximum number of chunks waiting to be written before writing blocks
+	 * @param name name of the background thread
+	 */
+	PipelinedOutputStream(OutputStream out, int chunkSize, int maxQueuedChunks, String name) {
+		this.out = out;
+		this.chunkSize = chunkSize;
+		this.queue = new ArrayBlockingQueue<>(maxQueuedChunks);
+		this.buffer = new byte[chunkSize];
+		this.thread = new Thread(this::writeChunks, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (count == buffer.length)
+			submit();
+		buffer[count++] = (byte)b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (count == buffer.length)
+				submit();
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Pass any buffered bytes to the background thread.
+	 * This does not wait for them to be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (count > 0)
+			submit();
+	}
+
+	/**
+	 * Write any remaining bytes, and wait for the background thread to close the wrapped stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			if (count > 0)
+				submit();
+			put(END);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for output to be written");
+		} finally {
+			buffer = null;
+		}
+		checkException();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		checkException();
+	}
+
+	private void checkException() throws IOException {
+		IOException e = exception;
+		if (e != null)
+			throw new IOException("Unable to write output: " + e.getLocalizedMessage(), e);
+	}
+
+	private void submit() throws IOException {
+		try {
+			put(new Chunk(buffer, count));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for output to be written");
+		}
+		buffer = new byte[chunkSize];
+		count = 0;
+		checkException();
+	}
+
+	private void put(Chunk chunk) throws InterruptedException {
+		queue.put(chunk);
+	}
+
+	private void writeChunks() {
+		try {
+			Chunk chunk;
+			while ((chunk = queue.take()) != END) {
+				// After an exception, keep taking chunks so that the writing thread never blocks
+				if (exception == null) {
+					try {
+						out.write(chunk.bytes, 0, chunk.length);
+					} catch (Throwable e) {
+						// Includes runtime exceptions from compression, which would otherwise leave the writer blocked
+						exception = toIOException(e);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			exception = new InterruptedIOException("Background writing was interrupted");
+		} finally {
+			try {
+				out.close();
+			} catch (Throwable e) {
+				if (exception == null)
+					exception = toIOException(e);
+			}
+		}
+	}
+
+	private static IOException toIOException(Throwable e) {
+		return e instanceof IOException ? (IOException)e : new IOException(e);
+	}
+
+
+	private static class Chunk {
+
+		private final byte[] bytes;
+		private final int length;
+
+		private Chunk(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+
+	}
+
+}
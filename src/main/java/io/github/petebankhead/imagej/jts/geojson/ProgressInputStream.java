@@ -0,0 +1,78 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Input stream that reports the number of bytes read to a {@link ProgressMonitor}.
+ * <p>
+ * Progress is reported in kilobytes, since files may be larger than the range of an int.
+ * If the monitor requests cancellation, the next read throws a {@link CancellationException}.
+ */
+class ProgressInputStream extends FilterInputStream {
+
+	// Report progress every 1 MB
+	private static final long REPORT_INTERVAL = 1L << 20;
+
+	private final ProgressMonitor monitor;
+	private final int totalKB;
+
+	private long bytesRead = 0;
+	private long nextReport = 0;
+
+	/**
+	 * Create a stream that reports progress.
+	 * @param in the stream to read from
+	 * @param size expected total number of bytes
+	 * @param monitor the monitor that should receive progress updates
+	 */
+	ProgressInputStream(InputStream in, long size, ProgressMonitor monitor) {
+		super(in);
+		this.monitor = monitor;
+		this.totalKB = (int)Math.min(Integer.MAX_VALUE, Math.max(1, size >> 10));
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0)
+			update(1);
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0)
+			update(n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		update(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		// Reset would make the count wrong
+		return false;
+	}
+
+	private void update(long n) {
+		bytesRead += n;
+		if (bytesRead >= nextReport) {
+			nextReport = bytesRead + REPORT_INTERVAL;
+			if (monitor.isCancelled())
+				throw new CancellationException("Reading cancelled");
+			monitor.updateProgress((int)Math.min(totalKB, bytesRead >> 10), totalKB);
+		}
+	}
+
+}
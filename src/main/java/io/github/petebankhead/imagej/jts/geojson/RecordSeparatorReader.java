@@ -0,0 +1,35 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that replaces the ASCII record separator used by GeoJSON text sequences (RFC 8142) 
+ * with a line break, so that the JSON parser sees only whitespace between objects.
+ */
+class RecordSeparatorReader extends FilterReader {
+
+	static final char RECORD_SEPARATOR = '\u001e';
+
+	RecordSeparatorReader(Reader in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int c = super.read();
+		return c == RECORD_SEPARATOR ? '\n' : c;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		int n = super.read(cbuf, off, len);
+		for (int i = off; i < off + n; i++) {
+			if (cbuf[i] == RECORD_SEPARATOR)
+				cbuf[i] = '\n';
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,194 @@
+package io.github.petebankhead.imagej.jts.index;
+
+import java.util.Map;
+
+import ij.ImagePlus;
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+
+/**
+ * A plane of an image, used to group ROIs and features so that only those relevant to the 
+ * current plane need to be processed.
+ * <p>
+ * The channel, slice and time point are zero-based (following the 'plane' property written by the exporter), 
+ * and -1 means that a dimension is not specified. 
+ * The position is the one-based ImageJ stack position used for stacks that are not hyperstacks,
+ * and 0 means that it is not specified.
+ * Unspecified values match any value, so that (for example) a ROI without a position is on all planes.
+ *
+ * @see PlanePartition
+ */
+public final class ImagePlane {
+
+	/**
+	 * Plane with no values specified, which matches all planes.
+	 */
+	public static final ImagePlane ALL = new ImagePlane(-1, -1, -1, 0);
+
+	private final int c;
+	private final int z;
+	private final int t;
+	private final int position;
+
+	private ImagePlane(int c, int z, int t, int position) {
+		this.c = Math.max(-1, c);
+		this.z = Math.max(-1, z);
+		this.t = Math.max(-1, t);
+		this.position = Math.max(0, position);
+	}
+
+	/**
+	 * Get a plane of a hyperstack.
+	 * @param c zero-based channel, or -1 for any channel
+	 * @param z zero-based slice, or -1 for any slice
+	 * @param t zero-based time point, or -1 for any time point
+	 * @return
+	 */
+	public static ImagePlane of(int c, int z, int t) {
+		if (c < 0 && z < 0 && t < 0)
+			return ALL;
+		return new ImagePlane(c, z, t, 0);
+	}
+
+	/**
+	 * Get a plane of a stack that is not a hyperstack.
+	 * @param position one-based stack position, or 0 for any position
+	 * @return
+	 */
+	public static ImagePlane ofPosition(int position) {
+		if (position <= 0)
+			return ALL;
+		return new ImagePlane(-1, -1, -1, position);
+	}
+
+	/**
+	 * Get the plane currently displayed for an image.
+	 * For a hyperstack, this includes both the channel, slice and time point and the stack position, 
+	 * since ImageJ shows ROIs that only have a stack position at that position of a hyperstack.
+	 * @param imp
+	 * @return the current plane, or {@link #ALL} if the image has only one plane
+	 */
+	public static ImagePlane fromImage(ImagePlus imp) {
+		if (imp.isHyperStack())
+			return new ImagePlane(imp.getC()-1, imp.getZ()-1, imp.getT()-1, imp.getCurrentSlice());
+		if (imp.getStackSize() > 1)
+			return ofPosition(imp.getCurrentSlice());
+		return ALL;
+	}
+
+	/**
+	 * Get the plane of a ROI.
+	 * @param roi
+	 * @return
+	 */
+	public static ImagePlane fromRoi(Roi roi) {
+		if (roi.hasHyperStackPosition())
+			return of(roi.getCPosition()-1, roi.getZPosition()-1, roi.getTPosition()-1);
+		return ofPosition(roi.getPosition());
+	}
+
+	/**
+	 * Get the plane of a feature, from its 'plane' property or ImageJ position.
+	 * @param feature
+	 * @return
+	 */
+	public static ImagePlane fromFeature(Feature feature) {
+		return fromProperties(feature.getProperties());
+	}
+
+	/**
+	 * Get the plane from the properties of a feature.
+	 * @param properties
+	 * @return
+	 * @see io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter#createPropertyMapFromRoi(Roi)
+	 */
+	public static ImagePlane fromProperties(Map<String, ?> properties) {
+		if (properties == null)
+			return ALL;
+		Object plane = properties.get("plane");
+		if (plane instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>)plane;
+			return of(getInt(map, "c", -1), getInt(map, "z", -1), getInt(map, "t", -1));
+		}
+		Object imagej = properties.get("imagej");
+		if (imagej instanceof Map)
+			return ofPosition(getInt((Map<?, ?>)imagej, "position", 0));
+		return ALL;
+	}
+
+	private static int getInt(Map<?, ?> map, String key, int defaultValue) {
+		Object value = map.get(key);
+		return value instanceof Number ? ((Number)value).intValue() : defaultValue;
+	}
+
+	/**
+	 * Zero-based channel, or -1 if not specified.
+	 * @return
+	 */
+	public int getC() {
+		return c;
+	}
+
+	/**
+	 * Zero-based slice, or -1 if not specified.
+	 * @return
+	 */
+	public int getZ() {
+		return z;
+	}
+
+	/**
+	 * Zero-based time point, or -1 if not specified.
+	 * @return
+	 */
+	public int getT() {
+		return t;
+	}
+
+	/**
+	 * One-based stack position, or 0 if not specified.
+	 * @return
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Query whether this plane could be the same as another, treating unspecified values as matching anything.
+	 * @param other
+	 * @return
+	 */
+	public boolean matches(ImagePlane other) {
+		return matches(c, other.c) && matches(z, other.z) && matches(t, other.t) &&
+				(position == 0 || other.position == 0 || position == other.position);
+	}
+
+	private static boolean matches(int v1, int v2) {
+		return v1 < 0 || v2 < 0 || v1 == v2;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((c * 31 + z) * 31 + t) * 31 + position;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ImagePlane))
+			return false;
+		ImagePlane other = (ImagePlane)obj;
+		return c == other.c && z == other.z && t == other.t && position == other.position;
+	}
+
+	@Override
+	public String toString() {
+		if (position > 0 && c < 0 && z < 0 && t < 0)
+			return "ImagePlane [position=" + position + "]";
+		if (position > 0)
+			return "ImagePlane [c=" + c + ", z=" + z + ", t=" + t + ", position=" + position + "]";
+		return "ImagePlane [c=" + c + ", z=" + z + ", t=" + t + "]";
+	}
+
+}
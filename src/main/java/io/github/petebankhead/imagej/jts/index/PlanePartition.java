@@ -0,0 +1,187 @@
+package io.github.petebankhead.imagej.jts.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+
+/**
+ * Store of items (e.g. features or ROIs) grouped by the image plane they belong to, 
+ * so that operations on one plane of a large hyperstack only need to touch the items on that plane.
+ * <p>
+ * Typical use is
+ * <pre>
+ * PlanePartition&lt;Roi&gt; partition = PlanePartition.forRois();
+ * partition.addAll(Arrays.asList(overlay.toArray()));
+ * List&lt;Roi&gt; rois = partition.getMatching(ImagePlane.fromImage(imp));
+ * </pre>
+ * Items with unspecified plane values (e.g. ROIs without a position) match every plane, 
+ * and so are returned for every query.
+ * Items are returned grouped by plane, in the order that each plane was first seen, and then 
+ * in the order that they were added.
+ * <p>
+ * All public methods are synchronized, so a partition may be filled on one thread and queried on another.
+ *
+ * @param <T> the type of item
+ */
+public class PlanePartition<T> {
+
+	private final Function<? super T, ImagePlane> planeFunction;
+
+	private final Map<ImagePlane, List<T>> map = new LinkedHashMap<>();
+	private int size = 0;
+
+	private PlanePartition(Function<? super T, ImagePlane> planeFunction) {
+		Objects.requireNonNull(planeFunction, "Plane function must not be null!");
+		this.planeFunction = planeFunction;
+	}
+
+	/**
+	 * Create an empty partition, using a function to determine the plane of each item.
+	 * @param <T>
+	 * @param planeFunction
+	 * @return
+	 */
+	public static <T> PlanePartition<T> create(Function<? super T, ImagePlane> planeFunction) {
+		return new PlanePartition<>(planeFunction);
+	}
+
+	/**
+	 * Create an empty partition for features, using the 'plane' property.
+	 * @return
+	 */
+	public static PlanePartition<Feature> forFeatures() {
+		return create(ImagePlane::fromFeature);
+	}
+
+	/**
+	 * Create an empty partition for ROIs, using their stack or hyperstack position.
+	 * @return
+	 */
+	public static PlanePartition<Roi> forRois() {
+		return create(ImagePlane::fromRoi);
+	}
+
+	/**
+	 * Get the plane of an item, as used by this partition.
+	 * @param item
+	 * @return
+	 */
+	public ImagePlane getPlane(T item) {
+		ImagePlane plane = planeFunction.apply(item);
+		return plane == null ? ImagePlane.ALL : plane;
+	}
+
+	/**
+	 * Add an item.
+	 * @param item
+	 * @return the plane of the item
+	 */
+	public synchronized ImagePlane add(T item) {
+		ImagePlane plane = getPlane(item);
+		map.computeIfAbsent(plane, p -> new ArrayList<>()).add(item);
+		size++;
+		return plane;
+	}
+
+	/**
+	 * Add items.
+	 * @param items
+	 */
+	public synchronized void addAll(Collection<? extends T> items) {
+		for (T item : items)
+			add(item);
+	}
+
+	/**
+	 * Get all planes that contain at least one item.
+	 * @return
+	 */
+	public synchronized Set<ImagePlane> getPlanes() {
+		return new LinkedHashSet<>(map.keySet());
+	}
+
+	/**
+	 * Get the items whose plane is exactly equal to the specified plane.
+	 * @param plane
+	 * @return a new list containing the items
+	 */
+	public synchronized List<T> get(ImagePlane plane) {
+		List<T> list = map.get(plane);
+		return list == null ? new ArrayList<>() : new ArrayList<>(list);
+	}
+
+	/**
+	 * Get the items that could be on the specified plane, including those whose plane is not fully specified.
+	 * @param plane
+	 * @return a new list containing the items
+	 * @see ImagePlane#matches(ImagePlane)
+	 */
+	public synchronized List<T> getMatching(ImagePlane plane) {
+		List<T> matching = new ArrayList<>();
+		for (Map.Entry<ImagePlane, List<T>> entry : map.entrySet()) {
+			if (entry.getKey().matches(plane))
+				matching.addAll(entry.getValue());
+		}
+		return matching;
+	}
+
+	/**
+	 * Remove and return the items that could be on the specified plane.
+	 * This is useful to load items for each plane only once, when it is first needed.
+	 * @param plane
+	 * @return a list containing the removed items
+	 */
+	public synchronized List<T> removeMatching(ImagePlane plane) {
+		List<T> matching = new ArrayList<>();
+		Iterator<Map.Entry<ImagePlane, List<T>>> iter = map.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<ImagePlane, List<T>> entry = iter.next();
+			if (entry.getKey().matches(plane)) {
+				matching.addAll(entry.getValue());
+				iter.remove();
+			}
+		}
+		size -= matching.size();
+		return matching;
+	}
+
+	/**
+	 * Get the total number of items.
+	 * @return
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Query whether the partition contains no items.
+	 * @return
+	 */
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all items.
+	 */
+	public synchronized void clear() {
+		map.clear();
+		size = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PlanePartition [planes=" + map.size() + ", size=" + size + "]";
+	}
+
+}
@@ -0,0 +1,373 @@
+package io.github.petebankhead.imagej.jts.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.plugin.frame.RoiManager;
+import io.github.petebankhead.imagej.jts.converters.RoiFingerprint;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+
+/**
+ * Spatial index for querying ROIs by location.
+ * <p>
+ * ROIs are converted to geometries once, and stored in an {@link STRtree}.
+ * Because an STRtree cannot be modified after it has been built, ROIs added later are held in a
+ * small list that is searched linearly, and removed ROIs are filtered out of the results.
+ * The tree is rebuilt lazily when either of these becomes large relative to the size of the index.
+ * <p>
+ * Query results are returned in the order that the ROIs were added (or the order of the ROIs in the
+ * collection most recently passed to {@link #syncWith(Collection)}).
+ * <p>
+ * All public methods are synchronized, so an index may be shared between threads.
+ */
+public class RoiSpatialIndex {
+
+	private static final int MIN_PENDING_BEFORE_REBUILD = 64;
+
+	private static final Map<Object, RoiSpatialIndex> CACHE = new WeakHashMap<>();
+
+	private final RoiGeometryCache cache;
+
+	private final Map<Roi, Entry> entries = new IdentityHashMap<>();
+
+	private STRtree tree;
+	private int nIndexed = 0;
+	private int nRemoved = 0;
+	private List<Entry> pending = new ArrayList<>();
+
+	private long nextOrder = 0;
+
+
+	/**
+	 * Create an empty index, getting geometries from the default {@link RoiGeometryCache}.
+	 */
+	public RoiSpatialIndex() {
+		this(RoiGeometryCache.getDefault());
+	}
+
+	/**
+	 * Create an empty index, getting geometries from the specified cache.
+	 * @param cache
+	 */
+	public RoiSpatialIndex(RoiGeometryCache cache) {
+		Objects.requireNonNull(cache, "Cache must not be null!");
+		this.cache = cache;
+	}
+
+	/**
+	 * Get an index containing the ROIs currently in an overlay.
+	 * Indexes are cached, so that repeated calls for the same overlay only need to convert
+	 * ROIs that have been added or changed since the last call.
+	 * @param overlay
+	 * @return
+	 */
+	public static RoiSpatialIndex forOverlay(Overlay overlay) {
+		return getCachedIndex(overlay, Arrays.asList(overlay.toArray()));
+	}
+
+	/**
+	 * Get an index containing the ROIs currently in a ROI Manager.
+	 * Indexes are cached, so that repeated calls for the same ROI Manager only need to convert
+	 * ROIs that have been added or changed since the last call.
+	 * @param rm
+	 * @return
+	 */
+	public static RoiSpatialIndex forRoiManager(RoiManager rm) {
+		return getCachedIndex(rm, Arrays.asList(rm.getRoisAsArray()));
+	}
+
+	private static RoiSpatialIndex getCachedIndex(Object key, Collection<? extends Roi> rois) {
+		RoiSpatialIndex index;
+		synchronized (CACHE) {
+			index = CACHE.computeIfAbsent(key, k -> new RoiSpatialIndex());
+		}
+		index.syncWith(rois);
+		return index;
+	}
+
+
+	/**
+	 * Add a ROI to the index. If the ROI is already present, it is updated if it has changed.
+	 * @param roi
+	 */
+	public synchronized void add(Roi roi) {
+		Entry entry = entries.get(roi);
+		if (entry != null) {
+			if (!entry.isStale())
+				return;
+			removeEntry(entry);
+		}
+		addEntry(new Entry(roi, cache.getGeometry(roi)));
+	}
+
+	/**
+	 * Remove a ROI from the index.
+	 * @param roi
+	 * @return true if the ROI was found, false otherwise
+	 */
+	public synchronized boolean remove(Roi roi) {
+		Entry entry = entries.get(roi);
+		if (entry == null)
+			return false;
+		removeEntry(entry);
+		return true;
+	}
+
+	/**
+	 * Update the index so that it contains exactly the specified ROIs.
+	 * Only ROIs that are new, or have changed since they were indexed, need to be converted;
+	 * this is done in parallel.
+	 * @param rois
+	 */
+	public synchronized void syncWith(Collection<? extends Roi> rois) {
+		Set<Roi> current = Collections.newSetFromMap(new IdentityHashMap<>());
+		current.addAll(rois);
+		for (Entry entry : new ArrayList<>(entries.values())) {
+			if (!current.contains(entry.roi) || entry.isStale())
+				removeEntry(entry);
+		}
+
+		List<Roi> toAdd = new ArrayList<>();
+		for (Roi roi : rois) {
+			if (!entries.containsKey(roi))
+				toAdd.add(roi);
+		}
+		List<Geometry> geometries = cache.getGeometries(toAdd, null, null);
+		for (int i = 0; i < toAdd.size(); i++)
+			addEntry(new Entry(toAdd.get(i), geometries.get(i)));
+
+		// Results should match the order of the collection
+		long order = 0;
+		for (Roi roi : rois)
+			entries.get(roi).order = order++;
+		nextOrder = order;
+	}
+
+	/**
+	 * Remove all ROIs from the index.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		pending.clear();
+		tree = null;
+		nIndexed = 0;
+		nRemoved = 0;
+	}
+
+	/**
+	 * Get the number of ROIs in the index.
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the geometry for an indexed ROI.
+	 * @param roi
+	 * @return the geometry, or null if the ROI is not in the index
+	 */
+	public synchronized Geometry getGeometry(Roi roi) {
+		Entry entry = entries.get(roi);
+		return entry == null ? null : entry.geometry;
+	}
+
+
+	/**
+	 * Get all ROIs with bounding boxes that intersect an envelope.
+	 * @param envelope
+	 * @return
+	 */
+	public synchronized List<Roi> queryEnvelope(Envelope envelope) {
+		return query(envelope, e -> true);
+	}
+
+	/**
+	 * Get all ROIs that intersect a geometry.
+	 * @param geometry
+	 * @return
+	 */
+	public synchronized List<Roi> queryIntersects(Geometry geometry) {
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+		return query(geometry.getEnvelopeInternal(), e -> prepared.intersects(e.geometry));
+	}
+
+	/**
+	 * Get all ROIs that are completely within a geometry, e.g. all the cells inside an annotation.
+	 * @param geometry
+	 * @return
+	 */
+	public synchronized List<Roi> queryWithin(Geometry geometry) {
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+		return query(geometry.getEnvelopeInternal(), e -> prepared.covers(e.geometry));
+	}
+
+	/**
+	 * Get all ROIs that completely contain a geometry, e.g. all the ROIs containing a point.
+	 * @param geometry
+	 * @return
+	 */
+	public synchronized List<Roi> queryContains(Geometry geometry) {
+		return query(geometry.getEnvelopeInternal(), e -> e.getPrepared().covers(geometry));
+	}
+
+	/**
+	 * Get the ROIs closest to a geometry, sorted by increasing distance.
+	 * @param geometry
+	 * @param k the maximum number of ROIs to return
+	 * @return
+	 */
+	public synchronized List<Roi> queryNearest(Geometry geometry, int k) {
+		if (k <= 0 || entries.isEmpty())
+			return new ArrayList<>();
+		ensureTree();
+
+		Entry query = new Entry(null, geometry);
+		List<Entry> candidates = new ArrayList<>();
+		if (nIndexed > 0) {
+			// Request extra neighbours, since some may have been removed
+			int nRequested = Math.min(k + nRemoved, nIndexed);
+			Object[] nearest = tree.nearestNeighbour(geometry.getEnvelopeInternal(), query, new EntryDistance(), nRequested);
+			for (Object item : nearest) {
+				Entry entry = (Entry)item;
+				if (!entry.removed)
+					candidates.add(entry);
+			}
+		}
+		candidates.addAll(pending);
+
+		return candidates.stream()
+				.sorted(Comparator.comparingDouble((Entry e) -> e.geometry.distance(geometry))
+						.thenComparingLong(e -> e.order))
+				.limit(k)
+				.map(e -> e.roi)
+				.collect(Collectors.toList());
+	}
+
+
+	private List<Roi> query(Envelope envelope, Predicate<Entry> predicate) {
+		ensureTree();
+		List<Entry> matches = new ArrayList<>();
+		if (nIndexed > 0) {
+			for (Object item : tree.query(envelope)) {
+				Entry entry = (Entry)item;
+				if (!entry.removed && predicate.test(entry))
+					matches.add(entry);
+			}
+		}
+		for (Entry entry : pending) {
+			if (envelope.intersects(entry.envelope) && predicate.test(entry))
+				matches.add(entry);
+		}
+		matches.sort(Comparator.comparingLong(e -> e.order));
+		return matches.stream().map(e -> e.roi).collect(Collectors.toList());
+	}
+
+	private void addEntry(Entry entry) {
+		entry.order = nextOrder++;
+		entries.put(entry.roi, entry);
+		pending.add(entry);
+	}
+
+	private void removeEntry(Entry entry) {
+		entries.remove(entry.roi);
+		entry.removed = true;
+		if (!pending.remove(entry))
+			nRemoved++;
+	}
+
+	/**
+	 * Rebuild the tree if too many entries have been added or removed since it was built.
+	 */
+	private void ensureTree() {
+		int threshold = Math.max(MIN_PENDING_BEFORE_REBUILD, nIndexed / 16);
+		if (tree != null && pending.size() <= threshold && nRemoved <= nIndexed / 4)
+			return;
+		if (tree == null && entries.size() <= MIN_PENDING_BEFORE_REBUILD)
+			return;
+		STRtree newTree = new STRtree();
+		for (Entry entry : entries.values()) {
+			if (!entry.envelope.isNull())
+				newTree.insert(entry.envelope, entry);
+		}
+		newTree.build();
+		tree = newTree;
+		nIndexed = newTree.size();
+		nRemoved = 0;
+		pending = new ArrayList<>();
+		// Empty geometries can't be found by envelope, but should still be available for other queries
+		for (Entry entry : entries.values()) {
+			if (entry.envelope.isNull())
+				pending.add(entry);
+		}
+	}
+
+
+	private static class Entry {
+
+		private final Roi roi;
+		private final Geometry geometry;
+		private final Envelope envelope;
+		private final long fingerprint;
+
+		private PreparedGeometry prepared;
+		private long order;
+		private boolean removed = false;
+
+		private Entry(Roi roi, Geometry geometry) {
+			this.roi = roi;
+			this.geometry = geometry;
+			this.envelope = geometry.getEnvelopeInternal();
+			this.fingerprint = roi == null ? 0L : RoiFingerprint.computeShape(roi);
+		}
+
+		/**
+		 * Check whether the shape of the ROI has been modified since the geometry was created, 
+		 * using the same fingerprint as {@link RoiGeometryCache}.
+		 */
+		private boolean isStale() {
+			return fingerprint != RoiFingerprint.computeShape(roi);
+		}
+
+		private PreparedGeometry getPrepared() {
+			if (prepared == null)
+				prepared = PreparedGeometryFactory.prepare(geometry);
+			return prepared;
+		}
+
+	}
+
+
+	private static class EntryDistance implements ItemDistance {
+
+		@Override
+		public double distance(ItemBoundable item1, ItemBoundable item2) {
+			Geometry g1 = ((Entry)item1.getItem()).geometry;
+			Geometry g2 = ((Entry)item2.getItem()).geometry;
+			return g1.distance(g2);
+		}
+
+	}
+
+}
@@ -0,0 +1,263 @@
+package io.github.petebankhead.imagej.jts.labels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Fill polygonal geometries into a label image, using a scanline polygon filler.
+ * <p>
+ * Typical use is
+ * <pre>
+ * ImageProcessor ip = LabelRasterizer.createLabelImage(width, height, geometries.size());
+ * LabelRasterizer.create().rasterize(geometries, labels, ip);
+ * </pre>
+ * A pixel is filled if its centre is inside the geometry, so that pixel-aligned geometries 
+ * (e.g. those created by {@link LabelTracer}) are recovered exactly. 
+ * Geometries that are not polygonal are ignored. Where geometries overlap, later geometries overwrite earlier ones.
+ * <p>
+ * The edges of each geometry are extracted in parallel, and then the image is filled in parallel 
+ * in strips of rows.
+ *
+ * @see LabelTracer
+ */
+public class LabelRasterizer {
+
+	private static final int DEFAULT_STRIP_HEIGHT = 64;
+
+	/**
+	 * Maximum label that can be stored in a label image. 
+	 * Larger labels require a 32-bit float image, which cannot represent all integers above 2^24.
+	 */
+	public static final int MAX_LABEL = 1 << 24;
+
+	private ForkJoinPool pool;
+	private ProgressMonitor monitor;
+	private int stripHeight = DEFAULT_STRIP_HEIGHT;
+
+	private LabelRasterizer() {}
+
+	/**
+	 * Create a new rasterizer.
+	 * @return
+	 */
+	public static LabelRasterizer create() {
+		return new LabelRasterizer();
+	}
+
+	/**
+	 * Set the pool used to run tasks. If null, the common pool is used.
+	 * @param pool
+	 * @return this rasterizer
+	 */
+	public LabelRasterizer pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Set a monitor to receive progress updates, and request cancellation.
+	 * @param monitor
+	 * @return this rasterizer
+	 */
+	public LabelRasterizer progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		return this;
+	}
+
+	/**
+	 * Set the number of rows in each strip of the image that is filled in parallel.
+	 * @param stripHeight
+	 * @return this rasterizer
+	 */
+	public LabelRasterizer stripHeight(int stripHeight) {
+		if (stripHeight < 1)
+			throw new IllegalArgumentException("Strip height must be at least 1, but was " + stripHeight);
+		this.stripHeight = stripHeight;
+		return this;
+	}
+
+	/**
+	 * Create an empty label image that can hold labels up to a maximum value.
+	 * @param width
+	 * @param height
+	 * @param maxLabel the maximum label
+	 * @return a 16-bit image if possible, otherwise a 32-bit image
+	 * @throws IllegalArgumentException if the maximum label is greater than {@link #MAX_LABEL}
+	 */
+	public static ImageProcessor createLabelImage(int width, int height, int maxLabel) {
+		if (maxLabel > MAX_LABEL)
+			throw new IllegalArgumentException("Maximum label " + maxLabel + " is too large, labels must be at most " + MAX_LABEL);
+		if (maxLabel <= 65535)
+			return new ShortProcessor(width, height);
+		return new FloatProcessor(width, height);
+	}
+
+	/**
+	 * Fill geometries into a label image, using the key of each entry as the label.
+	 * @param geometries map of labels to geometries, in the order they should be filled
+	 * @param ip the image to fill
+	 * @throws CancellationException if the progress monitor requests cancellation
+	 */
+	public void rasterize(Map<Integer, ? extends Geometry> geometries, ImageProcessor ip) throws CancellationException {
+		int[] labels = geometries.keySet().stream().mapToInt(Integer::intValue).toArray();
+		rasterize(new ArrayList<>(geometries.values()), labels, ip);
+	}
+
+	/**
+	 * Fill geometries into a label image.
+	 * @param geometries the geometries to fill
+	 * @param labels the label for each geometry
+	 * @param ip the image to fill; pixels outside all geometries are unchanged
+	 * @throws CancellationException if the progress monitor requests cancellation
+	 */
+	public void rasterize(List<? extends Geometry> geometries, int[] labels, ImageProcessor ip) throws CancellationException {
+		if (geometries.size() != labels.length)
+			throw new IllegalArgumentException("Number of labels (" + labels.length + 
+					") does not match number of geometries (" + geometries.size() + ")");
+		int width = ip.getWidth();
+		int height = ip.getHeight();
+
+		List<EdgeTable> tables = ParallelMapper.<Geometry, EdgeTable>create(EdgeTable::create)
+				.pool(pool)
+				.progress(monitor)
+				.apply(geometries);
+
+		// Assign geometries to strips, keeping them in order
+		int nStrips = (height + stripHeight - 1) / stripHeight;
+		List<List<Integer>> stripIndices = new ArrayList<>(nStrips);
+		for (int s = 0; s < nStrips; s++)
+			stripIndices.add(new ArrayList<>());
+		for (int i = 0; i < tables.size(); i++) {
+			EdgeTable table = tables.get(i);
+			if (table == null)
+				continue;
+			int s1 = Math.max(0, (int)Math.floor(table.minY) / stripHeight);
+			int s2 = Math.min(nStrips - 1, (int)Math.ceil(table.maxY) / stripHeight);
+			for (int s = s1; s <= s2; s++)
+				stripIndices.get(s).add(i);
+		}
+
+		List<Integer> strips = IntStream.range(0, nStrips).boxed().collect(Collectors.toList());
+		ParallelMapper.<Integer, Integer>create(s -> {
+			int yStart = s * stripHeight;
+			int yEnd = Math.min(height, yStart + stripHeight);
+			double[] crossings = new double[16];
+			for (int i : stripIndices.get(s))
+				crossings = tables.get(i).fill(ip, labels[i], yStart, yEnd, width, crossings);
+			return s;
+		})
+				.pool(pool)
+				.progress(monitor)
+				.apply(strips);
+	}
+
+
+	/**
+	 * Non-horizontal edges of all the rings of a polygonal geometry.
+	 */
+	private static class EdgeTable {
+
+		// x1, y1, x2, y2 for each edge, with y1 < y2
+		private final double[] edges;
+		private final int nEdges;
+		private final double minY, maxY;
+
+		private EdgeTable(double[] edges, int nEdges, Envelope envelope) {
+			this.edges = edges;
+			this.nEdges = nEdges;
+			this.minY = envelope.getMinY();
+			this.maxY = envelope.getMaxY();
+		}
+
+		private static EdgeTable create(Geometry geometry) {
+			if (!(geometry instanceof Polygonal) || geometry.isEmpty())
+				return null;
+			double[] edges = new double[geometry.getNumPoints() * 4];
+			int n = 0;
+			for (int i = 0; i < geometry.getNumGeometries(); i++) {
+				Polygon polygon = (Polygon)geometry.getGeometryN(i);
+				n = addEdges(polygon.getExteriorRing(), edges, n);
+				for (int h = 0; h < polygon.getNumInteriorRing(); h++)
+					n = addEdges(polygon.getInteriorRingN(h), edges, n);
+			}
+			return new EdgeTable(edges, n, geometry.getEnvelopeInternal());
+		}
+
+		private static int addEdges(LinearRing ring, double[] edges, int n) {
+			Coordinate[] coords = ring.getCoordinates();
+			for (int i = 1; i < coords.length; i++) {
+				Coordinate c1 = coords[i-1];
+				Coordinate c2 = coords[i];
+				if (c1.y == c2.y)
+					continue;
+				if (c1.y > c2.y) {
+					Coordinate temp = c1;
+					c1 = c2;
+					c2 = temp;
+				}
+				int ind = n * 4;
+				edges[ind] = c1.x;
+				edges[ind+1] = c1.y;
+				edges[ind+2] = c2.x;
+				edges[ind+3] = c2.y;
+				n++;
+			}
+			return n;
+		}
+
+		/**
+		 * Fill rows using the even-odd rule, sampling at pixel centres.
+		 * @return the crossings array, which may have been enlarged so that it can be reused
+		 */
+		private double[] fill(ImageProcessor ip, float label, int yStart, int yEnd, int width, double[] crossings) {
+			yStart = Math.max(yStart, (int)Math.floor(minY));
+			yEnd = Math.min(yEnd, (int)Math.ceil(maxY));
+			for (int y = yStart; y < yEnd; y++) {
+				double yc = y + 0.5;
+				int n = 0;
+				for (int e = 0; e < nEdges; e++) {
+					int ind = e * 4;
+					double y1 = edges[ind+1];
+					double y2 = edges[ind+3];
+					if (yc < y1 || yc >= y2)
+						continue;
+					double x1 = edges[ind];
+					double x2 = edges[ind+2];
+					if (n == crossings.length)
+						crossings = Arrays.copyOf(crossings, n * 2);
+					crossings[n++] = x1 + (yc - y1) * (x2 - x1) / (y2 - y1);
+				}
+				Arrays.sort(crossings, 0, n);
+				int offset = y * width;
+				for (int i = 0; i + 1 < n; i += 2) {
+					int xa = Math.max(0, (int)Math.ceil(crossings[i] - 0.5));
+					int xb = Math.min(width, (int)Math.ceil(crossings[i+1] - 0.5));
+					for (int x = xa; x < xb; x++)
+						ip.setf(offset + x, label);
+				}
+			}
+			return crossings;
+		}
+
+	}
+
+}
@@ -0,0 +1,460 @@
+package io.github.petebankhead.imagej.jts.labels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Trace the boundaries of all labels in a label image, creating one polygonal geometry per label.
+ * <p>
+ * Typical use is
+ * <pre>
+ * Map&lt;Integer, Geometry&gt; geometries = LabelTracer.create()
+ *         .progress(ProgressMonitor.createImageJMonitor("Tracing labels"))
+ *         .trace(ip);
+ * </pre>
+ * Pixels with the value 0 are background. Boundaries follow pixel edges, and only corner vertices are kept, 
+ * so the area of each geometry is equal to the number of pixels with the label.
+ * Pixels with the same label that touch only diagonally belong to different polygons.
+ * Where a boundary touches itself at a vertex (e.g. a concavity or two holes that meet diagonally), 
+ * it is split into separate rings there, so that geometries are always valid.
+ * <p>
+ * The image is split into strips of rows, and the boundary edges of every label are found for each strip 
+ * in parallel, in a single pass over the pixels. 
+ * The edges are then joined into rings separately for each label (also in parallel), which stitches together 
+ * rings that cross the seams between strips.
+ * This is much faster than tracing each label separately with a wand.
+ *
+ * @see LabelRasterizer
+ */
+public class LabelTracer {
+
+	private static final int DEFAULT_STRIP_HEIGHT = 256;
+
+	/**
+	 * Number of labels for which geometries are created in parallel before being passed to a consumer
+	 */
+	private static final int BATCH_SIZE = 4096;
+
+	// Edge directions, in image coordinates (y increases downwards)
+	private static final int RIGHT = 0;
+	private static final int DOWN = 1;
+	private static final int LEFT = 2;
+	private static final int UP = 3;
+
+	private GeometryFactory factory = new GeometryFactory();
+	private ForkJoinPool pool;
+	private ProgressMonitor monitor;
+	private int stripHeight = DEFAULT_STRIP_HEIGHT;
+
+	private LabelTracer() {}
+
+	/**
+	 * Create a new tracer.
+	 * @return
+	 */
+	public static LabelTracer create() {
+		return new LabelTracer();
+	}
+
+	/**
+	 * Set the factory used to create geometries.
+	 * @param factory
+	 * @return this tracer
+	 */
+	public LabelTracer factory(GeometryFactory factory) {
+		this.factory = factory == null ? new GeometryFactory() : factory;
+		return this;
+	}
+
+	/**
+	 * Set the pool used to run tasks. If null, the common pool is used.
+	 * @param pool
+	 * @return this tracer
+	 */
+	public LabelTracer pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Set a monitor to receive progress updates, and request cancellation.
+	 * @param monitor
+	 * @return this tracer
+	 */
+	public LabelTracer progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		return this;
+	}
+
+	/**
+	 * Set the number of rows in each strip of the image that is processed in parallel.
+	 * @param stripHeight
+	 * @return this tracer
+	 */
+	public LabelTracer stripHeight(int stripHeight) {
+		if (stripHeight < 1)
+			throw new IllegalArgumentException("Strip height must be at least 1, but was " + stripHeight);
+		this.stripHeight = stripHeight;
+		return this;
+	}
+
+	/**
+	 * Trace all labels in an image.
+	 * @param ip the label image; for 32-bit images, values are truncated to integers
+	 * @return a map from each label to its geometry, in increasing order of label
+	 * @throws CancellationException if the progress monitor requests cancellation
+	 */
+	public Map<Integer, Geometry> trace(ImageProcessor ip) throws CancellationException {
+		Map<Integer, Geometry> map = new LinkedHashMap<>();
+		trace(ip, map::put);
+		return map;
+	}
+
+	/**
+	 * Trace all labels in an image, passing each geometry to a consumer in increasing order of label.
+	 * Geometries are created in parallel in batches, so that they can be written (e.g. with a 
+	 * {@link io.github.petebankhead.imagej.jts.geojson.GeoJsonWriter}) without ever holding all of 
+	 * them in memory.
+	 * @param ip the label image; for 32-bit images, values are truncated to integers
+	 * @param consumer consumer that accepts the label and its geometry; this is called from the calling thread
+	 * @throws CancellationException if the progress monitor requests cancellation
+	 */
+	public void trace(ImageProcessor ip, BiConsumer<Integer, Geometry> consumer) throws CancellationException {
+		int width = ip.getWidth();
+		int height = ip.getHeight();
+		long stride = width + 1L;
+
+		// Find edges for each strip in parallel
+		List<Integer> stripStarts = IntStream.iterate(0, y -> y + stripHeight)
+				.limit((height + stripHeight - 1) / stripHeight)
+				.boxed()
+				.collect(Collectors.toList());
+		List<Map<Integer, LongList>> stripEdges = ParallelMapper.<Integer, Map<Integer, LongList>>create(
+				y -> findEdges(ip, y, Math.min(height, y + stripHeight)))
+				.pool(pool)
+				.progress(monitor)
+				.apply(stripStarts);
+
+		// Stitch strips by combining the edges for each label
+		Map<Integer, LongList> edges = new TreeMap<>();
+		for (Map<Integer, LongList> strip : stripEdges) {
+			for (Map.Entry<Integer, LongList> entry : strip.entrySet()) {
+				LongList list = edges.get(entry.getKey());
+				if (list == null)
+					edges.put(entry.getKey(), entry.getValue());
+				else
+					list.addAll(entry.getValue());
+			}
+		}
+		stripEdges = null;
+
+		// Create geometries in batches, in parallel
+		List<Integer> labels = new ArrayList<>(edges.keySet());
+		for (int start = 0; start < labels.size(); start += BATCH_SIZE) {
+			List<Integer> batch = labels.subList(start, Math.min(labels.size(), start + BATCH_SIZE));
+			List<long[]> batchEdges = new ArrayList<>(batch.size());
+			for (Integer label : batch)
+				batchEdges.add(edges.remove(label).toArray());
+			List<Geometry> geometries = ParallelMapper.<long[], Geometry>create(e -> createGeometry(e, stride))
+					.pool(pool)
+					.progress(monitor)
+					.apply(batchEdges);
+			for (int i = 0; i < batch.size(); i++)
+				consumer.accept(batch.get(i), geometries.get(i));
+		}
+	}
+
+	/**
+	 * Find the boundary edges of all labels in a strip of rows.
+	 * Edges are directed so that the label is on the right (in image coordinates), and encoded as
+	 * {@code vertex * 4 + direction}, where {@code vertex = y * (width + 1) + x}.
+	 * @param ip
+	 * @param yStart first row (inclusive)
+	 * @param yEnd last row (exclusive)
+	 * @return
+	 */
+	private static Map<Integer, LongList> findEdges(ImageProcessor ip, int yStart, int yEnd) {
+		int width = ip.getWidth();
+		int height = ip.getHeight();
+		long stride = width + 1L;
+		int[] above = new int[width];
+		int[] row = new int[width];
+		int[] below = new int[width];
+		if (yStart > 0)
+			readRow(ip, yStart - 1, above);
+		readRow(ip, yStart, row);
+
+		Map<Integer, LongList> edges = new HashMap<>();
+		// Labels usually occur in runs, so avoid repeated map lookups
+		int lastLabel = 0;
+		LongList lastList = null;
+		for (int y = yStart; y < yEnd; y++) {
+			if (y + 1 < height)
+				readRow(ip, y + 1, below);
+			else
+				Arrays.fill(below, 0);
+			for (int x = 0; x < width; x++) {
+				int label = row[x];
+				if (label == 0)
+					continue;
+				LongList list = lastList;
+				if (label != lastLabel) {
+					list = edges.computeIfAbsent(label, k -> new LongList());
+					lastLabel = label;
+					lastList = list;
+				}
+				long v = y * stride + x;
+				if (above[x] != label)
+					list.add(encode(v, RIGHT));
+				if (x + 1 == width || row[x + 1] != label)
+					list.add(encode(v + 1, DOWN));
+				if (below[x] != label)
+					list.add(encode(v + stride + 1, LEFT));
+				if (x == 0 || row[x - 1] != label)
+					list.add(encode(v + stride, UP));
+			}
+			int[] temp = above;
+			above = row;
+			row = below;
+			below = temp;
+		}
+		return edges;
+	}
+
+	private static void readRow(ImageProcessor ip, int y, int[] row) {
+		int width = row.length;
+		int offset = y * width;
+		Object pixels = ip.getPixels();
+		if (ip instanceof ByteProcessor) {
+			byte[] bytes = (byte[])pixels;
+			for (int x = 0; x < width; x++)
+				row[x] = bytes[offset + x] & 0xff;
+		} else if (ip instanceof ShortProcessor) {
+			short[] shorts = (short[])pixels;
+			for (int x = 0; x < width; x++)
+				row[x] = shorts[offset + x] & 0xffff;
+		} else if (ip instanceof FloatProcessor) {
+			float[] floats = (float[])pixels;
+			for (int x = 0; x < width; x++)
+				row[x] = (int)floats[offset + x];
+		} else if (ip instanceof ColorProcessor) {
+			int[] rgb = (int[])pixels;
+			for (int x = 0; x < width; x++)
+				row[x] = rgb[offset + x] & 0xffffff;
+		} else {
+			for (int x = 0; x < width; x++)
+				row[x] = (int)ip.getf(x, y);
+		}
+	}
+
+	private static long encode(long vertex, int direction) {
+		return vertex * 4 + direction;
+	}
+
+	/**
+	 * Join the edges for a single label into rings, and create a polygon or multipolygon.
+	 * @param edges
+	 * @param stride
+	 * @return
+	 */
+	private Geometry createGeometry(long[] edges, long stride) {
+		Arrays.sort(edges);
+		boolean[] used = new boolean[edges.length];
+		List<Ring> shells = new ArrayList<>();
+		List<Ring> holes = new ArrayList<>();
+		for (int i = 0; i < edges.length; i++) {
+			if (used[i])
+				continue;
+			for (Ring ring : traceRings(edges, used, i, stride)) {
+				if (ring.area > 0)
+					shells.add(ring);
+				else
+					holes.add(ring);
+			}
+		}
+
+		// Assign each hole to the smallest shell that contains it
+		List<List<Ring>> shellHoles = new ArrayList<>();
+		for (int i = 0; i < shells.size(); i++)
+			shellHoles.add(new ArrayList<>());
+		for (Ring hole : holes) {
+			// The midpoint of the first segment is on the hole boundary, but not on any other ring
+			double x = (hole.xy[0] + hole.xy[2]) / 2.0;
+			double y = (hole.xy[1] + hole.xy[3]) / 2.0;
+			int best = -1;
+			for (int s = 0; s < shells.size(); s++) {
+				Ring shell = shells.get(s);
+				if (shell.contains(x, y) && (best < 0 || shell.area < shells.get(best).area))
+					best = s;
+			}
+			if (best >= 0)
+				shellHoles.get(best).add(hole);
+		}
+
+		Polygon[] polygons = new Polygon[shells.size()];
+		for (int s = 0; s < shells.size(); s++) {
+			List<Ring> list = shellHoles.get(s);
+			LinearRing[] holeRings = new LinearRing[list.size()];
+			for (int h = 0; h < holeRings.length; h++)
+				holeRings[h] = list.get(h).toLinearRing(factory);
+			polygons[s] = factory.createPolygon(shells.get(s).toLinearRing(factory), holeRings);
+		}
+		if (polygons.length == 1)
+			return polygons[0];
+		return factory.createMultiPolygon(polygons);
+	}
+
+	/**
+	 * Follow edges to trace a closed boundary, and split it into simple rings.
+	 * <p>
+	 * Where two rings of the same label meet at a vertex (because pixels touch diagonally), 
+	 * the boundary turns towards the label so that the rings are kept separate.
+	 * This means that the label is 4-connected, but the boundary can still pass through the same 
+	 * vertex twice (e.g. around a concavity that opens only diagonally). 
+	 * Whenever this happens, the loop since the previous visit is split off as a separate ring,
+	 * which becomes a hole or shell according to its orientation.
+	 */
+	private static List<Ring> traceRings(long[] edges, boolean[] used, int start, long stride) {
+		List<Ring> rings = new ArrayList<>(1);
+		LongList corners = new LongList();
+		// Position of each vertex with two outgoing edges on the current path; these are rare
+		Map<Long, Integer> pinches = null;
+		int e = start;
+		do {
+			used[e] = true;
+			long vertex = edges[e] >> 2;
+			int direction = (int)(edges[e] & 3);
+			long end = vertex + delta(direction, stride);
+			int next = findNext(edges, used, end, direction, start);
+			int nextDirection = (int)(edges[next] & 3);
+			if (nextDirection != direction) {
+				// A vertex can only be visited twice if we turned right, but could also have turned left
+				if (nextDirection == ((direction + 1) & 3) && 
+						Arrays.binarySearch(edges, encode(end, (direction + 3) & 3)) >= 0) {
+					if (pinches == null)
+						pinches = new HashMap<>();
+					Integer previous = pinches.put(end, corners.size());
+					if (previous != null && previous < corners.size() && corners.get(previous) == end) {
+						rings.add(Ring.fromVertices(corners.toArray(previous, corners.size()), stride));
+						corners.truncate(previous);
+					}
+				}
+				corners.add(end);
+			}
+			e = next;
+		} while (e != start);
+		rings.add(Ring.fromVertices(corners.toArray(), stride));
+		return rings;
+	}
+
+	private static long delta(int direction, long stride) {
+		switch (direction) {
+		case RIGHT:
+			return 1;
+		case DOWN:
+			return stride;
+		case LEFT:
+			return -1;
+		case UP:
+		default:
+			return -stride;
+		}
+	}
+
+	private static int findNext(long[] edges, boolean[] used, long vertex, int direction, int start) {
+		// Prefer turning right (towards the label), then straight on, then left
+		for (int turn : new int[] {1, 0, 3}) {
+			int ind = Arrays.binarySearch(edges, encode(vertex, (direction + turn) & 3));
+			if (ind >= 0 && (!used[ind] || ind == start))
+				return ind;
+		}
+		throw new IllegalStateException("Unable to close ring at vertex " + vertex);
+	}
+
+
+	/**
+	 * A closed ring, stored as x,y pairs (without repeating the first vertex).
+	 */
+	private static class Ring {
+
+		private final double[] xy;
+		private final double area;
+
+		private Ring(double[] xy) {
+			this.xy = xy;
+			this.area = signedArea(xy);
+		}
+
+		private static Ring fromVertices(long[] vertices, long stride) {
+			double[] xy = new double[vertices.length * 2];
+			for (int i = 0; i < vertices.length; i++) {
+				xy[i*2] = vertices[i] % stride;
+				xy[i*2+1] = vertices[i] / stride;
+			}
+			return new Ring(xy);
+		}
+
+		/**
+		 * Signed area, which is positive for shells because the label is always on the right.
+		 */
+		private static double signedArea(double[] xy) {
+			double sum = 0;
+			int n = xy.length / 2;
+			for (int i = 0; i < n; i++) {
+				int j = (i + 1) % n;
+				sum += xy[i*2] * xy[j*2+1] - xy[j*2] * xy[i*2+1];
+			}
+			return sum / 2.0;
+		}
+
+		/**
+		 * Even-odd test for whether a point that isn't on the ring is inside it.
+		 */
+		private boolean contains(double x, double y) {
+			boolean inside = false;
+			int n = xy.length / 2;
+			for (int i = 0, j = n - 1; i < n; j = i++) {
+				double xi = xy[i*2], yi = xy[i*2+1];
+				double xj = xy[j*2], yj = xy[j*2+1];
+				if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi)
+					inside = !inside;
+			}
+			return inside;
+		}
+
+		private LinearRing toLinearRing(GeometryFactory factory) {
+			int n = xy.length / 2;
+			Coordinate[] coords = new Coordinate[n + 1];
+			for (int i = 0; i < n; i++)
+				coords[i] = new Coordinate(xy[i*2], xy[i*2+1]);
+			coords[n] = coords[0];
+			return factory.createLinearRing(coords);
+		}
+
+	}
+
+}
@@ -0,0 +1,64 @@
+package io.github.petebankhead.imagej.jts.labels;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable list of primitive longs, to avoid boxing when collecting many edges.
+ */
+class LongList {
+
+	private long[] values;
+	private int size = 0;
+
+	LongList() {
+		this(16);
+	}
+
+	LongList(int capacity) {
+		values = new long[Math.max(1, capacity)];
+	}
+
+	void add(long value) {
+		if (size == values.length)
+			values = Arrays.copyOf(values, values.length * 2);
+		values[size++] = value;
+	}
+
+	void addAll(LongList list) {
+		if (size + list.size > values.length)
+			values = Arrays.copyOf(values, Math.max(values.length * 2, size + list.size));
+		System.arraycopy(list.values, 0, values, size, list.size);
+		size += list.size;
+	}
+
+	long get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		return values[index];
+	}
+
+	/**
+	 * Remove all values from an index onwards.
+	 * @param size the new size, which must not be larger than the current size
+	 */
+	void truncate(int size) {
+		if (size > this.size)
+			throw new IndexOutOfBoundsException("Can't truncate list of size " + this.size + " to " + size);
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	long[] toArray(int from, int to) {
+		if (to > size)
+			throw new IndexOutOfBoundsException("Index " + to + " out of bounds for size " + size);
+		return Arrays.copyOfRange(values, from, to);
+	}
+
+}
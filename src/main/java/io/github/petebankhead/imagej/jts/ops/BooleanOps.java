@@ -0,0 +1,280 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Boolean operations (union, intersection, difference) across large numbers of geometries, using multiple threads.
+ * <p>
+ * Typical use is
+ * <pre>
+ * Geometry union = BooleanOps.create()
+ *         .progress(ProgressMonitor.createImageJMonitor("Union"))
+ *         .union(geometries);
+ * </pre>
+ * Geometries are first grouped into spatially coherent partitions, which are combined independently
+ * using a cascaded union. The results are then combined pairwise, so that neighbouring partitions are
+ * merged first and each step can run in parallel.
+ * <p>
+ * All overlays use {@link OverlayNGRobust}, which falls back to snapping and then snap-rounding if
+ * floating point noding fails. This is important when combining annotations with shared edges.
+ */
+public class BooleanOps {
+
+	/**
+	 * Maximum number of geometries in a partition
+	 */
+	private static final int PARTITION_SIZE = 256;
+
+	private ForkJoinPool pool;
+	private ProgressMonitor monitor;
+
+	private BooleanOps() {}
+
+	/**
+	 * Create a new instance using the common pool, without progress monitoring.
+	 * @return
+	 */
+	public static BooleanOps create() {
+		return new BooleanOps();
+	}
+
+	/**
+	 * Set the pool used to run tasks. If this is not set, the common pool is used.
+	 * @param pool
+	 * @return this instance
+	 */
+	public BooleanOps pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Set a monitor to receive progress updates, and to request cancellation.
+	 * @param monitor
+	 * @return this instance
+	 */
+	public BooleanOps progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		return this;
+	}
+
+	/**
+	 * Compute the union of all geometries.
+	 * @param geometries
+	 * @return the union, or null if there are no geometries
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public Geometry union(Collection<? extends Geometry> geometries) throws CancellationException {
+		List<Geometry> list = withoutEmpty(geometries);
+		if (list.isEmpty())
+			return null;
+		GeometryFactory factory = list.get(0).getFactory();
+		List<Geometry> unions = mapper((List<Geometry> partition) -> OverlayNGRobust.union(partition, factory))
+				.progress(monitor)
+				.apply(partition(list, PARTITION_SIZE));
+		return reduce(unions, (a, b) -> OverlayNGRobust.overlay(a, b, OverlayNG.UNION));
+	}
+
+	/**
+	 * Compute the intersection of all geometries.
+	 * @param geometries
+	 * @return the intersection (which may be empty), or null if there are no geometries
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public Geometry intersection(Collection<? extends Geometry> geometries) throws CancellationException {
+		if (geometries.isEmpty())
+			return null;
+		List<Geometry> list = new ArrayList<>(geometries);
+		GeometryFactory factory = list.get(0).getFactory();
+		// Avoid any overlays if the envelopes have nothing in common
+		Envelope envelope = new Envelope(list.get(0).getEnvelopeInternal());
+		for (Geometry geometry : list) {
+			envelope = envelope.intersection(geometry.getEnvelopeInternal());
+			if (envelope.isNull())
+				return factory.createEmpty(2);
+		}
+		// Start with the smallest geometries, since intersections can only shrink
+		list.sort(Comparator.comparingDouble(g -> g.getEnvelopeInternal().getArea()));
+		return reduce(list, (a, b) -> {
+			if (a.isEmpty() || b.isEmpty())
+				return factory.createEmpty(2);
+			return OverlayNGRobust.overlay(a, b, OverlayNG.INTERSECTION);
+		});
+	}
+
+	/**
+	 * Subtract the union of geometries from a single geometry.
+	 * @param geometry the geometry from which to subtract
+	 * @param others the geometries to subtract
+	 * @return the difference (which may be empty)
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public Geometry difference(Geometry geometry, Collection<? extends Geometry> others) throws CancellationException {
+		Envelope envelope = geometry.getEnvelopeInternal();
+		List<Geometry> relevant = others.stream()
+				.filter(g -> envelope.intersects(g.getEnvelopeInternal()))
+				.collect(Collectors.toList());
+		Geometry union = union(relevant);
+		if (union == null)
+			return geometry;
+		return OverlayNGRobust.overlay(geometry, union, OverlayNG.DIFFERENCE);
+	}
+
+	/**
+	 * Intersect each geometry with a mask.
+	 * @param geometries
+	 * @param mask
+	 * @return a list of the same size as the input, containing the intersections;
+	 *         entries are null if the intersection is empty
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public List<Geometry> intersectEach(Collection<? extends Geometry> geometries, Geometry mask) throws CancellationException {
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(mask);
+		return mapper((Geometry g) -> {
+				if (!prepared.intersects(g))
+					return null;
+				if (prepared.covers(g))
+					return g;
+				Geometry result = OverlayNGRobust.overlay(g, mask, OverlayNG.INTERSECTION);
+				return result.isEmpty() ? null : result;
+			})
+			.progress(monitor)
+			.apply(geometries);
+	}
+
+	/**
+	 * Subtract a mask from each geometry.
+	 * @param geometries
+	 * @param mask
+	 * @return a list of the same size as the input, containing the differences;
+	 *         entries are null if the difference is empty
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public List<Geometry> differenceEach(Collection<? extends Geometry> geometries, Geometry mask) throws CancellationException {
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(mask);
+		return mapper((Geometry g) -> {
+				if (!prepared.intersects(g))
+					return g;
+				if (prepared.covers(g))
+					return null;
+				Geometry result = OverlayNGRobust.overlay(g, mask, OverlayNG.DIFFERENCE);
+				return result.isEmpty() ? null : result;
+			})
+			.progress(monitor)
+			.apply(geometries);
+	}
+
+
+	private <T> ParallelMapper<T, Geometry> mapper(Function<T, Geometry> function) {
+		return ParallelMapper.<T, Geometry>create(function).pool(pool);
+	}
+
+	/**
+	 * Combine geometries pairwise, in parallel, until only one remains.
+	 * Neighbouring geometries in the list are combined first.
+	 * @param geometries
+	 * @param op
+	 * @return
+	 */
+	private Geometry reduce(List<Geometry> geometries, BinaryOperator<Geometry> op) throws CancellationException {
+		List<Geometry> current = geometries;
+		while (current.size() > 1) {
+			if (monitor != null && monitor.isCancelled())
+				throw new CancellationException();
+			List<Geometry[]> pairs = new ArrayList<>();
+			for (int i = 0; i < current.size(); i += 2) {
+				if (i + 1 < current.size())
+					pairs.add(new Geometry[] {current.get(i), current.get(i+1)});
+				else
+					pairs.add(new Geometry[] {current.get(i)});
+			}
+			current = mapper((Geometry[] pair) -> pair.length == 1 ? pair[0] : op.apply(pair[0], pair[1]))
+					.apply(pairs);
+		}
+		return current.get(0);
+	}
+
+	private static List<Geometry> withoutEmpty(Collection<? extends Geometry> geometries) {
+		return geometries.stream()
+				.filter(g -> g != null && !g.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Split geometries into groups that are close to one another, by sorting the centres of their envelopes
+	 * along a Z-order curve.
+	 * @param geometries
+	 * @param maxSize maximum number of geometries in each group
+	 * @return
+	 */
+	static List<List<Geometry>> partition(List<Geometry> geometries, int maxSize) {
+		Objects.requireNonNull(geometries);
+		int n = geometries.size();
+		if (n <= maxSize)
+			return geometries.isEmpty() ? new ArrayList<>() : Arrays.asList(new ArrayList<>(geometries));
+
+		Envelope bounds = new Envelope();
+		for (Geometry geometry : geometries)
+			bounds.expandToInclude(geometry.getEnvelopeInternal());
+		double scaleX = bounds.getWidth() == 0 ? 0 : 0x7FFF / bounds.getWidth();
+		double scaleY = bounds.getHeight() == 0 ? 0 : 0x7FFF / bounds.getHeight();
+
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			Envelope env = geometries.get(i).getEnvelopeInternal();
+			int x = (int)((env.centre().x - bounds.getMinX()) * scaleX);
+			int y = (int)((env.centre().y - bounds.getMinY()) * scaleY);
+			// Store the index in the lower bits, so that sorting the keys also sorts the indices
+			keys[i] = ((long)interleave(x, y) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		List<List<Geometry>> partitions = new ArrayList<>();
+		for (int start = 0; start < n; start += maxSize) {
+			int end = Math.min(n, start + maxSize);
+			List<Geometry> partition = new ArrayList<>(end - start);
+			for (int i = start; i < end; i++)
+				partition.add(geometries.get((int)keys[i]));
+			partitions.add(partition);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Interleave the lower 16 bits of x and y to give a Morton code.
+	 */
+	private static int interleave(int x, int y) {
+		return spread(x) | (spread(y) << 1);
+	}
+
+	private static int spread(int v) {
+		v &= 0xFFFF;
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+		return v;
+	}
+
+}
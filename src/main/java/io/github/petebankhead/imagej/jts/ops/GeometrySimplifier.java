@@ -0,0 +1,198 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Reduce the number of vertices in geometries, typically before export.
+ * <p>
+ * Typical use is
+ * <pre>
+ * GeometrySimplifier simplifier = GeometrySimplifier.create()
+ *         .method(Method.TOPOLOGY_PRESERVING, 0.5)
+ *         .gridSize(0.25)
+ *         .removeCollinear(true);
+ * Geometry simplified = simplifier.apply(geometry);
+ * </pre>
+ * Steps are applied in the order: simplification, snapping to the precision grid, removal of collinear vertices
+ * (since snapping can create new collinear vertices).
+ * <p>
+ * The simplifier counts the vertices before and after processing, so that the reduction can be reported.
+ * Two simplifiers are equal if they have the same settings, regardless of their counts.
+ * Once configured, a simplifier is safe to use from multiple threads.
+ */
+public class GeometrySimplifier implements UnaryOperator<Geometry> {
+
+	/**
+	 * Simplification method.
+	 */
+	public static enum Method {
+		/**
+		 * No simplification
+		 */
+		NONE("None"),
+		/**
+		 * Douglas-Peucker simplification, which is fast but may change topology (e.g. holes may be removed)
+		 */
+		DOUGLAS_PEUCKER("Douglas-Peucker"),
+		/**
+		 * Simplification that preserves topology, so that rings don't self-intersect or touch
+		 */
+		TOPOLOGY_PRESERVING("Topology preserving");
+
+		private String name;
+
+		private Method(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private Method method = Method.NONE;
+	private double tolerance = 0;
+	private double gridSize = 0;
+	private boolean removeCollinear = false;
+
+	private final LongAdder inputVertices = new LongAdder();
+	private final LongAdder outputVertices = new LongAdder();
+
+	private GeometrySimplifier() {}
+
+	/**
+	 * Create a simplifier that leaves geometries unchanged, which can then be configured.
+	 * @return
+	 */
+	public static GeometrySimplifier create() {
+		return new GeometrySimplifier();
+	}
+
+	/**
+	 * Set the simplification method.
+	 * @param method
+	 * @param tolerance distance tolerance, in pixels
+	 * @return this simplifier
+	 */
+	public GeometrySimplifier method(Method method, double tolerance) {
+		Objects.requireNonNull(method, "Method must not be null!");
+		this.method = method;
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Snap vertices to a grid.
+	 * @param gridSize grid spacing in pixels (e.g. 1 for integer coordinates); if &le; 0, coordinates are unchanged
+	 * @return this simplifier
+	 */
+	public GeometrySimplifier gridSize(double gridSize) {
+		this.gridSize = gridSize;
+		return this;
+	}
+
+	/**
+	 * Remove vertices that lie on a straight line between their neighbours.
+	 * This is particularly effective for traced ROIs, and ROIs created from masks.
+	 * @param removeCollinear
+	 * @return this simplifier
+	 */
+	public GeometrySimplifier removeCollinear(boolean removeCollinear) {
+		this.removeCollinear = removeCollinear;
+		return this;
+	}
+
+	/**
+	 * Query whether the simplifier would leave geometries unchanged.
+	 * @return
+	 */
+	public boolean isIdentity() {
+		return (method == Method.NONE || tolerance <= 0) && gridSize <= 0 && !removeCollinear;
+	}
+
+	/**
+	 * Simplify a geometry.
+	 * Polygons may become empty if they are smaller than the tolerance or grid size.
+	 * @param geometry
+	 * @return the simplified geometry, or null if the input is null
+	 */
+	@Override
+	public Geometry apply(Geometry geometry) {
+		if (geometry == null)
+			return null;
+		inputVertices.add(geometry.getNumPoints());
+		if (!geometry.isEmpty()) {
+			if (tolerance > 0) {
+				if (method == Method.DOUGLAS_PEUCKER)
+					geometry = DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+				else if (method == Method.TOPOLOGY_PRESERVING)
+					geometry = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+			}
+			if (gridSize > 0)
+				geometry = GeometryPrecisionReducer.reduce(geometry, new PrecisionModel(1.0 / gridSize));
+			// A zero tolerance removes only vertices lying exactly on the segment between their neighbours
+			if (removeCollinear && !geometry.isEmpty())
+				geometry = DouglasPeuckerSimplifier.simplify(geometry, 0.0);
+		}
+		outputVertices.add(geometry.getNumPoints());
+		return geometry;
+	}
+
+	/**
+	 * Get the total number of vertices in the geometries passed to {@link #apply(Geometry)}.
+	 * @return
+	 */
+	public long getInputVertexCount() {
+		return inputVertices.sum();
+	}
+
+	/**
+	 * Get the total number of vertices in the geometries returned by {@link #apply(Geometry)}.
+	 * @return
+	 */
+	public long getOutputVertexCount() {
+		return outputVertices.sum();
+	}
+
+	/**
+	 * Reset the vertex counts.
+	 */
+	public void resetCounts() {
+		inputVertices.reset();
+		outputVertices.reset();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(method, tolerance, gridSize, removeCollinear);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof GeometrySimplifier))
+			return false;
+		GeometrySimplifier other = (GeometrySimplifier)obj;
+		return method == other.method &&
+				Double.compare(tolerance, other.tolerance) == 0 &&
+				Double.compare(gridSize, other.gridSize) == 0 &&
+				removeCollinear == other.removeCollinear;
+	}
+
+	@Override
+	public String toString() {
+		return "GeometrySimplifier [method=" + method + ", tolerance=" + tolerance +
+				", gridSize=" + gridSize + ", removeCollinear=" + removeCollinear + "]";
+	}
+
+}
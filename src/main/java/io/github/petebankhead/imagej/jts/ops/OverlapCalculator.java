@@ -0,0 +1,233 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Find overlapping pairs between two sets of geometries, and compute their intersection area and
+ * intersection over union (IoU).
+ * <p>
+ * Typical use is to compare predicted and ground truth segmentations:
+ * <pre>
+ * List&lt;Overlap&gt; overlaps = OverlapCalculator.create()
+ *         .minIoU(0.5)
+ *         .bestMatchOnly(true)
+ *         .compute(predicted, groundTruth);
+ * </pre>
+ * The second set is stored in an {@link STRtree}, so that only pairs with intersecting envelopes
+ * are compared. Only polygonal areas are considered; pairs that don't overlap by a positive area are omitted.
+ */
+public class OverlapCalculator {
+
+	private ForkJoinPool pool;
+	private ProgressMonitor monitor;
+	private double minIoU = 0;
+	private boolean bestMatchOnly = false;
+
+	private OverlapCalculator() {}
+
+	/**
+	 * Create a new calculator that returns all overlapping pairs.
+	 * @return
+	 */
+	public static OverlapCalculator create() {
+		return new OverlapCalculator();
+	}
+
+	/**
+	 * Set the pool used to run tasks. If this is not set, the common pool is used.
+	 * @param pool
+	 * @return this calculator
+	 */
+	public OverlapCalculator pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Set a monitor to receive progress updates, and to request cancellation.
+	 * @param monitor
+	 * @return this calculator
+	 */
+	public OverlapCalculator progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		return this;
+	}
+
+	/**
+	 * Set the minimum IoU for a pair to be included.
+	 * @param minIoU
+	 * @return this calculator
+	 */
+	public OverlapCalculator minIoU(double minIoU) {
+		this.minIoU = minIoU;
+		return this;
+	}
+
+	/**
+	 * Only return the pair with the highest IoU for each geometry in the first set.
+	 * @param bestMatchOnly
+	 * @return this calculator
+	 */
+	public OverlapCalculator bestMatchOnly(boolean bestMatchOnly) {
+		this.bestMatchOnly = bestMatchOnly;
+		return this;
+	}
+
+	/**
+	 * Compute overlaps between two sets of geometries.
+	 * @param first
+	 * @param second
+	 * @return overlaps sorted by the index in the first set, and then by decreasing IoU
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public List<Overlap> compute(List<? extends Geometry> first, List<? extends Geometry> second) throws CancellationException {
+		double[] secondAreas = new double[second.size()];
+		STRtree tree = new STRtree();
+		for (int j = 0; j < second.size(); j++) {
+			Geometry geometry = second.get(j);
+			if (geometry == null || geometry.isEmpty())
+				continue;
+			secondAreas[j] = geometry.getArea();
+			if (secondAreas[j] > 0)
+				tree.insert(geometry.getEnvelopeInternal(), j);
+		}
+		// Build now, since building lazily isn't thread-safe
+		tree.build();
+
+		List<Integer> indices = IntStream.range(0, first.size()).boxed().collect(Collectors.toList());
+		List<List<Overlap>> results = ParallelMapper.create((Integer i) -> computeOverlaps(i, first.get(i), second, secondAreas, tree))
+				.pool(pool)
+				.progress(monitor)
+				.apply(indices);
+
+		List<Overlap> overlaps = new ArrayList<>();
+		for (List<Overlap> list : results)
+			overlaps.addAll(list);
+		return overlaps;
+	}
+
+	private List<Overlap> computeOverlaps(int i, Geometry geometry, List<? extends Geometry> second, double[] secondAreas, STRtree tree) {
+		if (geometry == null || geometry.isEmpty())
+			return new ArrayList<>();
+		double area = geometry.getArea();
+		if (area <= 0)
+			return new ArrayList<>();
+
+		List<?> candidates = tree.query(geometry.getEnvelopeInternal());
+		if (candidates.isEmpty())
+			return new ArrayList<>();
+
+		PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+		List<Overlap> overlaps = new ArrayList<>();
+		for (Object item : candidates) {
+			int j = (Integer)item;
+			Geometry other = second.get(j);
+			if (!prepared.intersects(other))
+				continue;
+			double intersection;
+			if (prepared.covers(other))
+				intersection = secondAreas[j];
+			else if (other.covers(geometry))
+				intersection = area;
+			else
+				intersection = OverlayNGRobust.overlay(geometry, other, OverlayNG.INTERSECTION).getArea();
+			if (intersection <= 0)
+				continue;
+			Overlap overlap = new Overlap(i, j, area, secondAreas[j], intersection);
+			if (overlap.getIoU() >= minIoU)
+				overlaps.add(overlap);
+		}
+		overlaps.sort(Comparator.comparingDouble(Overlap::getIoU).reversed().thenComparingInt(Overlap::getSecondIndex));
+		if (bestMatchOnly && overlaps.size() > 1)
+			return new ArrayList<>(overlaps.subList(0, 1));
+		return overlaps;
+	}
+
+
+	/**
+	 * Overlap between a geometry in the first set and a geometry in the second set.
+	 */
+	public static class Overlap {
+
+		private final int firstIndex;
+		private final int secondIndex;
+		private final double firstArea;
+		private final double secondArea;
+		private final double intersectionArea;
+
+		private Overlap(int firstIndex, int secondIndex, double firstArea, double secondArea, double intersectionArea) {
+			this.firstIndex = firstIndex;
+			this.secondIndex = secondIndex;
+			this.firstArea = firstArea;
+			this.secondArea = secondArea;
+			this.intersectionArea = intersectionArea;
+		}
+
+		/**
+		 * Get the index of the geometry in the first set.
+		 * @return
+		 */
+		public int getFirstIndex() {
+			return firstIndex;
+		}
+
+		/**
+		 * Get the index of the geometry in the second set.
+		 * @return
+		 */
+		public int getSecondIndex() {
+			return secondIndex;
+		}
+
+		public double getFirstArea() {
+			return firstArea;
+		}
+
+		public double getSecondArea() {
+			return secondArea;
+		}
+
+		public double getIntersectionArea() {
+			return intersectionArea;
+		}
+
+		/**
+		 * Get the area of the union of both geometries.
+		 * @return
+		 */
+		public double getUnionArea() {
+			return firstArea + secondArea - intersectionArea;
+		}
+
+		/**
+		 * Get the intersection over union.
+		 * @return
+		 */
+		public double getIoU() {
+			return intersectionArea / getUnionArea();
+		}
+
+		@Override
+		public String toString() {
+			return "Overlap [first=" + firstIndex + ", second=" + secondIndex + ", IoU=" + getIoU() + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,261 @@
+package io.github.petebankhead.imagej.jts.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.locationtech.jts.geom.Geometry;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.gui.GenericDialog;
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.plugin.PlugIn;
+import ij.plugin.frame.RoiManager;
+import io.github.petebankhead.imagej.jts.converters.GeometryToRoiConverter;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+import io.github.petebankhead.imagej.jts.ops.BooleanOps;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+import io.github.petebankhead.imagej.jts.utils.RoiInserter;
+
+/**
+ * Apply boolean operations to all the ROIs in an overlay, or the selected ROIs in the ROI Manager.
+ * <p>
+ * The arg should be 'overlay' or 'roimanager'.
+ *
+ * @see BooleanOps
+ */
+public class BooleanOpsPlugin implements PlugIn {
+
+	private static final String TITLE = "Combine ROIs";
+
+	private static enum Operation {
+		UNION("Union all", false),
+		INTERSECTION("Intersect all", false),
+		INTERSECT_SELECTION("Intersect each with selection", true),
+		SUBTRACT_SELECTION("Subtract selection from each", true),
+		SUBTRACT_FROM_SELECTION("Subtract all from selection", true);
+
+		private String name;
+		private boolean needsSelection;
+
+		private Operation(String name, boolean needsSelection) {
+			this.name = name;
+			this.needsSelection = needsSelection;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static Params lastParams = new Params();
+
+	private Params params = lastParams;
+
+	@Override
+	public void run(String arg) {
+		Objects.requireNonNull(arg, "arg must not be null!");
+		arg = arg.toLowerCase().trim();
+
+		ImagePlus imp = IJ.getImage();
+		if (imp == null) {
+			IJ.noImage();
+			return;
+		}
+
+		boolean doOverlay;
+		if ("overlay".equals(arg))
+			doOverlay = true;
+		else if ("roimanager".equals(arg))
+			doOverlay = false;
+		else
+			throw new IllegalArgumentException("Boolean operation arg should be 'overlay' or 'roimanager'");
+
+		List<Roi> rois;
+		RoiManager rm = null;
+		if (doOverlay) {
+			Overlay overlay = imp.getOverlay();
+			if (overlay == null || overlay.size() == 0) {
+				IJ.error(TITLE, "No overlay found!");
+				return;
+			}
+			rois = Arrays.asList(overlay.toArray());
+		} else {
+			rm = RoiManager.getInstance();
+			if (rm == null || rm.getCount() == 0) {
+				IJ.error(TITLE, "No ROIs found in the ROI Manager!");
+				return;
+			}
+			// This returns all ROIs if none are selected
+			rois = Arrays.asList(rm.getSelectedRoisAsArray());
+		}
+
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addEnumChoice("Operation", lastParams.operation);
+		gd.addCheckbox("Split_into_parts", lastParams.splitParts);
+		gd.addCheckbox("Keep_original", lastParams.keepOriginal);
+		gd.showDialog();
+
+		if (gd.wasCanceled())
+			return;
+
+		params.operation = gd.getNextEnumChoice(Operation.class);
+		params.splitParts = gd.getNextBoolean();
+		params.keepOriginal = gd.getNextBoolean();
+
+		lastParams = params;
+
+		Roi selection = imp.getRoi();
+		if (params.operation.needsSelection && selection == null) {
+			IJ.error(TITLE, "A selection is needed for '" + params.operation + "'");
+			return;
+		}
+
+		List<Roi> results;
+		long startTime = System.currentTimeMillis();
+		try {
+			results = apply(rois, selection, params, ProgressMonitor.createImageJMonitor(params.operation.toString()));
+		} catch (CancellationException e) {
+			IJ.showStatus(params.operation + " cancelled");
+			return;
+		} finally {
+			IJ.showProgress(1.0);
+		}
+		long endTime = System.currentTimeMillis();
+		IJ.showStatus(params.operation + ": " + rois.size() + " ROIs -> " + results.size() +
+				" (" + (endTime - startTime) + " ms)");
+
+		if (doOverlay) {
+			Overlay overlay = imp.getOverlay();
+			if (!params.keepOriginal)
+				overlay.clear();
+			for (Roi roi : results)
+				overlay.add(roi);
+			imp.setOverlay(overlay);
+		} else {
+			if (!params.keepOriginal) {
+				int[] selected = rm.getSelectedIndexes();
+				if (selected.length == 0)
+					rm.reset();
+				else
+					rm.runCommand("Delete");
+			}
+			RoiInserter.addToRoiManager(rm, results);
+		}
+		if (selection != null && params.operation == Operation.SUBTRACT_FROM_SELECTION)
+			imp.killRoi();
+	}
+
+
+	private static List<Roi> apply(List<Roi> rois, Roi selection, Params params, ProgressMonitor monitor) throws CancellationException {
+		RoiGeometryCache cache = RoiGeometryCache.getDefault();
+		List<Geometry> geometries = cache.getGeometries(rois, null, null);
+		Geometry mask = selection == null ? null : cache.getGeometry(selection);
+		BooleanOps ops = BooleanOps.create().progress(monitor);
+		switch (params.operation) {
+		case INTERSECT_SELECTION:
+			return toRois(ops.intersectEach(geometries, mask), geometries, rois);
+		case SUBTRACT_SELECTION:
+			return toRois(ops.differenceEach(geometries, mask), geometries, rois);
+		case SUBTRACT_FROM_SELECTION:
+			return toRois(ops.difference(mask, geometries), params.splitParts);
+		case INTERSECTION:
+			return toRois(ops.intersection(geometries), params.splitParts);
+		case UNION:
+		default:
+			return toRois(ops.union(geometries), params.splitParts);
+		}
+	}
+
+	/**
+	 * Convert the results of an operation applied to each ROI, copying the attributes of the original ROI.
+	 * ROIs with unchanged geometries are duplicated rather than converted.
+	 */
+	private static List<Roi> toRois(List<Geometry> results, List<Geometry> geometries, List<Roi> originals) {
+		List<Integer> indices = IntStream.range(0, results.size()).boxed().collect(Collectors.toList());
+		List<Roi> rois = ParallelMapper.create((Integer i) -> {
+				Geometry result = results.get(i);
+				Roi original = originals.get(i);
+				if (result == null)
+					return null;
+				if (result == geometries.get(i))
+					return (Roi)original.clone();
+				Roi roi = GeometryToRoiConverter.convertToRoi(result);
+				roi.copyAttributes(original);
+				return roi;
+			})
+			.apply(indices);
+		return rois.stream()
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	private static List<Roi> toRois(Geometry geometry, boolean splitParts) {
+		if (geometry == null || geometry.isEmpty())
+			return Collections.emptyList();
+		if (!splitParts || geometry.getNumGeometries() == 1)
+			return Collections.singletonList(GeometryToRoiConverter.convertToRoi(geometry));
+		List<Geometry> parts = new ArrayList<>();
+		for (int i = 0; i < geometry.getNumGeometries(); i++)
+			parts.add(geometry.getGeometryN(i));
+		return ParallelMapper.<Geometry, Roi>create(GeometryToRoiConverter::convertToRoi).apply(parts);
+	}
+
+
+	/**
+	 * Compute the union of ROIs, using multiple threads.
+	 * @param rois
+	 * @return the union, or null if the union is empty
+	 */
+	public static Roi unionRois(Collection<? extends Roi> rois) {
+		Geometry union = BooleanOps.create().union(RoiGeometryCache.getDefault().getGeometries(rois, null, null));
+		return union == null || union.isEmpty() ? null : GeometryToRoiConverter.convertToRoi(union);
+	}
+
+	/**
+	 * Compute the intersection of ROIs, using multiple threads.
+	 * @param rois
+	 * @return the intersection, or null if the intersection is empty
+	 */
+	public static Roi intersectRois(Collection<? extends Roi> rois) {
+		Geometry intersection = BooleanOps.create().intersection(RoiGeometryCache.getDefault().getGeometries(rois, null, null));
+		return intersection == null || intersection.isEmpty() ? null : GeometryToRoiConverter.convertToRoi(intersection);
+	}
+
+	/**
+	 * Subtract ROIs from a ROI, using multiple threads.
+	 * @param roi the ROI from which to subtract
+	 * @param others the ROIs to subtract
+	 * @return the difference, or null if the difference is empty
+	 */
+	public static Roi subtractRois(Roi roi, Collection<? extends Roi> others) {
+		Geometry difference = BooleanOps.create().difference(
+				RoiGeometryCache.getDefault().getGeometry(roi),
+				RoiGeometryCache.getDefault().getGeometries(others, null, null));
+		if (difference.isEmpty())
+			return null;
+		Roi roiDifference = GeometryToRoiConverter.convertToRoi(difference);
+		roiDifference.copyAttributes(roi);
+		return roiDifference;
+	}
+
+
+	private static class Params {
+
+		private Operation operation = Operation.UNION;
+		private boolean splitParts = false;
+		private boolean keepOriginal = false;
+
+	}
+
+}
@@ -1,5 +1,15 @@
 package io.github.petebankhead.imagej.jts.plugins;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.operation.buffer.BufferParameters;
 
@@ -10,7 +20,10 @@ import ij.gui.Overlay;
 import ij.gui.Roi;
 import ij.plugin.PlugIn;
 import io.github.petebankhead.imagej.jts.converters.GeometryToRoiConverter;
-import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+import io.github.petebankhead.imagej.jts.index.ImagePlane;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
 
 public class BufferRoisPlugin implements PlugIn {
 	
@@ -64,6 +77,7 @@ public class BufferRoisPlugin implements PlugIn {
 		gd.addCheckbox("Subtract_interior", lastParams.subtractInterior);
 		gd.addCheckbox("Keep_original", lastParams.keepOriginal);
 		gd.addCheckbox("Do_overlay", lastParams.doOverlay);
+		gd.addCheckbox("Current_plane_only", lastParams.currentPlaneOnly);
 		gd.showDialog();
 		
 		if (gd.wasCanceled())
@@ -74,6 +88,7 @@ public class BufferRoisPlugin implements PlugIn {
 		params.subtractInterior = gd.getNextBoolean();
 		params.keepOriginal = gd.getNextBoolean();
 		params.doOverlay = gd.getNextBoolean();
+		params.currentPlaneOnly = gd.getNextBoolean();
 		
 		lastParams = params;
 		
@@ -84,14 +99,34 @@ public class BufferRoisPlugin implements PlugIn {
 		
 		if (hasOverlay && params.doOverlay) {
 			Overlay overlay = imp.getOverlay();
-			Roi[] rois = overlay.toArray();
-			if (!params.keepOriginal)
-				overlay.clear();
-			for (Roi roi : rois) {
-				Roi roiBuffered = bufferer.buffer(roi);
-				if (roiBuffered != null)
-					overlay.add(roiBuffered);
+			List<Roi> rois = Arrays.asList(overlay.toArray());
+			// For stacks, optionally only buffer the ROIs that could be on the current plane
+			boolean allPlanes = !params.currentPlaneOnly || imp.getStackSize() <= 1;
+			if (!allPlanes) {
+				ImagePlane plane = ImagePlane.fromImage(imp);
+				rois = rois.stream()
+						.filter(r -> ImagePlane.fromRoi(r).matches(plane))
+						.collect(Collectors.toList());
+			}
+			List<Roi> buffered;
+			try {
+				buffered = bufferer.buffer(rois, 
+						ProgressMonitor.createImageJMonitor("Buffering ROIs"));
+			} catch (CancellationException e) {
+				IJ.showStatus("Buffering cancelled");
+				return;
+			} finally {
+				IJ.showProgress(1.0);
+			}
+			// Only update the overlay once all ROIs have been buffered
+			if (!params.keepOriginal) {
+				if (allPlanes)
+					overlay.clear();
+				else
+					removeFromOverlay(overlay, rois);
 			}
+			for (Roi roi : buffered)
+				overlay.add(roi);
 			imp.setOverlay(overlay);
 		} else if (hasRoi) {
 			Roi roi = imp.getRoi();
@@ -114,18 +149,42 @@ public class BufferRoisPlugin implements PlugIn {
 	}
 	
 
+	/**
+	 * Remove ROIs from an overlay, rebuilding it once rather than searching for each ROI.
+	 * @param overlay
+	 * @param rois
+	 */
+	private static void removeFromOverlay(Overlay overlay, Collection<Roi> rois) {
+		Set<Roi> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+		toRemove.addAll(rois);
+		Roi[] current = overlay.toArray();
+		overlay.clear();
+		for (Roi roi : current) {
+			if (!toRemove.contains(roi))
+				overlay.add(roi);
+		}
+	}
+	
 	public static Overlay bufferOverlay(Overlay overlay, double distance) {
 		return bufferOverlay(overlay, distance, BufferParameters.CAP_ROUND);
 	}
 	
+	/**
+	 * Buffer all the ROIs in an overlay, using multiple threads.
+	 * @param overlay
+	 * @param distance
+	 * @param endCapStyle
+	 * @return a new overlay containing the buffered ROIs, in the same order as the original ROIs. 
+	 *         ROIs that are empty after buffering are omitted.
+	 */
 	public static Overlay bufferOverlay(Overlay overlay, double distance, int endCapStyle) {
+		List<Roi> buffered = new RoiBufferer()
+				.distance(distance)
+				.capStyleCode(endCapStyle)
+				.buffer(Arrays.asList(overlay.toArray()), null);
 		Overlay overlayUpdated = new Overlay();
-		for (int i = 0; i < overlay.size(); i++) {
-			Roi roi = overlay.get(i);
-			Roi roiUpdated = bufferRoi(roi, distance, endCapStyle);
-			if (roiUpdated != null)
-				overlayUpdated.add(roiUpdated);
-		}
+		for (Roi roi : buffered)
+			overlayUpdated.add(roi);
 		return overlayUpdated;
 	}
 	
@@ -135,13 +194,10 @@ public class BufferRoisPlugin implements PlugIn {
 	
 	
 	public static Roi bufferRoi(Roi roi, double distance, int endCapStyle) {
-		Geometry geometry = RoiToGeometryConverter.convertToGeometry(roi);
-		Geometry geometryBuffered = geometry.buffer(distance, BufferParameters.DEFAULT_QUADRANT_SEGMENTS, endCapStyle);
-		if (geometryBuffered.isEmpty())
-			return null;
-		Roi roiBuffered = GeometryToRoiConverter.convertToRoi(geometryBuffered);
-		roiBuffered.copyAttributes(roi);
-		return roiBuffered;
+		return new RoiBufferer()
+				.distance(distance)
+				.capStyleCode(endCapStyle)
+				.buffer(roi);
 	}
 	
 	
@@ -152,18 +208,26 @@ public class BufferRoisPlugin implements PlugIn {
 		private boolean subtractInterior = false;
 		private boolean keepOriginal = false;
 		private boolean doOverlay = false;
+		private boolean currentPlaneOnly = false;
 		
 	}
 	
 	
+	/**
+	 * Buffer ROIs. This is safe to use from multiple threads once configured.
+	 */
 	private static class RoiBufferer {
 		
-		private EndCapStyle capStyle = EndCapStyle.ROUND;
+		private int capStyleCode = BufferParameters.CAP_ROUND;
 		private double distance = 1.0;
 		private boolean subtractInterior = false;
 		
 		RoiBufferer capStyle(EndCapStyle style) {
-			this.capStyle = style;
+			return capStyleCode(style.getCapStyleCode());
+		}
+		
+		RoiBufferer capStyleCode(int code) {
+			this.capStyleCode = code;
 			return this;
 		}
 		
@@ -178,9 +242,25 @@ public class BufferRoisPlugin implements PlugIn {
 		}
 		
 		
+		/**
+		 * Buffer ROIs in parallel.
+		 * @param rois
+		 * @param monitor optional monitor for progress and cancellation
+		 * @return the buffered ROIs, in the same order as the input; ROIs that are empty after buffering are omitted
+		 * @throws CancellationException if the monitor requests cancellation
+		 */
+		List<Roi> buffer(List<Roi> rois, ProgressMonitor monitor) throws CancellationException {
+			List<Roi> buffered = ParallelMapper.<Roi, Roi>create(this::buffer)
+					.progress(monitor)
+					.apply(rois);
+			return buffered.stream()
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList());
+		}
+		
 		Roi buffer(Roi roi) {
-			Geometry geometry = RoiToGeometryConverter.convertToGeometry(roi);
-			Geometry geometryBuffered = geometry.buffer(distance, BufferParameters.DEFAULT_QUADRANT_SEGMENTS, capStyle.getCapStyleCode());
+			Geometry geometry = RoiGeometryCache.getDefault().getGeometry(roi);
+			Geometry geometryBuffered = geometry.buffer(distance, BufferParameters.DEFAULT_QUADRANT_SEGMENTS, capStyleCode);
 			if (subtractInterior)
 				geometryBuffered = geometry.symDifference(geometryBuffered);
 			if (geometryBuffered.isEmpty())
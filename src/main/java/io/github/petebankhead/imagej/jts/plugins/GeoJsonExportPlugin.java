@@ -2,32 +2,88 @@ package io.github.petebankhead.imagej.jts.plugins;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
 
-import org.locationtech.jts.geom.Geometry;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import ij.IJ;
 import ij.ImagePlus;
+import ij.WindowManager;
+import ij.gui.GenericDialog;
 import ij.gui.Overlay;
 import ij.gui.Roi;
 import ij.io.SaveDialog;
 import ij.plugin.PlugIn;
 import ij.plugin.frame.RoiManager;
-import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+import io.github.petebankhead.imagej.jts.converters.RoiFeatureCache;
+import io.github.petebankhead.imagej.jts.converters.RoiFeatureCache.SerializedFeature;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+import io.github.petebankhead.imagej.jts.geojson.BinaryFeatureFormat;
+import io.github.petebankhead.imagej.jts.geojson.BinaryFeatureWriter;
 import io.github.petebankhead.imagej.jts.geojson.Feature;
-import io.github.petebankhead.imagej.jts.geojson.FeatureCollection;
-import io.github.petebankhead.imagej.jts.geojson.GeometryTypeAdapter;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonFiles;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonWriter;
+import io.github.petebankhead.imagej.jts.index.ImagePlane;
+import io.github.petebankhead.imagej.jts.ops.GeometrySimplifier;
+import io.github.petebankhead.imagej.jts.ops.GeometrySimplifier.Method;
+import io.github.petebankhead.imagej.jts.utils.BackgroundTasks;
+import io.github.petebankhead.imagej.jts.utils.Metrics;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
 
 public class GeoJsonExportPlugin implements PlugIn {
+	
+	private static final String TITLE = "GeoJSON Export";
+	
+	/**
+	 * Number of ROIs to convert in parallel before writing
+	 */
+	private static final int BATCH_SIZE = 4096;
+	
+	/**
+	 * Serialized features from previous exports, used for incremental export
+	 */
+	private static final RoiFeatureCache FEATURE_CACHE = new RoiFeatureCache();
+	
+	/**
+	 * Output format when exporting multiple ROIs.
+	 */
+	public static enum OutputFormat {
+		/**
+		 * A single GeoJSON FeatureCollection
+		 */
+		FEATURE_COLLECTION("FeatureCollection"),
+		/**
+		 * Newline-delimited GeoJSON, with one feature per line.
+		 * If the file extension is '.geojsons', each feature is also preceded by a record separator (RFC 8142).
+		 */
+		SEQUENCE("One feature per line");
+		
+		private String name;
+		
+		private OutputFormat(String name) {
+			this.name = name;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	private static volatile Metrics lastMetrics;
+	
+	private static Params lastParams = new Params();
+	
+	private Params params = lastParams;
 
 	@Override
 	public void run(String arg) {
@@ -40,8 +96,278 @@ public class GeoJsonExportPlugin implements PlugIn {
 			promptToExportOverlay();			
 		} else if ("roimanager".equals(arg)) {
 			promptToExportRoiManager();						
+		} else if ("options".equals(arg)) {
+			promptForOptions();
 		} else
-			throw new IllegalArgumentException("GeoJSON export arg should be 'roi', 'overlay' or 'roimanager'");
+			throw new IllegalArgumentException("GeoJSON export arg should be 'roi', 'overlay', 'roimanager' or 'options'");
+	}
+	
+	
+	private boolean promptForOptions() {
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addEnumChoice("Format", lastParams.format);
+		gd.addCheckbox("Pretty_print", lastParams.prettyPrint);
+		gd.addCheckbox("Write_binary_cache", lastParams.writeCache);
+		gd.addCheckbox("Incremental_export", lastParams.incremental);
+		gd.addNumericField("Gzip_compression", lastParams.compressionLevel, 0, 3, "(0 = none, 1-9)");
+		gd.addNumericField("Precision_grid", lastParams.precision, 3, 8, "px (0 = unchanged)");
+		gd.addEnumChoice("Simplification", lastParams.simplifyMethod);
+		gd.addNumericField("Tolerance", lastParams.simplifyTolerance, 3, 8, "px");
+		gd.addCheckbox("Remove_collinear_vertices", lastParams.removeCollinear);
+		gd.addCheckbox("Current_plane_only", lastParams.currentPlaneOnly);
+		gd.showDialog();
+		
+		if (gd.wasCanceled())
+			return false;
+		
+		// Only update the stored options once they have all been validated
+		Params params = lastParams.copy();
+		params.format = gd.getNextEnumChoice(OutputFormat.class);
+		params.prettyPrint = gd.getNextBoolean();
+		params.writeCache = gd.getNextBoolean();
+		params.incremental = gd.getNextBoolean();
+		int compressionLevel = (int)gd.getNextNumber();
+		params.precision = gd.getNextNumber();
+		params.simplifyMethod = gd.getNextEnumChoice(Method.class);
+		params.simplifyTolerance = gd.getNextNumber();
+		params.removeCollinear = gd.getNextBoolean();
+		params.currentPlaneOnly = gd.getNextBoolean();
+		
+		if (compressionLevel < GeoJsonFiles.NO_COMPRESSION || compressionLevel > GeoJsonFiles.BEST_COMPRESSION) {
+			IJ.error(TITLE, "Gzip compression must be between 0 and 9!");
+			return false;
+		}
+		params.compressionLevel = compressionLevel;
+		if (Double.isNaN(params.precision) || params.precision < 0) {
+			IJ.error(TITLE, "Precision grid must be >= 0!");
+			return false;
+		}
+		if (Double.isNaN(params.simplifyTolerance) || params.simplifyTolerance < 0) {
+			IJ.error(TITLE, "Tolerance must be >= 0!");
+			return false;
+		}
+		
+		this.params = params;
+		lastParams = params;
+		return true;
+	}
+	
+	/**
+	 * Set the format used when exporting multiple ROIs.
+	 * @param format
+	 */
+	public void setFormat(OutputFormat format) {
+		Objects.requireNonNull(format, "Format must not be null!");
+		params = params.copy();
+		params.format = format;
+	}
+	
+	/**
+	 * Get the format used when exporting multiple ROIs.
+	 * @return
+	 */
+	public OutputFormat getFormat() {
+		return params.format;
+	}
+	
+	/**
+	 * Set whether GeoJSON should be written with indentation and line breaks.
+	 * This is ignored when writing one feature per line.
+	 * Compact output is smaller and faster to write, which matters for large exports.
+	 * @param prettyPrint
+	 */
+	public void setPrettyPrint(boolean prettyPrint) {
+		params = params.copy();
+		params.prettyPrint = prettyPrint;
+	}
+	
+	/**
+	 * Query whether GeoJSON is written with indentation and line breaks.
+	 * @return
+	 */
+	public boolean getPrettyPrint() {
+		return params.prettyPrint;
+	}
+	
+	/**
+	 * Set whether a binary cache should be written alongside exported FeatureCollections.
+	 * This makes importing the same file again much faster, as long as the GeoJSON is unchanged.
+	 * @param writeCache
+	 * @see BinaryFeatureFormat
+	 */
+	public void setWriteCache(boolean writeCache) {
+		params = params.copy();
+		params.writeCache = writeCache;
+	}
+	
+	/**
+	 * Query whether a binary cache is written alongside exported FeatureCollections.
+	 * @return
+	 */
+	public boolean getWriteCache() {
+		return params.writeCache;
+	}
+	
+	/**
+	 * Set whether serialized features should be reused for ROIs that haven't changed since a previous export.
+	 * This makes repeatedly exporting the same overlay much faster. 
+	 * Features are always written compactly, even if pretty printing is requested.
+	 * @param incremental
+	 * @see RoiFeatureCache
+	 */
+	public void setIncremental(boolean incremental) {
+		params = params.copy();
+		params.incremental = incremental;
+	}
+	
+	/**
+	 * Query whether serialized features are reused for ROIs that haven't changed since a previous export.
+	 * @return
+	 */
+	public boolean getIncremental() {
+		return params.incremental;
+	}
+	
+	/**
+	 * Set the gzip compression level for exported files.
+	 * Compression happens on a background thread while ROIs are converted, and greatly reduces 
+	 * file sizes, which helps when writing to network storage.
+	 * Files are always compressed if their name ends with '.gz'.
+	 * @param compressionLevel 0 for uncompressed text, or 1 (fastest) to 9 (smallest) 
+	 * @see GeoJsonFiles
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		if (compressionLevel < GeoJsonFiles.NO_COMPRESSION || compressionLevel > GeoJsonFiles.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Compression level must be between 0 and 9!");
+		params = params.copy();
+		params.compressionLevel = compressionLevel;
+	}
+	
+	/**
+	 * Get the gzip compression level for exported files.
+	 * @return 0 for uncompressed text, or 1 (fastest) to 9 (smallest)
+	 */
+	public int getCompressionLevel() {
+		return params.compressionLevel;
+	}
+	
+	/**
+	 * Set the spacing of a grid that exported coordinates should be snapped to.
+	 * For example, 1 gives integer coordinates and 0.5 gives half-pixel coordinates.
+	 * Snapped coordinates are written with fewer digits, and neighbouring vertices often coincide.
+	 * @param precision grid spacing in pixels, or 0 if coordinates should not be changed
+	 */
+	public void setPrecision(double precision) {
+		params = params.copy();
+		params.precision = precision;
+	}
+	
+	/**
+	 * Get the spacing of the grid that exported coordinates are snapped to.
+	 * @return grid spacing in pixels, or 0 if coordinates are unchanged
+	 */
+	public double getPrecision() {
+		return params.precision;
+	}
+	
+	/**
+	 * Set how geometries should be simplified before export.
+	 * @param method
+	 * @param tolerance distance tolerance in pixels
+	 */
+	public void setSimplification(Method method, double tolerance) {
+		Objects.requireNonNull(method, "Method must not be null!");
+		params = params.copy();
+		params.simplifyMethod = method;
+		params.simplifyTolerance = tolerance;
+	}
+	
+	/**
+	 * Get the method used to simplify geometries before export.
+	 * @return
+	 */
+	public Method getSimplificationMethod() {
+		return params.simplifyMethod;
+	}
+	
+	/**
+	 * Get the distance tolerance used to simplify geometries before export.
+	 * @return
+	 */
+	public double getSimplificationTolerance() {
+		return params.simplifyTolerance;
+	}
+	
+	/**
+	 * Set whether vertices lying on a straight line between their neighbours should be removed before export.
+	 * This doesn't change the shape, but can greatly reduce the size of traced ROIs.
+	 * @param removeCollinear
+	 */
+	public void setRemoveCollinear(boolean removeCollinear) {
+		params = params.copy();
+		params.removeCollinear = removeCollinear;
+	}
+	
+	/**
+	 * Query whether vertices lying on a straight line between their neighbours are removed before export.
+	 * @return
+	 */
+	public boolean getRemoveCollinear() {
+		return params.removeCollinear;
+	}
+	
+	/**
+	 * Set whether exporting an overlay or ROI Manager from a stack should only include ROIs 
+	 * on the plane currently displayed. ROIs without a position are always included.
+	 * ROIs on other planes are removed before conversion, so they are never converted; 
+	 * the order of the remaining ROIs is unchanged.
+	 * @param currentPlaneOnly
+	 * @see ImagePlane#matches(ImagePlane)
+	 */
+	public void setCurrentPlaneOnly(boolean currentPlaneOnly) {
+		params = params.copy();
+		params.currentPlaneOnly = currentPlaneOnly;
+	}
+	
+	/**
+	 * Query whether exporting an overlay or ROI Manager from a stack only includes ROIs on the current plane.
+	 * @return
+	 */
+	public boolean getCurrentPlaneOnly() {
+		return params.currentPlaneOnly;
+	}
+	
+	/**
+	 * Get the ROIs to export, restricted to the current plane if required.
+	 * @param rois
+	 * @param imp the image whose current plane should be used; may be null
+	 * @return
+	 */
+	private List<Roi> selectRoisForExport(List<Roi> rois, ImagePlus imp) {
+		if (!params.currentPlaneOnly || imp == null || imp.getStackSize() <= 1)
+			return rois;
+		ImagePlane plane = ImagePlane.fromImage(imp);
+		return rois.stream()
+				.filter(r -> ImagePlane.fromRoi(r).matches(plane))
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Create a simplifier for the current parameters.
+	 * @return the simplifier, or null if geometries should be exported unchanged
+	 */
+	private GeometrySimplifier createSimplifier() {
+		GeometrySimplifier simplifier = GeometrySimplifier.create()
+				.method(params.simplifyMethod, params.simplifyTolerance)
+				.gridSize(params.precision)
+				.removeCollinear(params.removeCollinear);
+		return simplifier.isIdentity() ? null : simplifier;
+	}
+	
+	private static Feature simplify(Feature feature, GeometrySimplifier simplifier) {
+		if (simplifier == null)
+			return feature;
+		return Feature.create(simplifier.apply(feature.getGeometry()), feature.getProperties());
 	}
 	
 	
@@ -57,7 +383,7 @@ public class GeoJsonExportPlugin implements PlugIn {
 			return false;
 		}
 			
-		Optional<String> path = promptForSavePath("Export Roi to GeoJSON");
+		Optional<String> path = promptForSavePath("Export Roi to GeoJSON", false);
 		if (path.isPresent()) {
 			try {
 				exportRoiToGeoJson(roi, path.get());
@@ -82,15 +408,10 @@ public class GeoJsonExportPlugin implements PlugIn {
 			return false;
 		}
 			
-		Optional<String> path = promptForSavePath("Export Overlay to GeoJSON");
+		Optional<String> path = promptForSavePath("Export Overlay to GeoJSON", true);
 		if (path.isPresent()) {
-			try {
-				exportOverlayToGeoJson(overlay, path.get());
-				return true;
-			} catch (IOException e) {
-				IJ.handleException(e);
-				return false;
-			}
+			exportInBackground(selectRoisForExport(Arrays.asList(overlay.toArray()), imp), path.get());
+			return true;
 		} else
 			return false;
 	}
@@ -103,22 +424,37 @@ public class GeoJsonExportPlugin implements PlugIn {
 			return false;
 		}
 			
-		Optional<String> path = promptForSavePath("Export RoiManager to GeoJSON");
+		Optional<String> path = promptForSavePath("Export RoiManager to GeoJSON", true);
 		if (path.isPresent()) {
+			exportInBackground(selectRoisForExport(Arrays.asList(rm.getRoisAsArray()), WindowManager.getCurrentImage()), path.get());
+			return true;
+		} else
+			return false;
+	}
+	
+	
+	/**
+	 * Export ROIs on a background thread, showing progress and allowing the export to be cancelled with Escape.
+	 * @param rois
+	 * @param path
+	 */
+	private void exportInBackground(List<Roi> rois, String path) {
+		BackgroundTasks.submit(() -> {
 			try {
-				exportRoiManagerToGeoJson(rm, path.get());
-				return true;
+				exportRoisToGeoJson(rois, path, ProgressMonitor.createImageJMonitor(null));
+			} catch (CancellationException e) {
+				IJ.showStatus("GeoJSON export cancelled");
 			} catch (IOException e) {
 				IJ.handleException(e);
-				return false;
 			}
-		} else
-			return false;
+		});
 	}
 	
-	
-	private static Optional<String> promptForSavePath(String title) {
-		SaveDialog dialog = new SaveDialog(title, null, ".geojson");
+	private Optional<String> promptForSavePath(String title, boolean multipleRois) {
+		String extension = multipleRois && params.format == OutputFormat.SEQUENCE ? GeoJsonFiles.SEQUENCE_EXTENSION : ".geojson";
+		if (params.compressionLevel != GeoJsonFiles.NO_COMPRESSION)
+			extension += GeoJsonFiles.GZIP_EXTENSION;
+		SaveDialog dialog = new SaveDialog(title, null, extension);
 		String name = dialog.getFileName();
 		if (name == null)
 			return Optional.empty();
@@ -129,28 +465,215 @@ public class GeoJsonExportPlugin implements PlugIn {
 	}
 	
 	
-	private static Gson createGson() {
-		return new GsonBuilder()
-				.serializeSpecialFloatingPointValues()
-				.setPrettyPrinting()
-				.registerTypeHierarchyAdapter(Geometry.class, new GeometryTypeAdapter())
-				.create();
+	private GeoJsonWriter createWriter(String path) throws IOException {
+		Path file = Paths.get(path);
+		int compressionLevel = params.compressionLevel;
+		if (compressionLevel == GeoJsonFiles.NO_COMPRESSION && GeoJsonFiles.isGzipPath(file))
+			compressionLevel = GeoJsonFiles.DEFAULT_COMPRESSION;
+		return GeoJsonWriter.create(GeoJsonFiles.newWriter(file, compressionLevel), params.prettyPrint);
 	}
 	
 	public void exportRoiToGeoJson(Roi roi, String path) throws IOException {
-		Feature feature = RoiToGeometryConverter.convertToFeature(roi);
-		Gson gson = createGson();
-		try (Writer writer = Files.newBufferedWriter(Paths.get(path))) {
-			gson.toJson(feature, writer);			
+		Feature feature = simplify(RoiGeometryCache.getDefault().getFeature(roi), createSimplifier());
+		try (GeoJsonWriter writer = createWriter(path)) {
+			writer.writeFeature(feature);
 		}
 	}
 	
+	/**
+	 * Export ROIs as a GeoJSON FeatureCollection, or with one feature per line (depending upon {@link #getFormat()}).
+	 * ROIs are converted and written one at a time, so the memory required does not depend 
+	 * upon the number of ROIs.
+	 * @param rois
+	 * @param path
+	 * @throws IOException
+	 */
 	public void exportRoisToGeoJson(Collection<? extends Roi> rois, String path) throws IOException {
-		Gson gson = createGson();
-		FeatureCollection featureCollection = RoiToGeometryConverter.convertToFeatureCollection(rois);
-		try (Writer writer = Files.newBufferedWriter(Paths.get(path))) {
-			gson.toJson(featureCollection, writer);
+		exportRoisToGeoJson(rois, path, null);
+	}
+	
+	/**
+	 * Export ROIs as GeoJSON, reporting progress to a monitor.
+	 * If the export fails or the monitor requests cancellation, the partially-written file is deleted.
+	 * @param rois
+	 * @param path
+	 * @param monitor optional progress monitor; if null, progress is shown in ImageJ's progress bar
+	 * @throws IOException
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public void exportRoisToGeoJson(Collection<? extends Roi> rois, String path, ProgressMonitor monitor) throws IOException, CancellationException {
+		// Convert in parallel, but in batches so that memory use remains bounded
+		List<? extends Roi> list = new ArrayList<>(rois);
+		int n = list.size();
+		RoiGeometryCache geometryCache = RoiGeometryCache.getDefault();
+		GeometrySimplifier simplifier = createSimplifier();
+		
+		// Any existing cache will be out of date
+		Path file = Paths.get(path);
+		Metrics metrics = Metrics.create("Export " + file.getFileName());
+		lastMetrics = metrics;
+		Path cachePath = BinaryFeatureFormat.getCachePath(file);
+		BinaryFeatureWriter cacheWriter = deleteCache(cachePath) && params.writeCache ? createCache(cachePath, file) : null;
+		
+		boolean success = false;
+		try {
+			// The cache must be closed after the GeoJSON, so that it records the final file size
+			try (BinaryFeatureWriter cache = cacheWriter;
+					GeoJsonWriter writer = createWriter(path)) {
+				if (params.format == OutputFormat.SEQUENCE)
+					writer.beginSequence(GeoJsonFiles.isTextSequencePath(file));
+				else
+					writer.beginFeatureCollection();
+				if (params.incremental) {
+					// Cached features are only kept if the simplifier settings are unchanged
+					FEATURE_CACHE.setGeometryTransform(simplifier);
+					FEATURE_CACHE.resetCounts();
+				}
+				if (simplifier != null)
+					simplifier.resetCounts();
+				// Vertex counts before and after simplification, for all ROIs including those from the incremental cache
+				long inputVertices = 0;
+				long outputVertices = 0;
+				for (int start = 0; start < n; start += BATCH_SIZE) {
+					if (monitor != null && monitor.isCancelled())
+						throw new CancellationException("Export cancelled");
+					int end = Math.min(n, start + BATCH_SIZE);
+					List<? extends Roi> batch = list.subList(start, end);
+					if (params.incremental) {
+						boolean includeBinary = cache != null;
+						List<SerializedFeature> features = ParallelMapper.<Roi, SerializedFeature>create(
+								roi -> FEATURE_CACHE.getSerializedFeature(roi, includeBinary))
+								.apply(batch);
+						for (SerializedFeature feature : features) {
+							inputVertices += feature.getSourceVertexCount();
+							outputVertices += feature.getVertexCount();
+							writer.writeRawFeature(feature.getJson());
+							if (cache != null)
+								cache.writeRawFeature(feature.getBinary());
+						}
+					} else {
+						List<Feature> features = ParallelMapper.<Roi, Feature>create(roi -> convertRoi(geometryCache, roi, metrics))
+								.apply(batch);
+						if (simplifier != null) {
+							GeometrySimplifier batchSimplifier = simplifier;
+							features = ParallelMapper.<Feature, Feature>create(f -> simplify(f, batchSimplifier))
+									.apply(features);
+						}
+						for (Feature feature : features) {
+							outputVertices += feature.getGeometry().getNumPoints();
+							writer.writeFeature(feature);
+							if (cache != null)
+								cache.writeFeature(feature);
+						}
+					}
+					metrics.add(Metrics.FEATURES, batch.size());
+					if (monitor == null)
+						IJ.showProgress(end, n);
+					else
+						monitor.updateProgress(end, n);
+				}
+				if (params.format == OutputFormat.SEQUENCE)
+					writer.endSequence();
+				else
+					writer.endFeatureCollection();
+				String status = "Exported " + n + " ROIs";
+				if (params.incremental)
+					status += " (" + FEATURE_CACHE.getMissCount() + " converted)";
+				if (simplifier != null) {
+					if (!params.incremental)
+						inputVertices = simplifier.getInputVertexCount();
+					status += ", vertices reduced from " + inputVertices + " to " + outputVertices;
+				}
+				metrics.add(Metrics.VERTICES, outputVertices);
+				IJ.showStatus(status);
+			}
+			// Only complete once the writers have been closed successfully
+			success = true;
+		} finally {
+			IJ.showProgress(1.0);
+			// The writer has already been closed, so the incomplete file can be removed
+			if (!success) {
+				deleteIncompleteFile(file);
+				deleteCache(cachePath);
+			}
 		}
+		metrics.add(Metrics.BYTES, Files.size(file));
+		if (params.incremental)
+			metrics.add("Converted", FEATURE_CACHE.getMissCount());
+		metrics.logSummary();
+	}
+	
+	/**
+	 * Delete a file that was not written completely, logging a warning if it cannot be deleted
+	 * so that the exception that caused the failure is not hidden.
+	 * @param file
+	 */
+	private static void deleteIncompleteFile(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			IJ.log("Unable to delete incomplete file " + file + ": " + e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * Delete a feature cache, logging a warning rather than failing if it cannot be deleted 
+	 * (e.g. because it is still open elsewhere).
+	 * A cache that is not deleted is ignored when importing, since its recorded file size and modification time
+	 * no longer match the rewritten GeoJSON file.
+	 * @param cachePath
+	 * @return true if the cache does not exist afterwards, false otherwise
+	 */
+	private static boolean deleteCache(Path cachePath) {
+		try {
+			Files.deleteIfExists(cachePath);
+			return true;
+		} catch (IOException e) {
+			IJ.log("Unable to delete feature cache " + cachePath + ": " + e.getLocalizedMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Create a feature cache, logging a warning rather than failing if it cannot be created.
+	 * @param cachePath
+	 * @param file
+	 * @return the cache writer, or null if the cache could not be created
+	 */
+	private static BinaryFeatureWriter createCache(Path cachePath, Path file) {
+		try {
+			return BinaryFeatureWriter.create(cachePath, file);
+		} catch (IOException e) {
+			IJ.log("Unable to write feature cache " + cachePath + ": " + e.getLocalizedMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Get a feature for a ROI, timing the conversion by ROI type.
+	 * @param geometryCache
+	 * @param roi
+	 * @param metrics
+	 * @return
+	 */
+	private static Feature convertRoi(RoiGeometryCache geometryCache, Roi roi, Metrics metrics) {
+		long start = System.nanoTime();
+		try {
+			Feature feature = geometryCache.getFeature(roi);
+			metrics.recordNanos("Convert " + roi.getTypeAsString(), System.nanoTime() - start);
+			return feature;
+		} catch (RuntimeException e) {
+			metrics.increment(Metrics.FAILURES + " (" + roi.getTypeAsString() + ")");
+			throw e;
+		}
+	}
+	
+	/**
+	 * Get the metrics for the most recent export.
+	 * @return the metrics, or null if nothing has been exported
+	 */
+	public static Metrics getLastMetrics() {
+		return lastMetrics;
 	}
 	
 	public void exportOverlayToGeoJson(Overlay overlay, String path) throws IOException {
@@ -163,5 +686,36 @@ public class GeoJsonExportPlugin implements PlugIn {
 		exportRoisToGeoJson(rois, path);
 	}
 
+	
+	private static class Params {
+		
+		private OutputFormat format = OutputFormat.FEATURE_COLLECTION;
+		private boolean prettyPrint = true;
+		private boolean writeCache = false;
+		private boolean incremental = false;
+		private int compressionLevel = GeoJsonFiles.NO_COMPRESSION;
+		private double precision = 0;
+		private Method simplifyMethod = Method.NONE;
+		private double simplifyTolerance = 0;
+		private boolean removeCollinear = false;
+		private boolean currentPlaneOnly = false;
+		
+		private Params copy() {
+			Params params = new Params();
+			params.format = format;
+			params.prettyPrint = prettyPrint;
+			params.writeCache = writeCache;
+			params.incremental = incremental;
+			params.compressionLevel = compressionLevel;
+			params.precision = precision;
+			params.simplifyMethod = simplifyMethod;
+			params.simplifyTolerance = simplifyTolerance;
+			params.removeCollinear = removeCollinear;
+			params.currentPlaneOnly = currentPlaneOnly;
+			return params;
+		}
+		
+	}
+
 
 }
@@ -1,96 +1,533 @@
 package io.github.petebankhead.imagej.jts.plugins;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
 import ij.IJ;
+import ij.ImageListener;
 import ij.ImagePlus;
-import ij.gui.Overlay;
+import ij.gui.GenericDialog;
 import ij.gui.Roi;
 import ij.io.OpenDialog;
 import ij.plugin.PlugIn;
 import ij.plugin.frame.RoiManager;
 import io.github.petebankhead.imagej.jts.converters.GeometryToRoiConverter;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+import io.github.petebankhead.imagej.jts.geojson.BinaryFeatureFormat;
+import io.github.petebankhead.imagej.jts.geojson.BinaryFeatureReader;
 import io.github.petebankhead.imagej.jts.geojson.Feature;
-import io.github.petebankhead.imagej.jts.geojson.FeatureCollection;
-import io.github.petebankhead.imagej.jts.geojson.GsonUtils;
+import io.github.petebankhead.imagej.jts.geojson.FeatureFilter;
+import io.github.petebankhead.imagej.jts.geojson.FeatureReader;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonFiles;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonReader;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonSeqReader;
+import io.github.petebankhead.imagej.jts.index.ImagePlane;
+import io.github.petebankhead.imagej.jts.index.PlanePartition;
+import io.github.petebankhead.imagej.jts.utils.BackgroundTasks;
+import io.github.petebankhead.imagej.jts.utils.Metrics;
+import io.github.petebankhead.imagej.jts.utils.ParallelMapper;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+import io.github.petebankhead.imagej.jts.utils.RoiInserter;
 
+/**
+ * Import GeoJSON features as ROIs.
+ * <p>
+ * The arg should be 'overlay' or 'roimanager'. 
+ * If it also contains 'region', the user is prompted for a region and plane of the current image, 
+ * and only features that intersect it are imported. This makes it possible to work with files
+ * containing far more features than ImageJ can display at once.
+ * <p>
+ * Unless a macro is running, files are read in the background and ROIs are added in batches 
+ * as they are converted. Pressing Escape cancels the import.
+ * <p>
+ * When importing to the overlay of a stack, there is an option to convert only features on the current plane 
+ * while the file is read. Features on other planes are then held in memory, grouped by plane, and converted 
+ * the first time that plane is displayed. This is off by default, because until then the overlay is 
+ * incomplete, so anything that saves or measures it straight after the import would miss them.
+ * <p>
+ * After each import, a summary of the number of features, vertices and bytes read, 
+ * along with conversion times for each geometry type, is printed to the Log window.
+ * Features that can't be converted to ROIs are skipped, and counted as failures.
+ */
 public class GeoJsonImportPlugin implements PlugIn {
+	
+	private static final String TITLE = "Import GeoJSON";
+	
+	/**
+	 * Number of features to read before converting them to ROIs in parallel
+	 */
+	private static final int BATCH_SIZE = 4096;
+	
+	/**
+	 * Minimum time between adding batches of ROIs to the overlay or ROI Manager
+	 */
+	private static final long INSERT_INTERVAL_NANOS = 1_000_000_000L;
+	
+	private static enum RegionType {
+		IMAGE("Image bounds"),
+		SELECTION("Selection"),
+		TILE("Tile");
+		
+		private String name;
+		
+		private RegionType(String name) {
+			this.name = name;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	/**
+	 * Metrics counter for features on other planes that were held when the file was read
+	 */
+	private static final String DEFERRED = "Deferred to other planes";
+	
+	/**
+	 * Metrics counter for deferred features that were added when their plane was displayed
+	 */
+	private static final String LOADED_LATER = "ROIs added when plane displayed";
+	
+	private static volatile Metrics lastMetrics;
+	
+	private static Params lastParams = new Params();
+	
+	private Params params = lastParams;
 
 	@Override
 	public void run(String arg) {
 		
-		OpenDialog dialog = new OpenDialog("Import GeoJSON");
+		arg = arg.toLowerCase().trim();
+		FeatureFilter filter = null;
+		if (arg.contains("region")) {
+			arg = arg.replace("region", "").trim();
+			filter = promptForFilter();
+			if (filter == null)
+				return;
+		}
+		
+		OpenDialog dialog = new OpenDialog(TITLE);
 		String path = dialog.getPath();
 		if (path == null)
 			return;
 		
-		Gson gson = GsonUtils.newBuilder()
-				.create();
-		
-		List<Roi> rois = null;
-		try (Reader reader = Files.newBufferedReader(Paths.get(path))) {
-			JsonElement element = gson.fromJson(reader, JsonElement.class);
-			if (element.isJsonObject()) {
-				JsonObject obj = element.getAsJsonObject();
-				if (obj.has("type")) {
-					String type = obj.get("type").getAsString().toLowerCase().trim();
-					if ("featurecollection".equals(type)) {
-						List<Feature> features = gson.fromJson(obj, FeatureCollection.class).getFeatures();
-						rois = features.stream().map(f -> GeometryToRoiConverter.convertToRoi(f)).collect(Collectors.toList());
-					} else if ("feature".equals(type)) {
-						Feature feature = gson.fromJson(obj, Feature.class);
-						rois = Collections.singletonList(GeometryToRoiConverter.convertToRoi(feature));
-					} else {
-						Geometry geometry = gson.fromJson(obj, Geometry.class);
-						rois = Collections.singletonList(GeometryToRoiConverter.convertToRoi(geometry));
-					}
-				}
+		// Reading happens in the background, so find the destination image now in case another is selected
+		FeatureFilter importFilter = filter;
+		if ("roimanager".equals(arg)) {
+			BackgroundTasks.submit(() -> importRois(Paths.get(path), importFilter, GeoJsonImportPlugin::addToRoiManager, null));
+		} else if ("overlay".equals(arg)) {
+			ImagePlus imp = IJ.getImage();
+			if (imp == null) {
+				IJ.noImage();
+				return;
+			}
+			PlaneLoader loader = null;
+			if (imp.getStackSize() > 1 && !(filter != null && params.currentPlaneOnly)) {
+				if (!promptForPlaneLoading())
+					return;
+				if (params.addPlanesWhenDisplayed)
+					loader = new PlaneLoader(imp);
 			}
-			if (rois != null) {
-				arg = arg.toLowerCase().trim();
-				if ("roimanager".equals(arg)) {
-					RoiManager rm = RoiManager.getInstance();
-					if (rm == null)
-						rm = new RoiManager();
-					for (Roi r : rois)
-						rm.addRoi(r);
-					rm.setVisible(true);
-				} else if ("overlay".equals(arg)) {
-					ImagePlus imp = IJ.getImage();
-					if (imp == null) {
-						IJ.noImage();
-						return;
-					}
-					Overlay overlay = imp.getOverlay();
-					if (overlay == null)
-						overlay = new Overlay();
-					for (Roi r : rois) {
-						overlay.add(r);
-					}
-					imp.setOverlay(overlay);
-				} else if (rois.size() == 1 && IJ.getImage() != null) {
+			PlaneLoader importLoader = loader;
+			BackgroundTasks.submit(() -> importRois(Paths.get(path), importFilter, rois -> RoiInserter.addToOverlay(imp, rois), importLoader));
+		} else {
+			BackgroundTasks.submit(() -> {
+				List<Roi> rois = new ArrayList<>();
+				importRois(Paths.get(path), importFilter, rois::addAll, null);
+				if (rois.size() == 1 && IJ.getImage() != null) {
 					IJ.getImage().setRoi(rois.get(0));
-				} else {
+				} else if (!rois.isEmpty()) {
 					IJ.error("arg input should be 'overlay' or 'roimanager'!");					
 				}
-			}
-				
-		} catch (IOException e) {
+			});
+		}
+	}
+	
+	/**
+	 * Get the metrics for the most recent import.
+	 * If features on other planes are added when displayed, they are counted as they are added.
+	 * @return the metrics, or null if nothing has been imported
+	 */
+	public static Metrics getLastMetrics() {
+		return lastMetrics;
+	}
+	
+	private static void addToRoiManager(List<Roi> rois) {
+		RoiManager rm = RoiManager.getInstance();
+		if (rm == null)
+			rm = new RoiManager();
+		RoiInserter.addToRoiManager(rm, rois);
+		rm.setVisible(true);
+	}
+	
+	/**
+	 * Import ROIs from a file, passing them to a consumer in batches as soon as they have been converted.
+	 * To avoid refreshing the display too often, ROIs are grouped so that the consumer is called 
+	 * at most about once per second, and then once more at the end.
+	 * Progress is shown in ImageJ's progress bar, and pressing Escape cancels the import.
+	 * ROIs that were converted before cancellation are kept.
+	 * @param path
+	 * @param filter optional filter to select the features to import
+	 * @param consumer
+	 * @param loader optional loader for features that aren't on the current plane, which is started once reading is complete
+	 * @return the number of ROIs passed to the consumer
+	 */
+	private static int importRois(Path path, FeatureFilter filter, Consumer<List<Roi>> consumer, PlaneLoader loader) {
+		ProgressMonitor monitor = ProgressMonitor.createImageJMonitor(null);
+		ImportTimings timings = new ImportTimings();
+		Metrics metrics = Metrics.create("Import " + path.getFileName());
+		lastMetrics = metrics;
+		List<Roi> pending = new ArrayList<>();
+		AtomicInteger count = new AtomicInteger();
+		Consumer<List<Roi>> inserter = rois -> {
+			long start = System.nanoTime();
+			consumer.accept(rois);
+			timings.insertNanos += System.nanoTime() - start;
+			timings.lastInsert = System.nanoTime();
+			IJ.showStatus("Imported " + count.addAndGet(rois.size()) + " ROIs");
+		};
+		long startTime = System.currentTimeMillis();
+		try (FeatureReader reader = openReader(path, monitor, metrics)) {
+			readRois(filter == null ? reader : reader.filter(filter), monitor, timings, metrics, loader, rois -> {
+				pending.addAll(rois);
+				if (System.nanoTime() - timings.lastInsert >= INSERT_INTERVAL_NANOS) {
+					inserter.accept(new ArrayList<>(pending));
+					pending.clear();
+				}
+			});
+			if (!pending.isEmpty())
+				inserter.accept(pending);
+			long endTime = System.currentTimeMillis();
+			int deferred = loader == null ? 0 : loader.start(metrics);
+			if (count.get() == 0 && deferred == 0 && filter != null)
+				IJ.showStatus("No features found in the requested region");
+			else if (deferred > 0)
+				IJ.showStatus("Imported " + count.get() + " ROIs (" + (endTime - startTime) + " ms: " + timings + "), " + 
+						deferred + " more on other planes will be added when displayed");
+			else
+				IJ.showStatus("Imported " + count.get() + " ROIs (" + (endTime - startTime) + " ms: " + timings + ")");
+			metrics.add("ROIs", count.get());
+			metrics.logSummary();
+		} catch (CancellationException e) {
+			if (!pending.isEmpty())
+				inserter.accept(pending);
+			IJ.showStatus("Import cancelled after " + count.get() + " ROIs");
+		} catch (IOException | UncheckedIOException e) {
 			IJ.handleException(e);
+		} finally {
+			IJ.showProgress(1.0);
 		}
+		return count.get();
 	}
+	
+	/**
+	 * Read features and convert them to ROIs.
+	 * Features are converted in batches, so that we never need to hold all of them in memory.
+	 * @param reader
+	 * @param monitor monitor used to check for cancellation between batches
+	 * @param timings timings to update for parsing and conversion
+	 * @param metrics metrics to update for each feature read and converted
+	 * @param loader optional loader that takes features that aren't on the current plane, so that they aren't converted now
+	 * @param consumer consumer for each batch of ROIs
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	private static void readRois(FeatureReader reader, ProgressMonitor monitor, ImportTimings timings, Metrics metrics, 
+			PlaneLoader loader, Consumer<List<Roi>> consumer) throws CancellationException {
+		GeometryToRoiConverter converter = new GeometryToRoiConverter();
+		ParallelMapper<Feature, Roi> mapper = ParallelMapper.create(feature -> convertFeature(converter, feature, metrics));
+		List<Feature> batch = new ArrayList<>();
+		long start = System.nanoTime();
+		while (reader.hasNext()) {
+			Feature feature = reader.next();
+			metrics.increment(Metrics.FEATURES);
+			Geometry geometry = feature.getGeometry();
+			if (geometry != null) {
+				metrics.add(Metrics.VERTICES, geometry.getNumPoints());
+				if (loader == null || !loader.defer(feature))
+					batch.add(feature);
+			}
+			if (batch.size() == BATCH_SIZE || !reader.hasNext()) {
+				timings.parseNanos += System.nanoTime() - start;
+				if (monitor.isCancelled())
+					throw new CancellationException("Import cancelled");
+				if (!batch.isEmpty()) {
+					start = System.nanoTime();
+					List<Roi> rois = new ArrayList<>(mapper.apply(batch));
+					rois.removeIf(Objects::isNull);
+					timings.convertNanos += System.nanoTime() - start;
+					consumer.accept(rois);
+				}
+				batch.clear();
+				start = System.nanoTime();
+			}
+		}
+	}
+	
+	/**
+	 * Convert a feature to a ROI, timing the conversion by geometry type.
+	 * @param converter
+	 * @param feature
+	 * @param metrics
+	 * @return the ROI, or null if the feature couldn't be converted
+	 */
+	private static Roi convertFeature(GeometryToRoiConverter converter, Feature feature, Metrics metrics) {
+		String type = feature.getGeometry().getGeometryType();
+		long start = System.nanoTime();
+		try {
+			Roi roi = converter.featureToRoi(feature);
+			metrics.recordNanos("Convert " + type, System.nanoTime() - start);
+			return roi;
+		} catch (RuntimeException e) {
+			metrics.increment(Metrics.FAILURES + " (" + type + ")");
+			return null;
+		}
+	}
+	
+	/**
+	 * Prompt for the region and plane of the current image from which features should be imported.
+	 * @return the filter, or null if the dialog was cancelled or there is no image
+	 */
+	private FeatureFilter promptForFilter() {
+		ImagePlus imp = IJ.getImage();
+		if (imp == null) {
+			IJ.noImage();
+			return null;
+		}
+		
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addEnumChoice("Region", lastParams.regionType);
+		gd.addNumericField("Tile_size", lastParams.tileSize, 0, 6, "pixels");
+		gd.addNumericField("Tile_column", lastParams.tileColumn, 0);
+		gd.addNumericField("Tile_row", lastParams.tileRow, 0);
+		gd.addCheckbox("Current_plane_only", lastParams.currentPlaneOnly);
+		gd.addMessage("Tiles are numbered from 0, starting at the top left of the image");
+		gd.showDialog();
+		
+		if (gd.wasCanceled())
+			return null;
+		
+		params = lastParams.copy();
+		params.regionType = gd.getNextEnumChoice(RegionType.class);
+		params.tileSize = Math.max(1, (int)gd.getNextNumber());
+		params.tileColumn = Math.max(0, (int)gd.getNextNumber());
+		params.tileRow = Math.max(0, (int)gd.getNextNumber());
+		params.currentPlaneOnly = gd.getNextBoolean();
+		
+		lastParams = params;
+		
+		FeatureFilter filter = FeatureFilter.create();
+		switch (params.regionType) {
+		case SELECTION:
+			Roi selection = imp.getRoi();
+			if (selection == null) {
+				IJ.error(TITLE, "A selection is needed to define the region!");
+				return null;
+			}
+			filter.region(RoiToGeometryConverter.convertToGeometry(selection));
+			break;
+		case TILE:
+			double x = (double)params.tileColumn * params.tileSize;
+			double y = (double)params.tileRow * params.tileSize;
+			filter.region(new Envelope(x, x + params.tileSize, y, y + params.tileSize));
+			break;
+		case IMAGE:
+		default:
+			filter.region(new Envelope(0, imp.getWidth(), 0, imp.getHeight()));
+			break;
+		}
+		
+		if (params.currentPlaneOnly)
+			filter.plane(ImagePlane.fromImage(imp));
+		return filter;
+	}
+	
+	/**
+	 * Prompt whether features on other planes of a stack should only be added to the overlay when their plane is displayed.
+	 * @return false if the dialog was cancelled, true otherwise
+	 */
+	private boolean promptForPlaneLoading() {
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addCheckbox("Add_other_planes_when_displayed", lastParams.addPlanesWhenDisplayed);
+		gd.addMessage("This makes importing to large stacks faster, but the overlay is incomplete\n"
+				+ "until every plane has been displayed");
+		gd.showDialog();
+		
+		if (gd.wasCanceled())
+			return false;
+		
+		params = lastParams.copy();
+		params.addPlanesWhenDisplayed = gd.getNextBoolean();
+		
+		lastParams = params;
+		return true;
+	}
+	
+	/**
+	 * Open a reader for a GeoJSON file, using a binary cache instead if there is one that is up to date.
+	 * The GeoJSON may be gzip-compressed, and may be a sequence with one feature per line.
+	 * Only the properties needed to create ROIs are kept.
+	 * @param path
+	 * @param monitor monitor for reading progress
+	 * @param metrics metrics to update with the size of the file that is read
+	 * @return
+	 * @throws IOException
+	 */
+	private static FeatureReader openReader(Path path, ProgressMonitor monitor, Metrics metrics) throws IOException {
+		if (BinaryFeatureFormat.hasValidCache(path)) {
+			try {
+				Path cachePath = BinaryFeatureFormat.getCachePath(path);
+				long bytes = Files.size(cachePath);
+				FeatureReader reader = BinaryFeatureReader.open(cachePath).progress(monitor);
+				metrics.add(Metrics.BYTES, bytes);
+				IJ.showStatus("Reading features from cache");
+				return reader;
+			} catch (IOException e) {
+				IJ.log("Unable to read feature cache, will read GeoJSON instead: " + e.getLocalizedMessage());
+			}
+		}
+		metrics.add(Metrics.BYTES, Files.size(path));
+		if (GeoJsonFiles.isSequence(path))
+			return GeoJsonSeqReader.open(path, monitor, GeometryToRoiConverter.ROI_PROPERTY_KEYS);
+		return GeoJsonReader.create(GeoJsonFiles.newReader(path, monitor))
+				.keepProperties(GeometryToRoiConverter.ROI_PROPERTY_KEYS);
+	}
+	
+	
+	/**
+	 * Loader that holds features until the plane they belong to is displayed, 
+	 * so that large hyperstacks don't require all features to be converted up front.
+	 */
+	private static class PlaneLoader implements ImageListener {
+		
+		private final ImagePlus imp;
+		private final ImagePlane initialPlane;
+		private final PlanePartition<Feature> deferred = PlanePartition.forFeatures();
+		private Metrics metrics;
+		
+		private PlaneLoader(ImagePlus imp) {
+			this.imp = imp;
+			this.initialPlane = ImagePlane.fromImage(imp);
+		}
+		
+		/**
+		 * Hold a feature if it can't be on the plane that was displayed when the import started.
+		 * @param feature
+		 * @return true if the feature was held, false if it should be converted now
+		 */
+		private boolean defer(Feature feature) {
+			if (deferred.getPlane(feature).matches(initialPlane))
+				return false;
+			deferred.add(feature);
+			return true;
+		}
+		
+		/**
+		 * Start listening for plane changes, loading features for the current plane immediately 
+		 * in case it changed during the import.
+		 * @param metrics metrics for the import, to update as features are loaded
+		 * @return the number of features being held
+		 */
+		private int start(Metrics metrics) {
+			this.metrics = metrics;
+			int n = deferred.size();
+			metrics.add(DEFERRED, n);
+			if (n > 0) {
+				ImagePlus.addImageListener(this);
+				loadCurrentPlane();
+			}
+			return n;
+		}
+		
+		private void loadCurrentPlane() {
+			List<Feature> features = deferred.removeMatching(ImagePlane.fromImage(imp));
+			if (deferred.isEmpty())
+				ImagePlus.removeImageListener(this);
+			if (features.isEmpty())
+				return;
+			BackgroundTasks.submit(() -> {
+				GeometryToRoiConverter converter = new GeometryToRoiConverter();
+				List<Roi> rois = new ArrayList<>(ParallelMapper.<Feature, Roi>create(
+						feature -> convertFeature(converter, feature, metrics)).apply(features));
+				rois.removeIf(Objects::isNull);
+				metrics.add(LOADED_LATER, rois.size());
+				RoiInserter.addToOverlay(imp, rois);
+			});
+		}
+
+		@Override
+		public void imageOpened(ImagePlus imp) {}
 
+		@Override
+		public void imageClosed(ImagePlus imp) {
+			if (imp == this.imp) {
+				ImagePlus.removeImageListener(this);
+				deferred.clear();
+			}
+		}
+
+		@Override
+		public void imageUpdated(ImagePlus imp) {
+			if (imp == this.imp)
+				loadCurrentPlane();
+		}
+		
+	}
+	
+	
+	/**
+	 * Time spent in each phase of an import.
+	 */
+	private static class ImportTimings {
+		
+		private long parseNanos;
+		private long convertNanos;
+		private long insertNanos;
+		
+		// Start with a delay, so that a small import is added all at once
+		private long lastInsert = System.nanoTime();
+		
+		@Override
+		public String toString() {
+			return "parse " + parseNanos / 1_000_000 + " ms, convert " + convertNanos / 1_000_000 + 
+					" ms, insert " + insertNanos / 1_000_000 + " ms";
+		}
+		
+	}
+	
+	private static class Params {
+		
+		private RegionType regionType = RegionType.IMAGE;
+		private int tileSize = 4096;
+		private int tileColumn = 0;
+		private int tileRow = 0;
+		private boolean currentPlaneOnly = true;
+		private boolean addPlanesWhenDisplayed = false;
+		
+		private Params copy() {
+			Params params = new Params();
+			params.regionType = regionType;
+			params.tileSize = tileSize;
+			params.tileColumn = tileColumn;
+			params.tileRow = tileRow;
+			params.currentPlaneOnly = currentPlaneOnly;
+			params.addPlanesWhenDisplayed = addPlanesWhenDisplayed;
+			return params;
+		}
+		
+	}
 
 }
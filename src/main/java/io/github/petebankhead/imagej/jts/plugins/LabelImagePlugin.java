@@ -0,0 +1,297 @@
+package io.github.petebankhead.imagej.jts.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.WindowManager;
+import ij.gui.Roi;
+import ij.io.OpenDialog;
+import ij.io.SaveDialog;
+import ij.plugin.PlugIn;
+import ij.plugin.frame.RoiManager;
+import ij.process.ImageProcessor;
+import io.github.petebankhead.imagej.jts.converters.GeometryToRoiConverter;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+import io.github.petebankhead.imagej.jts.geojson.FeatureReader;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonFiles;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonReader;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonSeqReader;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonWriter;
+import io.github.petebankhead.imagej.jts.labels.LabelRasterizer;
+import io.github.petebankhead.imagej.jts.labels.LabelTracer;
+import io.github.petebankhead.imagej.jts.utils.BackgroundTasks;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+import io.github.petebankhead.imagej.jts.utils.RoiInserter;
+
+/**
+ * Convert between label images and geometries.
+ * <p>
+ * The arg should be 'overlay' or 'roimanager' to create ROIs from the labels in the current image, 
+ * 'export' to write them directly to a GeoJSON file, or 'import' to create a label image from a GeoJSON file.
+ * <p>
+ * Exported features have a 'label' property. When importing, this is used as the label if available;
+ * otherwise, features are numbered in the order they are read.
+ *
+ * @see LabelTracer
+ * @see LabelRasterizer
+ */
+public class LabelImagePlugin implements PlugIn {
+
+	private static final String TITLE = "Label image";
+
+	/**
+	 * Name of the property used to store the label of each feature
+	 */
+	public static final String LABEL_PROPERTY = "label";
+
+	@Override
+	public void run(String arg) {
+		arg = arg == null ? "" : arg.toLowerCase().trim();
+		if ("import".equals(arg)) {
+			OpenDialog dialog = new OpenDialog("Import GeoJSON to label image");
+			String path = dialog.getPath();
+			if (path == null)
+				return;
+			// Use the size of the current image, if there is one
+			ImagePlus current = WindowManager.getCurrentImage();
+			int width = current == null ? -1 : current.getWidth();
+			int height = current == null ? -1 : current.getHeight();
+			BackgroundTasks.submit(() -> {
+				try {
+					ImagePlus imp = createLabelImage(Paths.get(path), width, height,
+							ProgressMonitor.createImageJMonitor("Creating label image"));
+					if (imp != null)
+						imp.show();
+				} catch (CancellationException e) {
+					IJ.showStatus("Label image creation cancelled");
+				} catch (IOException e) {
+					IJ.handleException(e);
+				} finally {
+					IJ.showProgress(1.0);
+				}
+			});
+			return;
+		}
+
+		ImagePlus imp = IJ.getImage();
+		if (imp == null) {
+			IJ.noImage();
+			return;
+		}
+		if (imp.getBitDepth() == 24) {
+			IJ.error(TITLE, "RGB images are not supported as label images!");
+			return;
+		}
+		ImageProcessor ip = imp.getProcessor();
+
+		if ("export".equals(arg)) {
+			SaveDialog dialog = new SaveDialog("Export labels to GeoJSON", imp.getTitle(), ".geojson");
+			if (dialog.getFileName() == null)
+				return;
+			Path path = new File(dialog.getDirectory(), dialog.getFileName()).toPath();
+			BackgroundTasks.submit(() -> {
+				long startTime = System.currentTimeMillis();
+				try {
+					int n = exportLabels(ip, path, ProgressMonitor.createImageJMonitor("Tracing labels"));
+					long endTime = System.currentTimeMillis();
+					IJ.showStatus(n + " labels exported (" + (endTime - startTime) + " ms)");
+				} catch (CancellationException e) {
+					IJ.showStatus("Label export cancelled");
+				} catch (IOException e) {
+					IJ.handleException(e);
+				} finally {
+					IJ.showProgress(1.0);
+				}
+			});
+		} else if ("overlay".equals(arg) || "roimanager".equals(arg)) {
+			boolean toOverlay = "overlay".equals(arg);
+			BackgroundTasks.submit(() -> {
+				List<Roi> rois;
+				try {
+					rois = labelsToRois(ip, ProgressMonitor.createImageJMonitor("Tracing labels"));
+				} catch (CancellationException e) {
+					IJ.showStatus("Label tracing cancelled");
+					return;
+				} finally {
+					IJ.showProgress(1.0);
+				}
+				if (toOverlay) {
+					RoiInserter.addToOverlay(imp, rois);
+				} else {
+					RoiManager rm = RoiManager.getInstance();
+					if (rm == null)
+						rm = new RoiManager();
+					RoiInserter.addToRoiManager(rm, rois);
+					rm.setVisible(true);
+				}
+				IJ.showStatus(rois.size() + " labels traced");
+			});
+		} else {
+			IJ.error(TITLE, "arg should be 'overlay', 'roimanager', 'export' or 'import'!");
+		}
+	}
+
+
+	/**
+	 * Trace all labels in an image, and create one ROI per label named according to the label.
+	 * @param ip
+	 * @param monitor optional progress monitor
+	 * @return
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public static List<Roi> labelsToRois(ImageProcessor ip, ProgressMonitor monitor) throws CancellationException {
+		List<Roi> rois = new ArrayList<>();
+		LabelTracer.create()
+			.progress(monitor)
+			.trace(ip, (label, geometry) -> {
+				Roi roi = GeometryToRoiConverter.convertToRoi(geometry);
+				roi.setName(Integer.toString(label));
+				rois.add(roi);
+			});
+		return rois;
+	}
+
+	/**
+	 * Trace all labels in an image, and write them to a GeoJSON file as they are created.
+	 * If the path has a sequence extension, one feature is written per line; otherwise a FeatureCollection is written.
+	 * Paths ending with .gz are compressed.
+	 * @param ip
+	 * @param path
+	 * @param monitor optional progress monitor
+	 * @return the number of labels written
+	 * @throws IOException if the labels could not be written; the partial file is deleted
+	 * @throws CancellationException if the monitor requests cancellation; the partial file is deleted
+	 */
+	public static int exportLabels(ImageProcessor ip, Path path, ProgressMonitor monitor) throws IOException, CancellationException {
+		boolean sequence = GeoJsonFiles.isSequencePath(path);
+		int[] count = new int[1];
+		boolean success = false;
+		try {
+			try (GeoJsonWriter writer = GeoJsonWriter.create(GeoJsonFiles.newWriter(path))) {
+				if (sequence)
+					writer.beginSequence(GeoJsonFiles.isTextSequencePath(path));
+				else
+					writer.beginFeatureCollection();
+				LabelTracer.create()
+					.progress(monitor)
+					.trace(ip, (label, geometry) -> {
+						try {
+							writer.writeFeature(geometry, createLabelProperties(label));
+							count[0]++;
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				if (sequence)
+					writer.endSequence();
+				else
+					writer.endFeatureCollection();
+			}
+			// Only complete once the writer has been closed successfully
+			success = true;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			if (!success)
+				deleteIncompleteFile(path);
+		}
+		return count[0];
+	}
+
+	/**
+	 * Delete a file that was not written completely, logging a warning if it cannot be deleted
+	 * so that the exception that caused the failure is not hidden.
+	 * @param path
+	 */
+	private static void deleteIncompleteFile(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			IJ.log("Unable to delete incomplete file " + path + ": " + e.getLocalizedMessage());
+		}
+	}
+
+	private static Map<String, ?> createLabelProperties(int label) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put(LABEL_PROPERTY, label);
+		map.put("imagej", Collections.singletonMap("name", Integer.toString(label)));
+		return map;
+	}
+
+	/**
+	 * Create a label image from the polygonal features in a GeoJSON file.
+	 * @param path
+	 * @param width width of the image; if &le; 0, the image is sized to contain all features
+	 * @param height height of the image; if &le; 0, the image is sized to contain all features
+	 * @param monitor optional progress monitor
+	 * @return the label image, or null if no features were found or a label is greater than {@link LabelRasterizer#MAX_LABEL}
+	 * @throws IOException
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public static ImagePlus createLabelImage(Path path, int width, int height, ProgressMonitor monitor) throws IOException, CancellationException {
+		List<Geometry> geometries = new ArrayList<>();
+		List<Integer> labels = new ArrayList<>();
+		Envelope envelope = new Envelope();
+		List<String> keys = Collections.singletonList(LABEL_PROPERTY);
+		try (FeatureReader reader = GeoJsonFiles.isSequence(path) ? GeoJsonSeqReader.open(path, null, keys) : 
+			GeoJsonReader.create(GeoJsonFiles.newReader(path)).keepProperties(keys)) {
+			while (reader.hasNext()) {
+				if (monitor != null && monitor.isCancelled())
+					throw new CancellationException();
+				Feature feature = reader.next();
+				Geometry geometry = feature.getGeometry();
+				if (geometry == null || geometry.isEmpty())
+					continue;
+				geometries.add(geometry);
+				labels.add(getLabel(feature, labels.size() + 1));
+				envelope.expandToInclude(geometry.getEnvelopeInternal());
+			}
+		}
+		if (geometries.isEmpty()) {
+			IJ.error(TITLE, "No features found in " + path.getFileName());
+			return null;
+		}
+		if (width <= 0 || height <= 0) {
+			width = (int)Math.ceil(Math.max(1, envelope.getMaxX()));
+			height = (int)Math.ceil(Math.max(1, envelope.getMaxY()));
+		}
+		int[] labelArray = labels.stream().mapToInt(Integer::intValue).toArray();
+		int maxLabel = 0;
+		for (int label : labelArray)
+			maxLabel = Math.max(maxLabel, label);
+		if (maxLabel > LabelRasterizer.MAX_LABEL) {
+			IJ.error(TITLE, "Label " + maxLabel + " in " + path.getFileName() + " is too large - labels must be at most " + LabelRasterizer.MAX_LABEL);
+			return null;
+		}
+		ImageProcessor ip = LabelRasterizer.createLabelImage(width, height, maxLabel);
+		LabelRasterizer.create()
+			.progress(monitor)
+			.rasterize(geometries, labelArray, ip);
+		ip.resetMinAndMax();
+		return new ImagePlus(path.getFileName().toString() + "-labels", ip);
+	}
+
+	private static int getLabel(Feature feature, int defaultLabel) {
+		Map<String, ?> properties = feature.getProperties();
+		Object label = properties == null ? null : properties.get(LABEL_PROPERTY);
+		if (label instanceof Number)
+			return ((Number)label).intValue();
+		return defaultLabel;
+	}
+
+}
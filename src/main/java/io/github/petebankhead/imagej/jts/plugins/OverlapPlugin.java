@@ -0,0 +1,178 @@
+package io.github.petebankhead.imagej.jts.plugins;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.locationtech.jts.geom.Geometry;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.gui.GenericDialog;
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.measure.ResultsTable;
+import ij.plugin.PlugIn;
+import ij.plugin.frame.RoiManager;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+import io.github.petebankhead.imagej.jts.ops.OverlapCalculator;
+import io.github.petebankhead.imagej.jts.ops.OverlapCalculator.Overlap;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+/**
+ * Measure the overlap between two sets of ROIs, such as predicted and ground truth segmentations.
+ * <p>
+ * Results are shown as a sparse table, with one row for each overlapping pair.
+ * Indices are zero-based, and areas are in pixels.
+ *
+ * @see OverlapCalculator
+ */
+public class OverlapPlugin implements PlugIn {
+
+	private static final String TITLE = "Measure ROI overlaps";
+
+	private static enum RoiSource {
+		OVERLAY("Overlay"),
+		ROI_MANAGER("ROI Manager");
+
+		private String name;
+
+		private RoiSource(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static Params lastParams = new Params();
+
+	private Params params = lastParams;
+
+	@Override
+	public void run(String arg) {
+		ImagePlus imp = IJ.getImage();
+		if (imp == null) {
+			IJ.noImage();
+			return;
+		}
+
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addEnumChoice("First_ROIs", lastParams.first);
+		gd.addEnumChoice("Second_ROIs", lastParams.second);
+		gd.addNumericField("Min_IoU", lastParams.minIoU, 2);
+		gd.addCheckbox("Best_match_only", lastParams.bestMatchOnly);
+		gd.showDialog();
+
+		if (gd.wasCanceled())
+			return;
+
+		params.first = gd.getNextEnumChoice(RoiSource.class);
+		params.second = gd.getNextEnumChoice(RoiSource.class);
+		params.minIoU = gd.getNextNumber();
+		params.bestMatchOnly = gd.getNextBoolean();
+
+		lastParams = params;
+
+		List<Roi> first = getRois(imp, params.first);
+		List<Roi> second = getRois(imp, params.second);
+		if (first == null || second == null)
+			return;
+
+		List<Overlap> overlaps;
+		long startTime = System.currentTimeMillis();
+		try {
+			overlaps = computeOverlaps(first, second, params.minIoU, params.bestMatchOnly,
+					ProgressMonitor.createImageJMonitor("Measuring overlaps"));
+		} catch (CancellationException e) {
+			IJ.showStatus("Overlap measurement cancelled");
+			return;
+		} finally {
+			IJ.showProgress(1.0);
+		}
+		long endTime = System.currentTimeMillis();
+		IJ.showStatus(overlaps.size() + " overlaps found between " + first.size() + " and " + second.size() +
+				" ROIs (" + (endTime - startTime) + " ms)");
+
+		createResultsTable(overlaps, first, second).show("ROI Overlaps");
+	}
+
+	private static List<Roi> getRois(ImagePlus imp, RoiSource source) {
+		if (source == RoiSource.OVERLAY) {
+			Overlay overlay = imp.getOverlay();
+			if (overlay == null || overlay.size() == 0) {
+				IJ.error(TITLE, "No overlay found!");
+				return null;
+			}
+			return Arrays.asList(overlay.toArray());
+		} else {
+			RoiManager rm = RoiManager.getInstance();
+			if (rm == null || rm.getCount() == 0) {
+				IJ.error(TITLE, "No ROIs found in the ROI Manager!");
+				return null;
+			}
+			return Arrays.asList(rm.getRoisAsArray());
+		}
+	}
+
+
+	/**
+	 * Compute the overlaps between two lists of ROIs, using multiple threads.
+	 * @param first
+	 * @param second
+	 * @param minIoU minimum intersection over union for a pair to be included
+	 * @param bestMatchOnly if true, only include the best match for each ROI in the first list
+	 * @param monitor optional progress monitor
+	 * @return
+	 * @throws CancellationException if the monitor requests cancellation
+	 */
+	public static List<Overlap> computeOverlaps(List<? extends Roi> first, List<? extends Roi> second,
+			double minIoU, boolean bestMatchOnly, ProgressMonitor monitor) throws CancellationException {
+		RoiGeometryCache cache = RoiGeometryCache.getDefault();
+		List<Geometry> firstGeometries = cache.getGeometries(first, null, null);
+		List<Geometry> secondGeometries = cache.getGeometries(second, null, null);
+		return OverlapCalculator.create()
+				.minIoU(minIoU)
+				.bestMatchOnly(bestMatchOnly)
+				.progress(monitor)
+				.compute(firstGeometries, secondGeometries);
+	}
+
+	/**
+	 * Create a table with one row for each overlap.
+	 * @param overlaps
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static ResultsTable createResultsTable(List<Overlap> overlaps, List<? extends Roi> first, List<? extends Roi> second) {
+		ResultsTable rt = new ResultsTable();
+		for (Overlap overlap : overlaps) {
+			rt.incrementCounter();
+			Roi roiFirst = first.get(overlap.getFirstIndex());
+			Roi roiSecond = second.get(overlap.getSecondIndex());
+			rt.addValue("First index", overlap.getFirstIndex());
+			rt.addValue("First name", roiFirst.getName() == null ? "" : roiFirst.getName());
+			rt.addValue("Second index", overlap.getSecondIndex());
+			rt.addValue("Second name", roiSecond.getName() == null ? "" : roiSecond.getName());
+			rt.addValue("First area", overlap.getFirstArea());
+			rt.addValue("Second area", overlap.getSecondArea());
+			rt.addValue("Intersection area", overlap.getIntersectionArea());
+			rt.addValue("IoU", overlap.getIoU());
+		}
+		return rt;
+	}
+
+
+	private static class Params {
+
+		private RoiSource first = RoiSource.ROI_MANAGER;
+		private RoiSource second = RoiSource.OVERLAY;
+		private double minIoU = 0;
+		private boolean bestMatchOnly = false;
+
+	}
+
+}
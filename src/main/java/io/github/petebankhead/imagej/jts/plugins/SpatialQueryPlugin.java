@@ -0,0 +1,215 @@
+package io.github.petebankhead.imagej.jts.plugins;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.locationtech.jts.geom.Geometry;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.gui.GenericDialog;
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.plugin.PlugIn;
+import ij.plugin.frame.RoiManager;
+import io.github.petebankhead.imagej.jts.converters.RoiGeometryCache;
+import io.github.petebankhead.imagej.jts.index.RoiSpatialIndex;
+
+/**
+ * Find ROIs in an overlay or the ROI Manager according to their location relative to the current selection.
+ * <p>
+ * Queries use a cached {@link RoiSpatialIndex}, so that repeated queries only need to convert
+ * ROIs that have changed.
+ */
+public class SpatialQueryPlugin implements PlugIn {
+
+	private static final String TITLE = "Select ROIs by location";
+
+	private static enum QueryType {
+		INTERSECTS("Intersect selection"),
+		WITHIN("Within selection"),
+		CONTAINS("Contain selection"),
+		NEAREST("Nearest to selection");
+
+		private String name;
+
+		private QueryType(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static enum Action {
+		SELECT, KEEP, REMOVE;
+
+		@Override
+		public String toString() {
+			String s = super.toString();
+			return s.charAt(0) + s.substring(1).toLowerCase();
+		}
+	}
+
+	private static Params lastParams = new Params();
+
+	private Params params = lastParams;
+
+	@Override
+	public void run(String arg) {
+		Objects.requireNonNull(arg, "arg must not be null!");
+		arg = arg.toLowerCase().trim();
+
+		ImagePlus imp = IJ.getImage();
+		if (imp == null) {
+			IJ.noImage();
+			return;
+		}
+		Roi selection = imp.getRoi();
+		if (selection == null) {
+			IJ.error(TITLE, "A selection is needed to define the query region!");
+			return;
+		}
+
+		boolean doOverlay;
+		if ("overlay".equals(arg))
+			doOverlay = true;
+		else if ("roimanager".equals(arg))
+			doOverlay = false;
+		else
+			throw new IllegalArgumentException("Spatial query arg should be 'overlay' or 'roimanager'");
+
+		Overlay overlay = null;
+		RoiManager rm = null;
+		if (doOverlay) {
+			overlay = imp.getOverlay();
+			if (overlay == null || overlay.size() == 0) {
+				IJ.error(TITLE, "No overlay found!");
+				return;
+			}
+		} else {
+			rm = RoiManager.getInstance();
+			if (rm == null || rm.getCount() == 0) {
+				IJ.error(TITLE, "No ROIs found in the ROI Manager!");
+				return;
+			}
+		}
+
+		GenericDialog gd = new GenericDialog(TITLE);
+		gd.addEnumChoice("Find_ROIs", lastParams.queryType);
+		gd.addNumericField("Max_nearest", lastParams.maxNearest, 0);
+		gd.addEnumChoice("Action", lastParams.action);
+		gd.showDialog();
+
+		if (gd.wasCanceled())
+			return;
+
+		params.queryType = gd.getNextEnumChoice(QueryType.class);
+		params.maxNearest = Math.max(1, (int)gd.getNextNumber());
+		params.action = gd.getNextEnumChoice(Action.class);
+
+		lastParams = params;
+
+		if (doOverlay && params.action == Action.SELECT) {
+			IJ.error(TITLE, "Overlay ROIs can't be selected - please choose 'Keep' or 'Remove' instead");
+			return;
+		}
+
+		RoiSpatialIndex index = doOverlay ? RoiSpatialIndex.forOverlay(overlay) : RoiSpatialIndex.forRoiManager(rm);
+		Geometry region = RoiGeometryCache.getDefault().getGeometry(selection);
+		List<Roi> matches = query(index, region, params);
+		IJ.showStatus(matches.size() + " of " + index.size() + " ROIs matched");
+
+		Set<Roi> matchSet = Collections.newSetFromMap(new IdentityHashMap<>());
+		matchSet.addAll(matches);
+
+		if (doOverlay)
+			applyToOverlay(imp, overlay, matchSet, params.action);
+		else
+			applyToRoiManager(rm, matchSet, params.action);
+	}
+
+
+	private static List<Roi> query(RoiSpatialIndex index, Geometry region, Params params) {
+		switch (params.queryType) {
+		case CONTAINS:
+			return index.queryContains(region);
+		case NEAREST:
+			return index.queryNearest(region, params.maxNearest);
+		case WITHIN:
+			return index.queryWithin(region);
+		case INTERSECTS:
+		default:
+			return index.queryIntersects(region);
+		}
+	}
+
+	private static void applyToOverlay(ImagePlus imp, Overlay overlay, Set<Roi> matches, Action action) {
+		boolean keepMatches = action == Action.KEEP;
+		Roi[] rois = overlay.toArray();
+		overlay.clear();
+		for (Roi roi : rois) {
+			if (matches.contains(roi) == keepMatches)
+				overlay.add(roi);
+		}
+		imp.setOverlay(overlay);
+	}
+
+	private static void applyToRoiManager(RoiManager rm, Set<Roi> matches, Action action) {
+		Roi[] rois = rm.getRoisAsArray();
+		Map<Roi, Integer> indices = new IdentityHashMap<>();
+		for (int i = 0; i < rois.length; i++)
+			indices.put(rois[i], i);
+
+		int[] selected = matches.stream()
+				.mapToInt(indices::get)
+				.sorted()
+				.toArray();
+
+		switch (action) {
+		case SELECT:
+			rm.setSelectedIndexes(selected);
+			break;
+		case KEEP:
+			int[] others = invert(selected, rois.length);
+			rm.setSelectedIndexes(others);
+			if (others.length > 0)
+				rm.runCommand("Delete");
+			break;
+		case REMOVE:
+			rm.setSelectedIndexes(selected);
+			if (selected.length > 0)
+				rm.runCommand("Delete");
+			break;
+		}
+	}
+
+	private static int[] invert(int[] sortedIndices, int n) {
+		int[] inverted = new int[n - sortedIndices.length];
+		int count = 0;
+		int j = 0;
+		for (int i = 0; i < n; i++) {
+			if (j < sortedIndices.length && sortedIndices[j] == i)
+				j++;
+			else
+				inverted[count++] = i;
+		}
+		return inverted;
+	}
+
+
+	private static class Params {
+
+		private QueryType queryType = QueryType.WITHIN;
+		private int maxNearest = 1;
+		private Action action = Action.SELECT;
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ij.IJ;
+
+/**
+ * Run long tasks started from plugins (e.g. import and export) on a background thread, 
+ * so that they don't block ImageJ.
+ * <p>
+ * Tasks run one at a time in the order they were submitted, so that (for example) a file 
+ * is completely written before it is read again.
+ * When a macro is running, tasks are run immediately on the calling thread instead, so 
+ * that the macro only continues once the task is complete.
+ */
+public final class BackgroundTasks {
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "imagej-jts-background-" + counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private BackgroundTasks() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Submit a task to run in the background, or run it immediately if a macro is running.
+	 * Any exception thrown by the task is passed to {@link IJ#handleException(Throwable)}.
+	 * @param task
+	 * @return a future that completes when the task has finished
+	 */
+	public static CompletableFuture<Void> submit(Runnable task) {
+		if (IJ.isMacro()) {
+			runAndHandleException(task);
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.runAsync(() -> runAndHandleException(task), EXECUTOR);
+	}
+
+	private static void runAndHandleException(Runnable task) {
+		try {
+			task.run();
+		} catch (Throwable t) {
+			IJ.handleException(t);
+		}
+	}
+
+}
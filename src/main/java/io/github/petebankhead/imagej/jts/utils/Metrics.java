@@ -0,0 +1,226 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import ij.IJ;
+
+/**
+ * Named counters and timers for instrumenting long operations, such as importing or exporting features.
+ * <p>
+ * Typical use is
+ * <pre>
+ * Metrics metrics = Metrics.create("GeoJSON import");
+ * metrics.increment(Metrics.FEATURES);
+ * long start = System.nanoTime();
+ * // Do something
+ * metrics.recordNanos("Convert Polygon", System.nanoTime() - start);
+ * metrics.logSummary();
+ * </pre>
+ * Counters and timers are created when first used, and reported in that order.
+ * Updates use {@link LongAdder}, so this class is cheap to update from many threads at once.
+ */
+public class Metrics {
+
+	/**
+	 * Counter for the number of features read or written
+	 */
+	public static final String FEATURES = "Features";
+
+	/**
+	 * Counter for the number of vertices in all geometries read or written
+	 */
+	public static final String VERTICES = "Vertices";
+
+	/**
+	 * Counter for the number of bytes read or written
+	 */
+	public static final String BYTES = "Bytes";
+
+	/**
+	 * Counter for the number of items that could not be converted
+	 */
+	public static final String FAILURES = "Failures";
+
+	private final String name;
+
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+	// Keys in the order they were first used, for reporting
+	private final Map<String, Boolean> order = new LinkedHashMap<>();
+
+	private Metrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Create empty metrics.
+	 * @param name name used when reporting a summary
+	 * @return
+	 */
+	public static Metrics create(String name) {
+		return new Metrics(name);
+	}
+
+	/**
+	 * Get the name used when reporting a summary.
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Add 1 to a counter.
+	 * @param counter
+	 */
+	public void increment(String counter) {
+		add(counter, 1L);
+	}
+
+	/**
+	 * Add a value to a counter.
+	 * @param counter
+	 * @param value
+	 */
+	public void add(String counter, long value) {
+		LongAdder adder = counters.get(counter);
+		if (adder == null)
+			adder = register(counters, counter, new LongAdder());
+		adder.add(value);
+	}
+
+	/**
+	 * Record the time taken by one event.
+	 * @param timer
+	 * @param nanos elapsed time, in nanoseconds
+	 */
+	public void recordNanos(String timer, long nanos) {
+		Timer t = timers.get(timer);
+		if (t == null)
+			t = register(timers, timer, new Timer());
+		t.count.increment();
+		t.nanos.add(nanos);
+	}
+
+	private <T> T register(ConcurrentMap<String, T> map, String key, T value) {
+		T existing = map.putIfAbsent(key, value);
+		if (existing != null)
+			return existing;
+		synchronized (order) {
+			order.put(key, Boolean.TRUE);
+		}
+		return value;
+	}
+
+	/**
+	 * Get the value of a counter.
+	 * @param counter
+	 * @return the value, or 0 if the counter has not been used
+	 */
+	public long getCount(String counter) {
+		LongAdder adder = counters.get(counter);
+		return adder == null ? 0L : adder.sum();
+	}
+
+	/**
+	 * Get the number of events recorded by a timer.
+	 * @param timer
+	 * @return the number of events, or 0 if the timer has not been used
+	 */
+	public long getTimerCount(String timer) {
+		Timer t = timers.get(timer);
+		return t == null ? 0L : t.count.sum();
+	}
+
+	/**
+	 * Get the total time recorded by a timer. If events were timed on several threads at once, 
+	 * this may be longer than the elapsed time.
+	 * @param timer
+	 * @return the total time in nanoseconds, or 0 if the timer has not been used
+	 */
+	public long getTimerNanos(String timer) {
+		Timer t = timers.get(timer);
+		return t == null ? 0L : t.nanos.sum();
+	}
+
+	/**
+	 * Get a snapshot of all counters, in the order they were first used.
+	 * @return
+	 */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> map = new LinkedHashMap<>();
+		for (String key : getKeys()) {
+			LongAdder adder = counters.get(key);
+			if (adder != null)
+				map.put(key, adder.sum());
+		}
+		return map;
+	}
+
+	private String[] getKeys() {
+		synchronized (order) {
+			return order.keySet().toArray(new String[0]);
+		}
+	}
+
+	/**
+	 * Remove all counters and timers.
+	 */
+	public void reset() {
+		synchronized (order) {
+			counters.clear();
+			timers.clear();
+			order.clear();
+		}
+	}
+
+	/**
+	 * Get a summary of all counters and timers, with one per line.
+	 * @return
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder(name);
+		for (String key : getKeys()) {
+			LongAdder adder = counters.get(key);
+			if (adder != null) {
+				sb.append(String.format("%n  %s: %,d", key, adder.sum()));
+				continue;
+			}
+			Timer t = timers.get(key);
+			if (t != null) {
+				long count = t.count.sum();
+				long nanos = t.nanos.sum();
+				sb.append(String.format("%n  %s: %,d in %,.1f ms (%,.2f µs each)", 
+						key, count, nanos / 1e6, count == 0 ? 0 : nanos / 1e3 / count));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Print a summary to ImageJ's Log window.
+	 * @see #getSummary()
+	 */
+	public void logSummary() {
+		IJ.log(getSummary());
+	}
+
+	@Override
+	public String toString() {
+		return "Metrics [" + name + ", counts=" + getCounts() + "]";
+	}
+
+
+	private static class Timer {
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+	}
+
+}
@@ -0,0 +1,146 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Apply a function to every element of a collection in parallel, returning the results in the same 
+ * order as the input.
+ * <p>
+ * Typical use is
+ * <pre>
+ * List&lt;Geometry&gt; geometries = ParallelMapper.create(converter::roiToGeometry)
+ *         .parallelism(8)
+ *         .progress(ProgressMonitor.createImageJMonitor("Converting"))
+ *         .apply(rois);
+ * </pre>
+ * The function must be safe to call from multiple threads.
+ *
+ * @param <T> input type
+ * @param <R> output type
+ */
+public class ParallelMapper<T, R> {
+	
+	private final Function<? super T, ? extends R> function;
+	
+	private ForkJoinPool pool;
+	private int parallelism = -1;
+	private ProgressMonitor monitor;
+	
+	private ParallelMapper(Function<? super T, ? extends R> function) {
+		Objects.requireNonNull(function, "Function must not be null!");
+		this.function = function;
+	}
+	
+	/**
+	 * Create a new mapper for the specified function.
+	 * @param <T>
+	 * @param <R>
+	 * @param function
+	 * @return
+	 */
+	public static <T, R> ParallelMapper<T, R> create(Function<? super T, ? extends R> function) {
+		return new ParallelMapper<>(function);
+	}
+	
+	/**
+	 * Set the pool used to run tasks. This takes precedence over {@link #parallelism(int)}.
+	 * If neither is set, the common pool is used.
+	 * @param pool
+	 * @return this mapper
+	 */
+	public ParallelMapper<T, R> pool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+	
+	/**
+	 * Set the number of threads to use. If this is 1, all processing is done on the calling thread.
+	 * If it is &le; 0, the common pool is used.
+	 * @param parallelism
+	 * @return this mapper
+	 */
+	public ParallelMapper<T, R> parallelism(int parallelism) {
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	/**
+	 * Set a monitor to receive progress updates, and to request cancellation.
+	 * @param monitor
+	 * @return this mapper
+	 */
+	public ParallelMapper<T, R> progress(ProgressMonitor monitor) {
+		this.monitor = monitor;
+		return this;
+	}
+	
+	/**
+	 * Apply the function to all elements of the input.
+	 * @param input
+	 * @return a list containing the output of the function for each input, in the same order
+	 * @throws CancellationException if the progress monitor requested cancellation
+	 */
+	public List<R> apply(Collection<? extends T> input) throws CancellationException {
+		List<? extends T> list = input instanceof List && input instanceof RandomAccess ? 
+				(List<? extends T>)input : new ArrayList<>(input);
+		
+		int n = list.size();
+		Object[] results = new Object[n];
+		AtomicInteger counter = new AtomicInteger();
+		int progressStep = Math.max(1, n / 100);
+		
+		IntConsumer task = i -> {
+			if (monitor != null && monitor.isCancelled())
+				return;
+			results[i] = function.apply(list.get(i));
+			if (monitor != null) {
+				int completed = counter.incrementAndGet();
+				if (completed % progressStep == 0 || completed == n)
+					monitor.updateProgress(completed, n);
+			}
+		};
+		
+		if (n <= 1 || (pool == null && parallelism == 1)) {
+			for (int i = 0; i < n; i++)
+				task.accept(i);
+		} else {
+			ForkJoinPool poolToUse = pool;
+			if (poolToUse == null)
+				poolToUse = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+			try {
+				poolToUse.submit(() -> IntStream.range(0, n).parallel().forEach(task)).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Processing interrupted");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+				if (cause instanceof Error)
+					throw (Error)cause;
+				throw new RuntimeException(cause);
+			} finally {
+				if (poolToUse != pool && poolToUse != ForkJoinPool.commonPool())
+					poolToUse.shutdown();
+			}
+		}
+		
+		if (monitor != null && monitor.isCancelled())
+			throw new CancellationException("Processing cancelled");
+		
+		return (List<R>)Arrays.asList(results);
+	}
+
+}
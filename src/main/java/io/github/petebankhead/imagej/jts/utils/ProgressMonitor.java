@@ -0,0 +1,52 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import ij.IJ;
+
+/**
+ * Receive progress updates for long-running tasks, and optionally request cancellation.
+ * <p>
+ * Implementations should be thread-safe, since updates may be made from worker threads.
+ */
+public interface ProgressMonitor {
+	
+	/**
+	 * Update the progress.
+	 * @param completed number of items completed so far
+	 * @param total total number of items
+	 */
+	void updateProgress(int completed, int total);
+	
+	/**
+	 * Query whether the task should be cancelled.
+	 * @return true if the task should stop as soon as possible
+	 */
+	default boolean isCancelled() {
+		return false;
+	}
+	
+	/**
+	 * Create a monitor that reports progress through ImageJ's progress bar, and requests 
+	 * cancellation if the user presses Escape.
+	 * @param message optional message shown in the status bar (may be null)
+	 * @return
+	 */
+	static ProgressMonitor createImageJMonitor(String message) {
+		IJ.resetEscape();
+		return new ProgressMonitor() {
+
+			@Override
+			public void updateProgress(int completed, int total) {
+				if (message != null)
+					IJ.showStatus(message + " (" + completed + "/" + total + ")");
+				IJ.showProgress(completed, total);
+			}
+			
+			@Override
+			public boolean isCancelled() {
+				return IJ.escapePressed();
+			}
+			
+		};
+	}
+
+}
@@ -0,0 +1,91 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import java.awt.EventQueue;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.ListModel;
+
+import ij.ImagePlus;
+import ij.gui.Overlay;
+import ij.gui.Roi;
+import ij.plugin.frame.RoiManager;
+
+/**
+ * Add many ROIs to an overlay or the ROI Manager at once.
+ * <p>
+ * Adding ROIs one at a time is slow when there are thousands of them, because the display is 
+ * updated after every ROI. These methods update the display only once, after all ROIs have been added.
+ */
+public final class RoiInserter {
+
+	private RoiInserter() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Add ROIs to the overlay of an image, creating the overlay if necessary.
+	 * The image is repainted once, after all ROIs have been added.
+	 * @param imp
+	 * @param rois
+	 */
+	public static void addToOverlay(ImagePlus imp, Collection<? extends Roi> rois) {
+		Overlay overlay = imp.getOverlay();
+		if (overlay == null)
+			overlay = new Overlay();
+		for (Roi roi : rois)
+			overlay.add(roi);
+		imp.setOverlay(overlay);
+	}
+
+	/**
+	 * Add ROIs to the ROI Manager.
+	 * <p>
+	 * While the ROIs are added, the list shown by the ROI Manager is detached from its model, 
+	 * so that it isn't updated and repainted for each ROI. The list is refreshed once at the end.
+	 * <p>
+	 * Since this modifies Swing components, the ROIs are added on the event dispatch thread, 
+	 * and this method waits until they have all been added. It must therefore not be called while 
+	 * holding any lock that the event dispatch thread might need.
+	 * @param rm
+	 * @param rois
+	 * @throws IllegalStateException if the thread is interrupted while waiting
+	 */
+	public static void addToRoiManager(RoiManager rm, Collection<? extends Roi> rois) throws IllegalStateException {
+		if (EventQueue.isDispatchThread()) {
+			addToRoiManagerOnEDT(rm, rois);
+			return;
+		}
+		try {
+			EventQueue.invokeAndWait(() -> addToRoiManagerOnEDT(rm, rois));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while adding ROIs to the ROI Manager", e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void addToRoiManagerOnEDT(RoiManager rm, Collection<? extends Roi> rois) {
+		JList list = rm.getList();
+		ListModel model = list == null ? null : list.getModel();
+		if (model != null)
+			list.setModel(new DefaultListModel());
+		try {
+			for (Roi roi : rois)
+				rm.addRoi(roi);
+		} finally {
+			if (model != null)
+				list.setModel(model);
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import ij.gui.Roi;
+
+class GeometryToRoiConverterTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	void testRectangle() {
+		Geometry geometry = factory.toGeometry(new Envelope(5, 25, 10, 40));
+		Roi roi = GeometryToRoiConverter.convertToRoi(geometry);
+		assertEquals(Roi.RECTANGLE, roi.getType());
+		assertEquals(5, roi.getXBase(), 1e-6);
+		assertEquals(10, roi.getYBase(), 1e-6);
+		assertEquals(20, roi.getFloatBounds().width, 1e-6);
+		assertEquals(30, roi.getFloatBounds().height, 1e-6);
+	}
+
+	@Test
+	void testTracedPolygon() {
+		Polygon polygon = createPolygon(0, 0, 10, 0, 10, 5, 20, 5, 20, 10, 0, 10, 0, 0);
+		Roi roi = GeometryToRoiConverter.convertToRoi(polygon);
+		assertEquals(Roi.TRACED_ROI, roi.getType());
+		assertEquals(6, roi.getFloatPolygon().npoints);
+		assertEquals(polygon.getArea(), RoiToGeometryConverter.convertToGeometry(roi).getArea(), 1e-6);
+	}
+
+	@Test
+	void testPolygon() {
+		Polygon polygon = createPolygon(0.5, 0.5, 10.25, 1, 5, 8.75, 0.5, 0.5);
+		Roi roi = GeometryToRoiConverter.convertToRoi(polygon);
+		assertEquals(Roi.POLYGON, roi.getType());
+		assertEquals(3, roi.getFloatPolygon().npoints);
+		assertEquals(polygon.getArea(), RoiToGeometryConverter.convertToGeometry(roi).getArea(), 1e-3);
+	}
+
+	@Test
+	void testPolygonWithHole() {
+		Geometry outer = factory.toGeometry(new Envelope(0, 100, 0, 100));
+		Geometry inner = factory.toGeometry(new Envelope(25, 75, 25, 75));
+		Geometry geometry = outer.difference(inner);
+		Roi roi = GeometryToRoiConverter.convertToRoi(geometry);
+		assertEquals(Roi.COMPOSITE, roi.getType());
+		assertEquals(geometry.getArea(), RoiToGeometryConverter.convertToGeometry(roi).getArea(), 1e-6);
+	}
+
+	private static Polygon createPolygon(double... xy) {
+		Coordinate[] coords = new Coordinate[xy.length / 2];
+		for (int i = 0; i < coords.length; i++)
+			coords[i] = new Coordinate(xy[i*2], xy[i*2+1]);
+		return factory.createPolygon(coords);
+	}
+
+}
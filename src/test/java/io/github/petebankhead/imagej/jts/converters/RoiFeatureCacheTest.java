@@ -0,0 +1,121 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ij.gui.OvalRoi;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonReader;
+import io.github.petebankhead.imagej.jts.converters.RoiFeatureCache.SerializedFeature;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonWriter;
+import io.github.petebankhead.imagej.jts.ops.GeometrySimplifier;
+
+class RoiFeatureCacheTest {
+
+	@Test
+	void testDirtyTracking() {
+		RoiFeatureCache cache = new RoiFeatureCache();
+		Roi roi = new Roi(10, 20, 30, 40);
+
+		cache.getSerializedFeature(roi, false);
+		cache.getSerializedFeature(roi, false);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		roi.setLocation(15, 20);
+		cache.getSerializedFeature(roi, false);
+		assertEquals(2, cache.getMissCount());
+
+		roi.setName("Renamed");
+		cache.getSerializedFeature(roi, false);
+		assertEquals(3, cache.getMissCount());
+
+		roi.setStrokeColor(Color.RED);
+		cache.getSerializedFeature(roi, false);
+		assertEquals(4, cache.getMissCount());
+
+		// Requesting the binary encoding requires conversion once
+		cache.getSerializedFeature(roi, true);
+		assertEquals(5, cache.getMissCount());
+		assertNotNull(cache.getSerializedFeature(roi, true).getBinary());
+		assertNotNull(cache.getSerializedFeature(roi, false).getBinary());
+		assertEquals(5, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+
+		assertEquals(1, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testVertexCounts() {
+		RoiFeatureCache cache = new RoiFeatureCache();
+		cache.setGeometryTransform(GeometrySimplifier.create().removeCollinear(true));
+		Roi roi = new PolygonRoi(new float[] {0, 5, 10, 10, 0}, new float[] {0, 0, 0, 10, 10}, Roi.POLYGON);
+
+		// Counts are available for cached features, as well as those that were just converted
+		for (int i = 0; i < 2; i++) {
+			SerializedFeature feature = cache.getSerializedFeature(roi, false);
+			assertEquals(6, feature.getSourceVertexCount());
+			assertEquals(5, feature.getVertexCount());
+		}
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	void testFingerprint() {
+		Roi roi = new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4, 1}, Roi.POLYGON);
+		Roi same = new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4, 1}, Roi.POLYGON);
+		Roi moved = new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4.5f, 1}, Roi.POLYGON);
+		assertEquals(RoiFingerprint.compute(roi), RoiFingerprint.compute(same));
+		assertNotEquals(RoiFingerprint.compute(roi), RoiFingerprint.compute(moved));
+
+		roi.setPosition(2);
+		assertNotEquals(RoiFingerprint.compute(roi), RoiFingerprint.compute(same));
+	}
+
+	@Test
+	void testRawFeaturesMatch() throws IOException {
+		List<Roi> rois = Arrays.asList(
+				new Roi(10.5, 20, 30, 40),
+				new OvalRoi(5, 5, 20, 10),
+				new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4, 1}, Roi.POLYLINE)
+				);
+		rois.get(0).setName("First");
+
+		RoiFeatureCache cache = new RoiFeatureCache();
+		StringWriter sw = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(sw)) {
+			writer.beginFeatureCollection();
+			for (Roi roi : rois)
+				writer.writeRawFeature(cache.getSerializedFeature(roi, false).getJson());
+			writer.endFeatureCollection();
+		}
+
+		List<Feature> features = new ArrayList<>();
+		GeoJsonReader.readFeatures(new StringReader(sw.toString()), features::add);
+		List<Feature> expected = RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+		assertEquals(expected.size(), features.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(expected.get(i).getGeometry().equalsExact(features.get(i).getGeometry(), 1e-6));
+			assertEquals(rois.get(i).getName(), getImageJProperties(features.get(i)).get("name"));
+		}
+	}
+
+	private static Map<?, ?> getImageJProperties(Feature feature) {
+		return (Map<?, ?>)feature.getProperties().get("imagej");
+	}
+
+}
@@ -0,0 +1,86 @@
+package io.github.petebankhead.imagej.jts.converters;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+
+class RoiGeometryCacheTest {
+
+	@Test
+	void testCache() {
+		RoiGeometryCache cache = new RoiGeometryCache(new RoiToGeometryConverter(), RoiGeometryCache.DEFAULT_MAX_VERTICES);
+		Roi roi = new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4, 1}, Roi.POLYGON);
+
+		Geometry geometry = cache.getGeometry(roi);
+		assertSame(geometry, cache.getGeometry(roi));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(4, cache.getVertexCount());
+
+		// Attributes don't affect the geometry
+		roi.setName("Renamed");
+		roi.setStrokeColor(Color.RED);
+		assertSame(geometry, cache.getGeometry(roi));
+		assertEquals(1, cache.getMissCount());
+
+		// An equal ROI is a different object, so needs to be converted
+		Roi roi2 = (Roi)roi.clone();
+		Geometry geometry2 = cache.getGeometry(roi2);
+		assertNotSame(geometry, geometry2);
+		assertTrue(geometry.equalsExact(geometry2));
+		assertEquals(2, cache.getMissCount());
+
+		roi.setLocation(10, 10);
+		Geometry moved = cache.getGeometry(roi);
+		assertNotSame(geometry, moved);
+		assertEquals(10, moved.getEnvelopeInternal().getMinX(), 1e-6);
+		assertEquals(3, cache.getMissCount());
+		assertEquals(2, cache.size());
+		assertEquals(8, cache.getVertexCount());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getVertexCount());
+	}
+
+	@Test
+	void testEviction() {
+		// Rectangles have 5 vertices
+		RoiGeometryCache cache = new RoiGeometryCache(new RoiToGeometryConverter(), 50);
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+			rois.add(new Roi(i * 10, 0, 10, 10));
+
+		cache.getGeometries(rois.subList(0, 10), null, null);
+		assertEquals(10, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+
+		// Access the first ROI, so that it isn't the least recently used
+		cache.getGeometry(rois.get(0));
+		for (Roi roi : rois.subList(10, 15))
+			cache.getGeometry(roi);
+		assertEquals(10, cache.size());
+		assertEquals(50, cache.getVertexCount());
+		assertEquals(5, cache.getEvictionCount());
+
+		cache.resetCounts();
+		cache.getGeometry(rois.get(0));
+		cache.getGeometry(rois.get(1));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// Geometries that are too large are never cached
+		RoiGeometryCache small = new RoiGeometryCache(new RoiToGeometryConverter(), 4);
+		small.getGeometry(rois.get(0));
+		assertEquals(0, small.size());
+	}
+
+}
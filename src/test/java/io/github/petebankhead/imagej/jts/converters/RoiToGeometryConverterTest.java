@@ -3,17 +3,23 @@ package io.github.petebankhead.imagej.jts.converters;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryComponentFilter;
+import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.Lineal;
+import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygonal;
 import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -107,6 +113,76 @@ class RoiToGeometryConverterTest {
 	
 	
 	
+	@Test
+	void testParallelConversionMatchesSequential() {
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			rois.addAll(createRois());
+		}
+		RoiToGeometryConverter converter = new RoiToGeometryConverter();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Geometry> geometries = converter.roisToGeometries(rois, pool, null);
+			assertEquals(rois.size(), geometries.size());
+			for (int i = 0; i < rois.size(); i++) {
+				assertTrue(converter.roiToGeometry(rois.get(i)).equalsExact(geometries.get(i)));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	
+	@Test
+	void testPolygonMatchesShapeRoiConversion() {
+		RoiToGeometryConverter converter = new RoiToGeometryConverter();
+		int n = 1000;
+		float[] x = new float[n];
+		float[] y = new float[n];
+		for (int i = 0; i < n; i++) {
+			double theta = 2 * Math.PI * i / n;
+			double r = 100 + 20 * Math.sin(theta * 7);
+			x[i] = (float)(200 + r * Math.cos(theta));
+			y[i] = (float)(150 + r * Math.sin(theta));
+		}
+		for (int type : new int[] {Roi.POLYGON, Roi.FREEROI}) {
+			Roi roi = new PolygonRoi(x, y, type);
+			Geometry polygon = converter.roiToGeometry(roi);
+			Geometry viaShape = converter.shapeRoiToGeometry(roi);
+			assertTrue(polygon.isValid());
+			assertEquals(viaShape.getArea(), polygon.getArea(), 0.01);
+			assertEquals(0.0, polygon.symDifference(viaShape).getArea(), 0.01);
+		}
+	}
+	
+	@Test
+	void testSelfIntersectingPolygon() {
+		RoiToGeometryConverter converter = new RoiToGeometryConverter();
+		Roi roi = new PolygonRoi(
+				new float[] {0, 10, 0, 10},
+				new float[] {0, 0, 10, 10},
+				Roi.POLYGON
+				);
+		Geometry geom = converter.roiToGeometry(roi);
+		assertTrue(geom.isValid());
+		assertEquals(2, geom.getNumGeometries());
+		assertEquals(50.0, geom.getArea(), 0.01);
+	}
+	
+	
+	@ParameterizedTest
+	@MethodSource("createRois")
+	void testPackedCoordinates(Roi roi) {
+		Geometry geom = new RoiToGeometryConverter().roiToGeometry(roi);
+		geom.apply((GeometryComponentFilter)g -> {
+			if (g instanceof LineString)
+				assertTrue(((LineString)g).getCoordinateSequence() instanceof PackedCoordinateSequence);
+			else if (g instanceof Point)
+				assertTrue(((Point)g).getCoordinateSequence() instanceof PackedCoordinateSequence);
+		});
+	}
+	
+	
 	static List<Roi> createRois() {
 		return Arrays.asList(
 				new Roi(10, 20, 40, 50),
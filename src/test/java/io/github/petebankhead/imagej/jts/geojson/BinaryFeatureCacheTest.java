@@ -0,0 +1,133 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import ij.gui.EllipseRoi;
+import ij.gui.OvalRoi;
+import ij.gui.PointRoi;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+import ij.gui.ShapeRoi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+class BinaryFeatureCacheTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testRoundTrip() throws IOException {
+		ShapeRoi donut = new ShapeRoi(new OvalRoi(0, 0, 100, 100)).not(new ShapeRoi(new OvalRoi(25, 25, 50, 50)));
+		List<Roi> rois = Arrays.asList(
+				new Roi(10.5, 20, 30, 40),
+				new EllipseRoi(10, 20, 40, 50, 0.6),
+				new PointRoi(new float[] {1, 2, 3}, new float[] {4, 5, 6}),
+				new PolygonRoi(new float[] {1, 2.5f, 8}, new float[] {3, 4, 1}, Roi.POLYLINE),
+				donut
+				);
+		rois.get(0).setName("First");
+
+		Path source = dir.resolve("rois.geojson");
+		Path cache = BinaryFeatureFormat.getCachePath(source);
+		List<Feature> features = RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+
+		try (BinaryFeatureWriter cacheWriter = BinaryFeatureWriter.create(cache, source);
+				GeoJsonWriter writer = GeoJsonWriter.create(Files.newBufferedWriter(source))) {
+			writer.beginFeatureCollection();
+			for (Feature feature : features) {
+				writer.writeFeature(feature);
+				cacheWriter.writeFeature(feature);
+			}
+			writer.writeFeature(null, null);
+			cacheWriter.writeFeature(null, null);
+			writer.endFeatureCollection();
+		}
+		assertTrue(BinaryFeatureFormat.hasValidCache(source));
+
+		List<Feature> cached = new ArrayList<>();
+		try (BinaryFeatureReader reader = BinaryFeatureReader.open(cache)) {
+			assertEquals(features.size() + 1, reader.getFeatureCount());
+			reader.forEachRemaining(cached::add);
+		}
+		assertEquals(features.size() + 1, cached.size());
+		for (int i = 0; i < features.size(); i++) {
+			Geometry expected = features.get(i).getGeometry();
+			Geometry actual = cached.get(i).getGeometry();
+			assertEquals(expected.getGeometryType(), actual.getGeometryType());
+			assertTrue(expected.equalsExact(actual, 1e-4));
+		}
+		assertNull(cached.get(features.size()).getGeometry());
+		assertTrue(cached.get(features.size()).getProperties().isEmpty());
+
+		Map<?, ?> imagej = (Map<?, ?>)cached.get(0).getProperties().get("imagej");
+		assertEquals("First", imagej.get("name"));
+
+		// Changing the source should invalidate the cache
+		Files.write(source, "{}".getBytes());
+		assertFalse(BinaryFeatureFormat.hasValidCache(source));
+	}
+
+	@Test
+	void testMultipleRegions() throws IOException {
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+			rois.add(new OvalRoi(i, i * 2, 10, 20));
+		List<Feature> features = RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+		Path source = dir.resolve("rois.geojson");
+		Files.write(source, "{}".getBytes());
+		Path cache = BinaryFeatureFormat.getCachePath(source);
+		try (BinaryFeatureWriter cacheWriter = BinaryFeatureWriter.create(cache, source)) {
+			for (Feature feature : features)
+				cacheWriter.writeFeature(feature);
+		}
+
+		// Read small regions, so that records often cross region boundaries
+		int maxRegionSize = 4096;
+		assertTrue(Files.size(cache) > maxRegionSize * 10);
+		List<Feature> cached = new ArrayList<>();
+		try (BinaryFeatureReader reader = new BinaryFeatureReader(cache, maxRegionSize)) {
+			reader.forEachRemaining(cached::add);
+		}
+		assertEquals(features.size(), cached.size());
+		for (int i = 0; i < features.size(); i++)
+			assertTrue(features.get(i).getGeometry().equalsExact(cached.get(i).getGeometry(), 1e-4));
+
+		cached.clear();
+		try (BinaryFeatureReader reader = new BinaryFeatureReader(cache, maxRegionSize)) {
+			reader.region(new Envelope(500.5, 509.5, 0, 10_000)).forEachRemaining(cached::add);
+		}
+		assertEquals(19, cached.size());
+
+		// Records must fit within a region
+		assertThrows(UncheckedIOException.class, () -> {
+			try (BinaryFeatureReader reader = new BinaryFeatureReader(cache, 64)) {
+				reader.forEachRemaining(f -> {});
+			}
+		});
+	}
+
+	@Test
+	void testIncompleteCache() throws IOException {
+		Path source = dir.resolve("rois.geojson");
+		Files.write(source, "{}".getBytes());
+		Path cache = BinaryFeatureFormat.getCachePath(source);
+		Files.write(cache, new byte[8]);
+		assertFalse(BinaryFeatureFormat.hasValidCache(source));
+		assertThrows(IOException.class, () -> BinaryFeatureReader.open(cache));
+	}
+
+}
@@ -0,0 +1,75 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DoubleFormatterTest {
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 2, 3, 4, 6})
+	void testDecimalPlaces(int numDecimalPlaces) {
+		DoubleFormatter formatter = DoubleFormatter.createWithDecimalPlaces(numDecimalPlaces);
+		Random rand = new Random(100L);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10_000; i++) {
+			double value = (rand.nextDouble() - 0.5) * Math.pow(10, rand.nextInt(8));
+			sb.setLength(0);
+			assertEquals(roundExact(value, numDecimalPlaces), formatter.append(sb, value).toString());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 2, 3, 4, 6})
+	void testTies(int numDecimalPlaces) {
+		// Values at or next to ties, where rounding the scaled double can give the wrong result
+		DoubleFormatter formatter = DoubleFormatter.createWithDecimalPlaces(numDecimalPlaces);
+		Random rand = new Random(100L);
+		for (int i = 0; i < 10_000; i++) {
+			double tie = (rand.nextInt(200_000) - 100_000 + 0.5) / Math.pow(10, numDecimalPlaces);
+			for (double value : new double[] {tie, Math.nextUp(tie), Math.nextDown(tie)})
+				assertEquals(roundExact(value, numDecimalPlaces), formatter.format(value));
+		}
+	}
+
+	private static String roundExact(double value, int numDecimalPlaces) {
+		BigDecimal rounded = new BigDecimal(value).setScale(numDecimalPlaces, RoundingMode.HALF_EVEN);
+		return rounded.signum() == 0 ? "0" : rounded.stripTrailingZeros().toPlainString();
+	}
+
+	@Test
+	void testSpecialValues() {
+		DoubleFormatter formatter = DoubleFormatter.createWithDecimalPlaces(3);
+		assertEquals("0", formatter.format(0.0));
+		assertEquals("0", formatter.format(-0.0001));
+		assertEquals("10", formatter.format(10.0));
+		assertEquals("-2.5", formatter.format(-2.5));
+		assertEquals("0.001", formatter.format(0.001));
+		// The nearest double to 0.0005 is slightly above the tie
+		assertEquals("0.001", formatter.format(0.0005));
+		assertEquals("0.003", formatter.format(0.0025));
+		assertEquals("0.12", DoubleFormatter.createWithDecimalPlaces(2).format(0.125));
+		assertEquals("1", DoubleFormatter.createWithDecimalPlaces(2).format(1.005));
+		assertEquals("NaN", formatter.format(Double.NaN));
+		assertEquals("-Infinity", formatter.format(Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	void testShortestRoundTrip() {
+		DoubleFormatter formatter = DoubleFormatter.createShortestRoundTrip();
+		Random rand = new Random(100L);
+		for (int i = 0; i < 10_000; i++) {
+			double value = (rand.nextDouble() - 0.5) * Math.pow(10, rand.nextInt(8));
+			assertEquals(value, Double.parseDouble(formatter.format(value)));
+		}
+		assertEquals("12", formatter.format(12.0));
+		assertEquals("0.1", formatter.format(0.1));
+	}
+
+}
@@ -0,0 +1,96 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import ij.gui.OvalRoi;
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+class FeatureFilterTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Create a 10x10 grid of 10x10 pixel squares, with the position set from the column.
+	 * @return
+	 */
+	private static List<Feature> createGrid() {
+		List<Roi> rois = new ArrayList<>();
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 10; x++) {
+				Roi roi = new Roi(x * 10, y * 10, 10, 10);
+				roi.setPosition(1, 1, x % 2 + 1);
+				rois.add(roi);
+			}
+		}
+		return RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+	}
+
+	private static long count(List<Feature> features, FeatureFilter filter) {
+		return features.stream().filter(filter).count();
+	}
+
+	@Test
+	void testFilter() {
+		List<Feature> features = createGrid();
+		assertEquals(100, count(features, FeatureFilter.create()));
+
+		// Boundaries touch, so count as intersecting
+		assertEquals(9, count(features, FeatureFilter.create().region(new Envelope(10, 20, 10, 20))));
+		assertEquals(1, count(features, FeatureFilter.create().region(new Envelope(12, 18, 12, 18))));
+		assertEquals(0, count(features, FeatureFilter.create().region(new Envelope(200, 300, 0, 100))));
+
+		// The circle's envelope intersects the corner squares, but the circle itself doesn't
+		Geometry circle = RoiToGeometryConverter.convertToGeometry(new OvalRoi(11, 11, 78, 78));
+		assertEquals(64, count(features, FeatureFilter.create().region(circle.getEnvelopeInternal())));
+		assertEquals(60, count(features, FeatureFilter.create().region(circle)));
+
+		assertEquals(50, count(features, FeatureFilter.create().plane(0, 0, 1)));
+		assertEquals(100, count(features, FeatureFilter.create().plane(0, -1, -1)));
+		assertEquals(0, count(features, FeatureFilter.create().plane(1, -1, -1)));
+		assertEquals(5, count(features, FeatureFilter.create().plane(-1, -1, 0).region(new Envelope(0, 100, 0, 5))));
+
+		// Features without a plane belong to every plane
+		assertTrue(FeatureFilter.create().plane(2, 3, 4).test(Feature.create(features.get(0).getGeometry())));
+	}
+
+	@Test
+	void testBinaryReaderRegion() throws IOException {
+		List<Feature> features = createGrid();
+		Path source = dir.resolve("grid.geojson");
+		Path cache = BinaryFeatureFormat.getCachePath(source);
+		try (BinaryFeatureWriter cacheWriter = BinaryFeatureWriter.create(cache, source)) {
+			Files.createFile(source);
+			for (Feature feature : features)
+				cacheWriter.writeFeature(feature);
+			cacheWriter.writeFeature(null, null);
+		}
+
+		FeatureFilter filter = FeatureFilter.create()
+				.region(new Envelope(12, 28, 0, 5))
+				.plane(-1, -1, 1);
+		List<Feature> filtered = new ArrayList<>();
+		try (FeatureReader reader = BinaryFeatureReader.open(cache).filter(filter)) {
+			reader.forEachRemaining(filtered::add);
+		}
+		assertEquals(1, filtered.size());
+		assertEquals(new Envelope(10, 20, 0, 10), filtered.get(0).getGeometry().getEnvelopeInternal());
+
+		try (BinaryFeatureReader reader = BinaryFeatureReader.open(cache).region(new Envelope(0, 100, 95, 200))) {
+			assertEquals(10, reader.stream().count());
+		}
+	}
+
+}
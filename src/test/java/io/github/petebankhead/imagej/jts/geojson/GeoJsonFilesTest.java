@@ -0,0 +1,172 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+class GeoJsonFilesTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testCompressedRoundTrip() throws IOException {
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+			rois.add(new Roi(i, i * 2, 10, 20));
+		List<Feature> features = RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+
+		Path compressed = dir.resolve("rois.geojson.gz");
+		Path plain = dir.resolve("rois.geojson");
+		write(GeoJsonFiles.newWriter(compressed), features);
+		write(GeoJsonFiles.newWriter(plain), features);
+
+		assertTrue(GeoJsonFiles.isGzipped(compressed));
+		assertFalse(GeoJsonFiles.isGzipped(plain));
+		assertTrue(Files.size(compressed) < Files.size(plain) / 4);
+
+		List<Feature> read = read(compressed);
+		assertEquals(features.size(), read.size());
+		for (int i = 0; i < features.size(); i++)
+			assertTrue(features.get(i).getGeometry().equalsExact(read.get(i).getGeometry()));
+		assertEquals(features.size(), read(plain).size());
+	}
+
+	@Test
+	void testDetectByContent() throws IOException {
+		// Compression is detected from the content, not the extension
+		Path compressed = dir.resolve("compressed.geojson");
+		Path plain = dir.resolve("plain.geojson.gz");
+		List<Feature> features = RoiToGeometryConverter.convertToFeatureCollection(
+				Collections.singletonList(new Roi(1, 2, 3, 4))).getFeatures();
+		write(GeoJsonFiles.newWriter(compressed, GeoJsonFiles.BEST_COMPRESSION), features);
+		write(GeoJsonFiles.newWriter(plain, GeoJsonFiles.NO_COMPRESSION), features);
+
+		assertTrue(GeoJsonFiles.isGzipped(compressed));
+		assertFalse(GeoJsonFiles.isGzipped(plain));
+		assertEquals(1, read(compressed).size());
+		assertEquals(1, read(plain).size());
+
+		assertThrows(IllegalArgumentException.class, () -> GeoJsonFiles.newWriter(dir.resolve("invalid.geojson"), 10));
+	}
+
+	@Test
+	void testProgressAndCancel() throws IOException {
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < 50_000; i++)
+			rois.add(new Roi(i, i * 2, 10, 20));
+		Path path = dir.resolve("rois.geojson");
+		write(GeoJsonFiles.newWriter(path), RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures());
+		assertTrue(Files.size(path) > 2 << 20);
+
+		AtomicInteger lastCompleted = new AtomicInteger(-1);
+		AtomicInteger lastTotal = new AtomicInteger();
+		ProgressMonitor monitor = (completed, total) -> {
+			assertTrue(completed > lastCompleted.get());
+			lastCompleted.set(completed);
+			lastTotal.set(total);
+		};
+		try (Reader reader = GeoJsonFiles.newReader(path, monitor)) {
+			GeoJsonReader.readFeatures(reader, f -> {});
+		}
+		assertEquals(Files.size(path) >> 10, lastTotal.get());
+		assertTrue(lastCompleted.get() > lastTotal.get() / 2);
+
+		ProgressMonitor cancelled = new ProgressMonitor() {
+			@Override
+			public void updateProgress(int completed, int total) {}
+
+			@Override
+			public boolean isCancelled() {
+				return true;
+			}
+		};
+		assertThrows(CancellationException.class, () -> {
+			try (Reader reader = GeoJsonFiles.newReader(path, cancelled)) {
+				GeoJsonReader.readFeatures(reader, f -> {});
+			}
+		});
+	}
+
+	@Test
+	void testPipelinedOutputStream() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] expected = new byte[100_000];
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = (byte)(i * 31);
+		try (OutputStream stream = new PipelinedOutputStream(bytes, 1000, 2, "test")) {
+			stream.write(expected, 0, 50_001);
+			for (int i = 50_001; i < expected.length; i++)
+				stream.write(expected[i]);
+		}
+		assertArrayEquals(expected, bytes.toByteArray());
+
+		// Exceptions on the background thread are passed back to the writing thread
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Failed");
+			}
+		};
+		assertThrows(IOException.class, () -> {
+			try (OutputStream stream = new PipelinedOutputStream(failing, 10, 1, "test")) {
+				for (int i = 0; i < 1000; i++)
+					stream.write(i);
+			}
+		});
+
+		// Including unchecked exceptions, which mustn't leave the writing thread blocked
+		OutputStream throwing = new OutputStream() {
+			@Override
+			public void write(int b) {
+				throw new IllegalStateException("Failed");
+			}
+		};
+		IOException e = assertThrows(IOException.class, () -> {
+			try (OutputStream stream = new PipelinedOutputStream(throwing, 10, 1, "test")) {
+				for (int i = 0; i < 1000; i++)
+					stream.write(i);
+			}
+		});
+		Throwable cause = e;
+		while (cause.getCause() != null)
+			cause = cause.getCause();
+		assertTrue(cause instanceof IllegalStateException);
+	}
+
+	private static void write(Writer writer, List<Feature> features) throws IOException {
+		try (GeoJsonWriter geoJsonWriter = GeoJsonWriter.create(writer, false)) {
+			geoJsonWriter.beginFeatureCollection();
+			for (Feature feature : features)
+				geoJsonWriter.writeFeature(feature);
+			geoJsonWriter.endFeatureCollection();
+		}
+	}
+
+	private static List<Feature> read(Path path) throws IOException {
+		List<Feature> features = new ArrayList<>();
+		try (Reader reader = GeoJsonFiles.newReader(path)) {
+			GeoJsonReader.readFeatures(reader, features::add);
+		}
+		return features;
+	}
+
+}
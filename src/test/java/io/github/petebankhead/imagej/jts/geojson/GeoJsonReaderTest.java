@@ -0,0 +1,138 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+import com.google.gson.Gson;
+
+import ij.gui.OvalRoi;
+import ij.gui.PointRoi;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+class GeoJsonReaderTest {
+
+	@Test
+	void testReadFeatureCollection() throws IOException {
+		List<Roi> rois = new ArrayList<>();
+		rois.add(new Roi(10, 20, 30, 40));
+		rois.add(new OvalRoi(5, 5, 20, 10));
+		rois.add(new PointRoi(3, 4));
+		rois.add(new PolygonRoi(new float[] {1, 2}, new float[] {3, 4}, Roi.POLYLINE));
+
+		FeatureCollection collection = RoiToGeometryConverter.convertToFeatureCollection(rois);
+		Gson gson = GsonUtils.newBuilder().create();
+		String json = gson.toJson(collection);
+
+		List<Feature> features = new ArrayList<>();
+		GeoJsonReader.readFeatures(new StringReader(json), features::add);
+
+		assertEquals(rois.size(), features.size());
+		for (int i = 0; i < rois.size(); i++) {
+			Geometry expected = collection.getFeatures().get(i).getGeometry();
+			Geometry actual = features.get(i).getGeometry();
+			assertEquals(expected.getGeometryType(), actual.getGeometryType());
+			assertEquals(expected.getNumPoints(), actual.getNumPoints());
+			assertTrue(expected.equalsExact(actual, 0.001));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void testStreamingRoundTrip(boolean prettyPrint) throws IOException {
+		int n = 100;
+		StringWriter stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(stringWriter, prettyPrint)) {
+			writer.beginFeatureCollection();
+			for (int i = 0; i < n; i++) {
+				Roi roi = new Roi(i, i * 2, 10, 5);
+				roi.setName("Roi " + i);
+				writer.writeFeature(RoiToGeometryConverter.convertToFeature(roi));
+			}
+			writer.endFeatureCollection();
+		}
+		String json = stringWriter.toString();
+		assertEquals(prettyPrint, json.contains("\n"));
+
+		List<Feature> features = new ArrayList<>();
+		GeoJsonReader.readFeatures(new StringReader(json), features::add);
+		assertEquals(n, features.size());
+		for (int i = 0; i < n; i++) {
+			Feature feature = features.get(i);
+			assertEquals(50.0, feature.getGeometry().getArea(), 1e-6);
+			Map<?, ?> imagej = (Map<?, ?>)feature.getProperties().get("imagej");
+			assertEquals("Roi " + i, imagej.get("name"));
+		}
+	}
+
+	@Test
+	void testUnfinishedFeatureCollection() throws IOException {
+		// Closing without ending the collection should not give valid GeoJSON with fewer features
+		StringWriter stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(stringWriter)) {
+			writer.beginFeatureCollection();
+			writer.writeFeature(RoiToGeometryConverter.convertToFeature(new Roi(0, 0, 10, 10)));
+		}
+		String json = stringWriter.toString();
+		assertThrows(IOException.class, () -> GeoJsonReader.readFeatures(new StringReader(json), f -> {}));
+	}
+
+	@Test
+	void testFieldOrderAndPlane() {
+		String json = "{\"features\": ["
+				+ "{\"properties\": {\"name\": \"first\"}, "
+				+ "\"geometry\": {\"coordinates\": [[[0, 0], [10, 0], [10, 10], [0, 0]]], \"plane\": {\"c\": 1, \"z\": 0, \"t\": 2}, \"type\": \"Polygon\"}, "
+				+ "\"type\": \"Feature\"},"
+				+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1.5, 2.5]}}"
+				+ "], \"type\": \"FeatureCollection\"}";
+
+		List<Feature> features;
+		try (GeoJsonReader reader = GeoJsonReader.create(new StringReader(json))) {
+			features = reader.stream().collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+
+		assertEquals(2, features.size());
+
+		Feature first = features.get(0);
+		assertTrue(first.getGeometry() instanceof Polygon);
+		assertEquals(4, first.getGeometry().getNumPoints());
+		assertEquals("first", first.getProperties().get("name"));
+		Map<?, ?> plane = (Map<?, ?>)first.getProperties().get("plane");
+		assertEquals(2.0, ((Number)plane.get("t")).doubleValue());
+
+		Feature second = features.get(1);
+		assertEquals(1.5, second.getGeometry().getCoordinate().x);
+		assertEquals(2.5, second.getGeometry().getCoordinate().y);
+	}
+
+	@Test
+	void testReadGeometry() throws IOException {
+		String json = "{\"type\": \"MultiPolygon\", \"coordinates\": ["
+				+ "[[[0, 0], [10, 0], [10, 10], [0, 0]]], "
+				+ "[[[20, 20], [30, 20], [30, 30], [20, 20]], [[21, 21], [22, 21], [22, 22], [21, 21]]]"
+				+ "]}";
+		List<Feature> features = new ArrayList<>();
+		GeoJsonReader.readFeatures(new StringReader(json), features::add);
+		assertEquals(1, features.size());
+		Geometry geometry = features.get(0).getGeometry();
+		assertEquals(2, geometry.getNumGeometries());
+		assertEquals(1, ((Polygon)geometry.getGeometryN(1)).getNumInteriorRing());
+	}
+
+}
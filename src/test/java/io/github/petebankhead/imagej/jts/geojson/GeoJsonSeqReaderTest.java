@@ -0,0 +1,166 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+class GeoJsonSeqReaderTest {
+
+	@TempDir
+	Path dir;
+
+	private static List<Feature> createFeatures(int n) {
+		List<Roi> rois = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			Roi roi = new Roi(i, i * 2, 10, 20);
+			roi.setName("Roi " + i);
+			rois.add(roi);
+		}
+		return RoiToGeometryConverter.convertToFeatureCollection(rois).getFeatures();
+	}
+
+	@Test
+	void testWriteSequence() throws IOException {
+		List<Feature> features = createFeatures(3);
+		StringWriter stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(stringWriter, true)) {
+			writer.beginSequence(false);
+			for (Feature feature : features)
+				writer.writeFeature(feature);
+			writer.writeRawFeature(GeoJsonWriter.toJson(features.get(0)));
+			writer.endSequence();
+		}
+		String[] lines = stringWriter.toString().split("\n");
+		assertEquals(4, lines.length);
+		assertEquals(lines[0], lines[3]);
+		assertTrue(lines[1].startsWith("{\"type\":\"Feature\""));
+
+		stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(stringWriter)) {
+			writer.beginSequence(true);
+			writer.writeFeature(features.get(0));
+		}
+		assertEquals(RecordSeparatorReader.RECORD_SEPARATOR + lines[0] + "\n", stringWriter.toString());
+
+		// An empty sequence is valid
+		stringWriter = new StringWriter();
+		try (GeoJsonWriter writer = GeoJsonWriter.create(stringWriter)) {
+			writer.beginSequence(false);
+		}
+		assertEquals("", stringWriter.toString());
+	}
+
+	@Test
+	void testReadSequence() throws IOException {
+		String json = "\u001e{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}, \"properties\": {}}\n" +
+				"\u001e{\"type\": \"Point\", \"coordinates\": [3, 4]}\n" +
+				"\n" +
+				"{\"type\": \"FeatureCollection\", \"features\": [" +
+				"{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [5, 6]}, \"properties\": {}}," +
+				"{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [7, 8]}, \"properties\": {}}]}\n";
+		List<Feature> features = new ArrayList<>();
+		try (GeoJsonReader reader = GeoJsonReader.createSequence(new StringReader(json))) {
+			reader.forEachRemaining(features::add);
+		}
+		assertEquals(4, features.size());
+		for (int i = 0; i < 4; i++)
+			assertEquals(i * 2 + 1, features.get(i).getGeometry().getCoordinate().x, 1e-6);
+
+		try (GeoJsonReader reader = GeoJsonReader.createSequence(new StringReader("  \n"))) {
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	void testParallelRead(boolean recordSeparator) throws IOException {
+		List<Feature> features = createFeatures(2000);
+		Path path = dir.resolve(recordSeparator ? "features.geojsons" : "features.geojsonl");
+		try (GeoJsonWriter writer = GeoJsonWriter.create(GeoJsonFiles.newWriter(path))) {
+			writer.beginSequence(GeoJsonFiles.isTextSequencePath(path));
+			for (Feature feature : features)
+				writer.writeFeature(feature);
+			writer.endSequence();
+		}
+		assertTrue(GeoJsonFiles.isSequence(path));
+		assertEquals(recordSeparator, GeoJsonFiles.isTextSequencePath(path));
+
+		// Use small chunks, so that the file is split many times
+		List<Feature> read = new ArrayList<>();
+		try (FeatureReader reader = new GeoJsonSeqReader(path, 1000, new ForkJoinPool(4))) {
+			reader.forEachRemaining(read::add);
+		}
+		assertSameFeatures(features, read);
+
+		read.clear();
+		try (FeatureReader reader = GeoJsonSeqReader.open(path)) {
+			reader.forEachRemaining(read::add);
+		}
+		assertSameFeatures(features, read);
+	}
+
+	@Test
+	void testMultilineRecords() throws IOException {
+		// Text sequences may contain pretty-printed records, so chunks mustn't be split at line breaks
+		List<Feature> features = createFeatures(500);
+		StringBuilder sb = new StringBuilder();
+		for (Feature feature : features) {
+			sb.append(RecordSeparatorReader.RECORD_SEPARATOR);
+			sb.append(GeoJsonWriter.toJson(feature).replace(",", ",\n  "));
+			sb.append("\n");
+		}
+		Path path = dir.resolve("features.geojsons");
+		Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+		assertTrue(Files.size(path) > 10 * 1000);
+
+		List<Feature> read = new ArrayList<>();
+		try (FeatureReader reader = new GeoJsonSeqReader(path, 1000, new ForkJoinPool(4))) {
+			reader.forEachRemaining(read::add);
+		}
+		assertSameFeatures(features, read);
+	}
+
+	@Test
+	void testCompressed() throws IOException {
+		List<Feature> features = createFeatures(100);
+		Path path = dir.resolve("features.geojsonl.gz");
+		try (GeoJsonWriter writer = GeoJsonWriter.create(GeoJsonFiles.newWriter(path))) {
+			writer.beginSequence(false);
+			for (Feature feature : features)
+				writer.writeFeature(feature);
+		}
+		assertTrue(GeoJsonFiles.isGzipped(path));
+		assertTrue(GeoJsonFiles.isSequence(path));
+		List<Feature> read = new ArrayList<>();
+		try (FeatureReader reader = GeoJsonSeqReader.open(path)) {
+			reader.forEachRemaining(read::add);
+		}
+		assertSameFeatures(features, read);
+		assertFalse(GeoJsonFiles.isSequence(Files.write(dir.resolve("single.geojson"), "{}".getBytes())));
+	}
+
+	private static void assertSameFeatures(List<Feature> expected, List<Feature> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(expected.get(i).getGeometry().equalsExact(actual.get(i).getGeometry()));
+			assertEquals(expected.get(i).getProperties(), actual.get(i).getProperties());
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package io.github.petebankhead.imagej.jts.geojson;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+class LazyPropertiesTest {
+
+	private static final String PROPERTIES = "{\"name\": \"A \\\"quoted\\\" name}\", \"Area\": 1.5e3, "
+			+ "\"list\": [1, {\"x\": \"]}\"}], \"nested\": {\"a\": []}, \"flag\": true, \"missing\": null, "
+			+ "\"escaped\\u0041\": 2}";
+
+	@Test
+	void testDecoding() {
+		LazyProperties properties = LazyProperties.of(PROPERTIES);
+		assertEquals("A \"quoted\" name}", properties.get("name"));
+		assertEquals(1500.0, properties.get("Area"));
+		assertEquals(Boolean.TRUE, properties.get("flag"));
+		assertTrue(properties.containsKey("missing"));
+		assertNull(properties.get("missing"));
+		assertEquals(2.0, properties.get("escapedA"));
+		assertNull(properties.get("other"));
+		assertFalse(properties.containsKey("other"));
+		assertEquals(7, properties.size());
+
+		// Values match those decoded by Gson
+		Map<?, ?> expected = new Gson().fromJson(PROPERTIES, Map.class);
+		assertEquals(expected, properties);
+		assertEquals(new LinkedHashMap<>(expected), new LinkedHashMap<>(properties));
+
+		assertThrows(UnsupportedOperationException.class, () -> properties.put("name", "changed"));
+		assertTrue(LazyProperties.of(" { } ").isEmpty());
+
+		// Duplicate keys behave as for a map, with the last value kept
+		LazyProperties duplicates = LazyProperties.of("{\"a\": 1, \"b\": 2, \"a\": 3}");
+		assertEquals(3.0, duplicates.get("a"));
+		assertEquals(2, duplicates.size());
+	}
+
+	@Test
+	void testReadAndWrite() throws IOException {
+		String json = "{\"type\": \"FeatureCollection\", \"features\": ["
+				+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}, \"properties\": " + PROPERTIES + "},"
+				+ "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 4], \"plane\": {\"c\": 0, \"z\": 1, \"t\": 0}}, "
+				+ "\"properties\": {\"name\": \"second\", \"Perimeter\": 12.5}}"
+				+ "]}";
+
+		List<Feature> features = readFeatures(json, null);
+		assertEquals(2, features.size());
+		assertTrue(features.get(0).getProperties() instanceof LazyProperties);
+		assertEquals(new Gson().fromJson(PROPERTIES, Map.class), features.get(0).getProperties());
+		Map<?, ?> plane = (Map<?, ?>)features.get(1).getProperties().get("plane");
+		assertEquals(1.0, ((Number)plane.get("z")).doubleValue());
+
+		// Properties are copied unchanged when written
+		StringWriter writer = new StringWriter();
+		try (GeoJsonWriter geoJsonWriter = GeoJsonWriter.create(writer, false)) {
+			geoJsonWriter.beginFeatureCollection();
+			for (Feature feature : features)
+				geoJsonWriter.writeFeature(feature);
+			geoJsonWriter.endFeatureCollection();
+		}
+		List<Feature> features2 = readFeatures(writer.toString(), null);
+		assertEquals(features.get(0).getProperties(), features2.get(0).getProperties());
+		assertEquals(features.get(1).getProperties(), features2.get(1).getProperties());
+
+		// Only the requested properties are kept
+		List<Feature> projected = readFeatures(json, Arrays.asList("name", "plane"));
+		assertEquals(1, projected.get(0).getProperties().size());
+		assertEquals("A \"quoted\" name}", projected.get(0).getProperties().get("name"));
+		assertEquals(2, projected.get(1).getProperties().size());
+		assertNotNull(projected.get(1).getProperties().get("plane"));
+		assertTrue(readFeatures(json, Arrays.asList("Area")).get(1).getProperties().isEmpty());
+	}
+
+	private static List<Feature> readFeatures(String json, List<String> keepProperties) throws IOException {
+		try (GeoJsonReader reader = GeoJsonReader.create(new StringReader(json)).keepProperties(keepProperties)) {
+			return reader.stream().collect(Collectors.toList());
+		}
+	}
+
+}
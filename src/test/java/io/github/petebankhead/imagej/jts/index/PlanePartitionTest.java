@@ -0,0 +1,94 @@
+package io.github.petebankhead.imagej.jts.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+import io.github.petebankhead.imagej.jts.geojson.Feature;
+
+class PlanePartitionTest {
+
+	/**
+	 * Create 10 ROIs on each of 4 time points, plus 5 ROIs without a position
+	 */
+	private static List<Roi> createRois() {
+		List<Roi> rois = new ArrayList<>();
+		for (int t = 1; t <= 4; t++) {
+			for (int i = 0; i < 10; i++) {
+				Roi roi = new Roi(i * 10, t * 10, 8, 8);
+				roi.setPosition(1, 1, t);
+				rois.add(roi);
+			}
+		}
+		for (int i = 0; i < 5; i++)
+			rois.add(new Roi(i * 10, 0, 8, 8));
+		return rois;
+	}
+
+	@Test
+	void testRois() {
+		List<Roi> rois = createRois();
+		PlanePartition<Roi> partition = PlanePartition.forRois();
+		partition.addAll(rois);
+		assertEquals(45, partition.size());
+		assertEquals(5, partition.getPlanes().size());
+		assertTrue(partition.getPlanes().contains(ImagePlane.ALL));
+
+		assertEquals(10, partition.get(ImagePlane.of(0, 0, 2)).size());
+		assertEquals(15, partition.getMatching(ImagePlane.of(0, 0, 2)).size());
+		assertEquals(5, partition.getMatching(ImagePlane.of(0, 0, 10)).size());
+		assertEquals(45, partition.getMatching(ImagePlane.ALL).size());
+		// Channel isn't specified, so all channels match
+		assertEquals(15, partition.getMatching(ImagePlane.of(-1, 0, 3)).size());
+
+		// Matching items are only removed once
+		assertEquals(15, partition.removeMatching(ImagePlane.of(0, 0, 0)).size());
+		assertEquals(30, partition.size());
+		assertEquals(10, partition.removeMatching(ImagePlane.of(0, 0, 1)).size());
+		assertEquals(20, partition.size());
+		assertEquals(2, partition.getPlanes().size());
+	}
+
+	@Test
+	void testFeatures() {
+		List<Feature> features = RoiToGeometryConverter.convertToFeatureCollection(createRois()).getFeatures();
+		PlanePartition<Feature> partition = PlanePartition.forFeatures();
+		partition.addAll(features);
+		assertEquals(5, partition.getPlanes().size());
+		assertEquals(15, partition.getMatching(ImagePlane.of(0, 0, 3)).size());
+
+		Roi roi = new Roi(0, 0, 10, 10);
+		roi.setPosition(3);
+		ImagePlane plane = ImagePlane.fromFeature(RoiToGeometryConverter.convertToFeature(roi));
+		assertEquals(ImagePlane.ofPosition(3), plane);
+		assertTrue(plane.matches(ImagePlane.of(0, 0, 3)));
+		assertFalse(plane.matches(ImagePlane.ofPosition(4)));
+	}
+
+	@Test
+	void testHyperstackPosition() {
+		ImagePlus imp = IJ.createHyperStack("Test", 10, 10, 2, 3, 1, 8);
+		imp.setPosition(2, 2, 1);
+		ImagePlane plane = ImagePlane.fromImage(imp);
+
+		// ImageJ shows ROIs with only a stack position at that index of a hyperstack
+		Roi roi = new Roi(0, 0, 10, 10);
+		roi.setPosition(imp.getCurrentSlice());
+		assertTrue(ImagePlane.fromRoi(roi).matches(plane));
+		roi.setPosition(1);
+		assertFalse(ImagePlane.fromRoi(roi).matches(plane));
+
+		Roi hyperstackRoi = new Roi(0, 0, 10, 10);
+		hyperstackRoi.setPosition(2, 2, 1);
+		assertTrue(ImagePlane.fromRoi(hyperstackRoi).matches(plane));
+		assertTrue(ImagePlane.fromRoi(new Roi(0, 0, 10, 10)).matches(plane));
+	}
+
+}
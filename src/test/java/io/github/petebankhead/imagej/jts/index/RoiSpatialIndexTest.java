@@ -0,0 +1,110 @@
+package io.github.petebankhead.imagej.jts.index;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import ij.gui.OvalRoi;
+import ij.gui.PointRoi;
+import ij.gui.Roi;
+
+class RoiSpatialIndexTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	/**
+	 * Create a 20x20 grid of 8x8 square ROIs, spaced 10 pixels apart
+	 */
+	private static List<Roi> createGrid() {
+		List<Roi> rois = new ArrayList<>();
+		for (int y = 0; y < 20; y++) {
+			for (int x = 0; x < 20; x++) {
+				rois.add(new Roi(x * 10, y * 10, 8, 8));
+			}
+		}
+		return rois;
+	}
+
+	@Test
+	void testQueries() {
+		List<Roi> rois = createGrid();
+		RoiSpatialIndex index = new RoiSpatialIndex();
+		index.syncWith(rois);
+		assertEquals(rois.size(), index.size());
+
+		// Region covers 2x2 squares completely, and a further 12 partially
+		Envelope region = new Envelope(5, 34, 5, 34);
+		assertEquals(4, index.queryWithin(factory.toGeometry(region)).size());
+		assertEquals(16, index.queryIntersects(factory.toGeometry(region)).size());
+		assertEquals(16, index.queryEnvelope(region).size());
+
+		List<Roi> containing = index.queryContains(factory.createPoint(new Coordinate(55, 65)));
+		assertEquals(1, containing.size());
+		assertSame(rois.get(6 * 20 + 5), containing.get(0));
+
+		List<Roi> nearest = index.queryNearest(factory.createPoint(new Coordinate(199, 199)), 3);
+		assertEquals(3, nearest.size());
+		assertSame(rois.get(rois.size() - 1), nearest.get(0));
+
+		// Results should be in the same order as the ROIs
+		List<Roi> within = index.queryWithin(factory.toGeometry(region));
+		for (int i = 1; i < within.size(); i++)
+			assertTrue(rois.indexOf(within.get(i - 1)) < rois.indexOf(within.get(i)));
+	}
+
+	@Test
+	void testIncrementalUpdates() {
+		List<Roi> rois = createGrid();
+		RoiSpatialIndex index = new RoiSpatialIndex();
+		index.syncWith(rois);
+
+		Envelope region = new Envelope(0, 19, 0, 19);
+		assertEquals(4, index.queryWithin(factory.toGeometry(region)).size());
+
+		Roi added = new OvalRoi(1, 1, 5, 5);
+		index.add(added);
+		assertEquals(5, index.queryWithin(factory.toGeometry(region)).size());
+
+		assertTrue(index.remove(rois.get(0)));
+		assertFalse(index.remove(rois.get(0)));
+		List<Roi> within = index.queryWithin(factory.toGeometry(region));
+		assertEquals(4, within.size());
+		assertFalse(within.contains(rois.get(0)));
+		assertTrue(within.contains(added));
+
+		// Moving a ROI should be detected when syncing
+		List<Roi> updated = new ArrayList<>(rois);
+		updated.get(1).setLocation(500, 500);
+		index.syncWith(updated);
+		assertEquals(rois.size(), index.size());
+		assertEquals(3, index.queryWithin(factory.toGeometry(region)).size());
+		assertEquals(1, index.queryWithin(factory.toGeometry(new Envelope(490, 520, 490, 520))).size());
+	}
+
+	@Test
+	void testEditWithinBounds() {
+		PointRoi roi = new PointRoi(new float[] {0, 20}, new float[] {0, 20});
+		RoiSpatialIndex index = new RoiSpatialIndex();
+		index.add(roi);
+		Envelope center = new Envelope(9, 11, 9, 11);
+		assertTrue(index.queryIntersects(factory.toGeometry(center)).isEmpty());
+
+		// Adding a vertex inside the bounds changes the geometry, but not the bounds
+		roi.addPoint(10, 10);
+		index.add(roi);
+		assertEquals(1, index.queryIntersects(factory.toGeometry(center)).size());
+
+		// The same should be detected when syncing
+		roi.addPoint(15, 5);
+		index.syncWith(Collections.singletonList(roi));
+		assertEquals(1, index.queryIntersects(factory.toGeometry(new Envelope(14, 16, 4, 6))).size());
+	}
+
+}
@@ -0,0 +1,70 @@
+package io.github.petebankhead.imagej.jts.labels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+class LabelRasterizerTest {
+
+	@Test
+	void testRoundTrip() {
+		int width = 64;
+		int height = 48;
+		ImageProcessor ip = new ShortProcessor(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int dx = x - 30;
+				int dy = y - 24;
+				int label = (int)Math.sqrt(dx * dx + dy * dy) / 4;
+				if ((x / 8 + y / 8) % 5 == 0)
+					label = 0;
+				ip.set(x, y, label);
+			}
+		}
+		Map<Integer, Geometry> geometries = LabelTracer.create().stripHeight(7).trace(ip);
+
+		ImageProcessor ip2 = LabelRasterizer.createLabelImage(width, height, 100);
+		LabelRasterizer.create().stripHeight(5).rasterize(geometries, ip2);
+		for (int i = 0; i < width * height; i++)
+			assertEquals(ip.get(i), ip2.get(i));
+	}
+
+	@Test
+	void testFill() {
+		GeometryFactory factory = new GeometryFactory();
+		// Pixel centres inside the first box are from 1.5 to 4.5 in x, and 0.5 to 1.5 in y
+		Geometry box = factory.toGeometry(new Envelope(1.2, 4.8, 0, 2));
+		Geometry overlapping = factory.toGeometry(new Envelope(4, 6, 1, 3));
+		Geometry line = factory.createLineString(new Coordinate[] {
+				new Coordinate(0, 0), new Coordinate(5, 5)});
+
+		ImageProcessor ip = new ShortProcessor(8, 4);
+		LabelRasterizer.create().rasterize(Arrays.asList(box, overlapping, line), new int[] {1, 2, 3}, ip);
+		assertEquals(0, ip.get(0, 0));
+		assertEquals(1, ip.get(1, 0));
+		assertEquals(1, ip.get(4, 0));
+		assertEquals(0, ip.get(5, 0));
+		// Later geometries overwrite earlier ones
+		assertEquals(2, ip.get(4, 1));
+		assertEquals(2, ip.get(5, 2));
+		assertEquals(0, ip.get(6, 2));
+		assertEquals(0, ip.get(0, 3));
+
+		assertTrue(LabelRasterizer.createLabelImage(1, 1, 70000) instanceof FloatProcessor);
+		// Float images cannot represent all larger labels exactly
+		assertTrue(LabelRasterizer.createLabelImage(1, 1, LabelRasterizer.MAX_LABEL) instanceof FloatProcessor);
+		assertThrows(IllegalArgumentException.class, () -> LabelRasterizer.createLabelImage(1, 1, LabelRasterizer.MAX_LABEL + 1));
+	}
+
+}
@@ -0,0 +1,114 @@
+package io.github.petebankhead.imagej.jts.labels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+class LabelTracerTest {
+
+	private static ImageProcessor createImage(int[][] labels) {
+		ImageProcessor ip = new ShortProcessor(labels[0].length, labels.length);
+		for (int y = 0; y < labels.length; y++) {
+			for (int x = 0; x < labels[y].length; x++)
+				ip.set(x, y, labels[y][x]);
+		}
+		return ip;
+	}
+
+	@Test
+	void testTrace() {
+		ImageProcessor ip = createImage(new int[][] {
+			{1, 1, 1, 0, 2},
+			{1, 0, 1, 2, 0},
+			{1, 1, 1, 0, 0},
+			{0, 0, 0, 3, 3}
+		});
+		Map<Integer, Geometry> geometries = LabelTracer.create().trace(ip);
+		assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(geometries.keySet()));
+
+		// Square with a hole
+		Geometry first = geometries.get(1);
+		assertTrue(first instanceof Polygon);
+		assertEquals(8, first.getArea(), 1e-6);
+		assertEquals(1, ((Polygon)first).getNumInteriorRing());
+		assertEquals(10, first.getNumPoints());
+		assertTrue(first.isValid());
+
+		// Pixels touching only diagonally are separate polygons
+		Geometry second = geometries.get(2);
+		assertTrue(second instanceof MultiPolygon);
+		assertEquals(2, second.getNumGeometries());
+		assertEquals(2, second.getArea(), 1e-6);
+		assertTrue(second.isValid());
+
+		// Only corners are kept
+		Geometry third = geometries.get(3);
+		assertEquals(2, third.getArea(), 1e-6);
+		assertEquals(5, third.getNumPoints());
+		assertEquals(3, third.getEnvelopeInternal().getMinX(), 1e-6);
+		assertEquals(4, third.getEnvelopeInternal().getMaxY(), 1e-6);
+	}
+
+	@Test
+	void testSelfTouching() {
+		// Concavity that opens only diagonally, so the boundary passes through (2, 2) twice
+		Geometry concavity = LabelTracer.create().trace(createImage(new int[][] {
+			{1, 1, 1},
+			{1, 0, 1},
+			{1, 1, 0}
+		})).get(1);
+		assertTrue(concavity.isValid());
+		assertTrue(concavity instanceof Polygon);
+		assertEquals(1, ((Polygon)concavity).getNumInteriorRing());
+		assertEquals(7, concavity.getArea(), 1e-6);
+
+		// Holes that touch diagonally
+		Geometry holes = LabelTracer.create().trace(createImage(new int[][] {
+			{1, 1, 1, 1},
+			{1, 0, 1, 1},
+			{1, 1, 0, 1},
+			{1, 1, 1, 1}
+		})).get(1);
+		assertTrue(holes.isValid());
+		assertEquals(2, ((Polygon)holes).getNumInteriorRing());
+		assertEquals(14, holes.getArea(), 1e-6);
+	}
+
+	@Test
+	void testStrips() {
+		int width = 50;
+		int height = 40;
+		ImageProcessor ip = new ShortProcessor(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// Concentric rings, plus some labels that span many rows
+				int label = Math.max(Math.abs(x - 20), Math.abs(y - 20)) / 3 + 1;
+				if (x > 42)
+					label = 20 + (x + y) % 3;
+				ip.set(x, y, label);
+			}
+		}
+		Map<Integer, Geometry> expected = LabelTracer.create().stripHeight(height).trace(ip);
+		Map<Integer, Geometry> actual = LabelTracer.create().stripHeight(1).trace(ip);
+		assertEquals(expected.keySet(), actual.keySet());
+		double totalArea = 0;
+		for (Integer label : expected.keySet()) {
+			Geometry geometry = actual.get(label);
+			assertTrue(geometry.isValid());
+			assertTrue(expected.get(label).equalsTopo(geometry));
+			totalArea += geometry.getArea();
+		}
+		assertEquals(width * height, totalArea, 1e-6);
+	}
+
+}
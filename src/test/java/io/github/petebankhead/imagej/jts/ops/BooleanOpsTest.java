@@ -0,0 +1,97 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import ij.gui.Roi;
+import io.github.petebankhead.imagej.jts.converters.RoiToGeometryConverter;
+
+class BooleanOpsTest {
+
+	private static List<Geometry> createTiles(int nx, int ny, double size) {
+		List<Roi> rois = new ArrayList<>();
+		for (int y = 0; y < ny; y++) {
+			for (int x = 0; x < nx; x++) {
+				rois.add(new Roi(x * size, y * size, size, size));
+			}
+		}
+		return RoiToGeometryConverter.convertToGeometries(rois);
+	}
+
+	@Test
+	void testUnionTiles() {
+		List<Geometry> tiles = createTiles(50, 40, 10);
+		// Shuffle, so that partitioning matters
+		Collections.shuffle(tiles);
+		Geometry union = BooleanOps.create().union(tiles);
+		assertEquals(1, union.getNumGeometries());
+		assertEquals(500 * 400, union.getArea(), 1e-6);
+		assertEquals(new Envelope(0, 500, 0, 400), union.getEnvelopeInternal());
+
+		// Disjoint parts are retained
+		Geometry other = new GeometryFactory().toGeometry(new Envelope(1000, 1010, 0, 10));
+		List<Geometry> withOther = new ArrayList<>(tiles);
+		withOther.add(other);
+		assertEquals(2, BooleanOps.create().union(withOther).getNumGeometries());
+
+		assertNull(BooleanOps.create().union(Collections.emptyList()));
+	}
+
+	@Test
+	void testIntersection() {
+		GeometryFactory factory = new GeometryFactory();
+		Geometry a = factory.toGeometry(new Envelope(0, 10, 0, 10));
+		Geometry b = factory.toGeometry(new Envelope(5, 15, 0, 10));
+		Geometry c = factory.toGeometry(new Envelope(0, 10, 8, 20));
+		Geometry d = factory.toGeometry(new Envelope(20, 30, 0, 10));
+		assertEquals(10, BooleanOps.create().intersection(Arrays.asList(a, b, c)).getArea(), 1e-6);
+		assertTrue(BooleanOps.create().intersection(Arrays.asList(a, b, c, d)).isEmpty());
+	}
+
+	@Test
+	void testDifference() {
+		List<Geometry> tiles = createTiles(10, 10, 10);
+		GeometryFactory factory = new GeometryFactory();
+		Geometry mask = factory.toGeometry(new Envelope(15, 35, 15, 35));
+
+		Geometry difference = BooleanOps.create().difference(factory.toGeometry(new Envelope(0, 200, 0, 100)), tiles);
+		assertEquals(100 * 100, difference.getArea(), 1e-6);
+
+		List<Geometry> intersected = BooleanOps.create().intersectEach(tiles, mask);
+		assertEquals(tiles.size(), intersected.size());
+		assertEquals(9, intersected.stream().filter(g -> g != null).count());
+		assertSame(tiles.get(22), intersected.get(22));
+		assertNull(intersected.get(0));
+
+		List<Geometry> subtracted = BooleanOps.create().differenceEach(tiles, mask);
+		assertEquals(99, subtracted.stream().filter(g -> g != null).count());
+		assertSame(tiles.get(0), subtracted.get(0));
+		assertEquals(75, subtracted.get(11).getArea(), 1e-6);
+	}
+
+	@Test
+	void testPartition() {
+		List<Geometry> tiles = createTiles(32, 32, 1);
+		List<List<Geometry>> partitions = BooleanOps.partition(tiles, 64);
+		assertEquals(16, partitions.size());
+		for (List<Geometry> partition : partitions) {
+			assertEquals(64, partition.size());
+			// With a Z-order curve over a regular grid, each partition should be an 8x8 block
+			Envelope envelope = new Envelope();
+			for (Geometry geometry : partition)
+				envelope.expandToInclude(geometry.getEnvelopeInternal());
+			assertEquals(64, envelope.getArea(), 1e-6);
+		}
+		assertEquals(1, BooleanOps.partition(tiles, 2000).size());
+	}
+
+}
@@ -0,0 +1,80 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import io.github.petebankhead.imagej.jts.ops.GeometrySimplifier.Method;
+
+class GeometrySimplifierTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	private static Geometry polygon(double... xy) {
+		Coordinate[] coords = new Coordinate[xy.length / 2 + 1];
+		for (int i = 0; i < xy.length / 2; i++)
+			coords[i] = new Coordinate(xy[i * 2], xy[i * 2 + 1]);
+		coords[coords.length - 1] = coords[0];
+		return factory.createPolygon(coords);
+	}
+
+	@Test
+	void testRemoveCollinear() {
+		// Square with a vertex at the midpoint of each side
+		Geometry square = polygon(0, 0, 5, 0, 10, 0, 10, 5, 10, 10, 5, 10, 0, 10, 0, 5);
+		assertEquals(9, square.getNumPoints());
+
+		GeometrySimplifier simplifier = GeometrySimplifier.create().removeCollinear(true);
+		Geometry simplified = simplifier.apply(square);
+		assertEquals(5, simplified.getNumPoints());
+		assertEquals(100, simplified.getArea(), 1e-6);
+		assertEquals(9, simplifier.getInputVertexCount());
+		assertEquals(5, simplifier.getOutputVertexCount());
+
+		simplifier.resetCounts();
+		assertEquals(0, simplifier.getInputVertexCount());
+	}
+
+	@Test
+	void testGridSize() {
+		Geometry geometry = polygon(0.1, 0.2, 10.4, -0.1, 9.8, 10.3, 0.2, 9.9);
+		Geometry snapped = GeometrySimplifier.create().gridSize(1).apply(geometry);
+		for (Coordinate c : snapped.getCoordinates()) {
+			assertEquals(Math.rint(c.x), c.x, 0.0);
+			assertEquals(Math.rint(c.y), c.y, 0.0);
+		}
+		assertEquals(100, snapped.getArea(), 1e-6);
+
+		// Snapping can make vertices collinear, which can then be removed
+		Geometry withMidpoints = polygon(0, 0, 5, 0.1, 10, 0, 10, 10, 0, 10);
+		assertEquals(5, GeometrySimplifier.create().gridSize(1).removeCollinear(true).apply(withMidpoints).getNumPoints());
+	}
+
+	@Test
+	void testSimplify() {
+		Geometry geometry = polygon(0, 0, 5, 0.4, 10, 0, 10, 10, 0, 10);
+		for (Method method : new Method[] {Method.DOUGLAS_PEUCKER, Method.TOPOLOGY_PRESERVING}) {
+			assertEquals(6, GeometrySimplifier.create().method(method, 0.2).apply(geometry).getNumPoints());
+			assertEquals(5, GeometrySimplifier.create().method(method, 0.5).apply(geometry).getNumPoints());
+		}
+		assertEquals(6, GeometrySimplifier.create().method(Method.NONE, 0.5).apply(geometry).getNumPoints());
+	}
+
+	@Test
+	void testSettings() {
+		assertTrue(GeometrySimplifier.create().isIdentity());
+		assertTrue(GeometrySimplifier.create().method(Method.DOUGLAS_PEUCKER, 0).isIdentity());
+		assertFalse(GeometrySimplifier.create().gridSize(0.5).isIdentity());
+
+		GeometrySimplifier first = GeometrySimplifier.create().method(Method.TOPOLOGY_PRESERVING, 0.5).gridSize(0.25);
+		GeometrySimplifier second = GeometrySimplifier.create().method(Method.TOPOLOGY_PRESERVING, 0.5).gridSize(0.25);
+		first.apply(polygon(0, 0, 1, 0, 1, 1));
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+		assertNotEquals(first, second.removeCollinear(true));
+	}
+
+}
@@ -0,0 +1,92 @@
+package io.github.petebankhead.imagej.jts.ops;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import io.github.petebankhead.imagej.jts.ops.OverlapCalculator.Overlap;
+
+class OverlapCalculatorTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	private static Geometry box(double x, double y, double width, double height) {
+		return factory.toGeometry(new Envelope(x, x + width, y, y + height));
+	}
+
+	@Test
+	void testOverlaps() {
+		List<Geometry> first = Arrays.asList(
+				box(0, 0, 10, 10),
+				box(100, 100, 10, 10),
+				box(50, 50, 10, 10),
+				factory.createPoint()
+				);
+		List<Geometry> second = Arrays.asList(
+				box(5, 0, 10, 10),    // Half overlaps the first
+				box(0, 0, 5, 5),      // Inside the first
+				box(10, 0, 10, 10),   // Only touches the first
+				box(52, 52, 4, 4)     // Inside the third
+				);
+
+		List<Overlap> overlaps = OverlapCalculator.create().compute(first, second);
+		assertEquals(3, overlaps.size());
+
+		// Sorted by first index, then decreasing IoU
+		Overlap overlap = overlaps.get(0);
+		assertEquals(0, overlap.getFirstIndex());
+		assertEquals(0, overlap.getSecondIndex());
+		assertEquals(50, overlap.getIntersectionArea(), 1e-6);
+		assertEquals(50.0 / 150.0, overlap.getIoU(), 1e-6);
+
+		overlap = overlaps.get(1);
+		assertEquals(1, overlap.getSecondIndex());
+		assertEquals(25, overlap.getIntersectionArea(), 1e-6);
+		assertEquals(0.25, overlap.getIoU(), 1e-6);
+
+		overlap = overlaps.get(2);
+		assertEquals(2, overlap.getFirstIndex());
+		assertEquals(3, overlap.getSecondIndex());
+		assertEquals(0.16, overlap.getIoU(), 1e-6);
+
+		List<Overlap> best = OverlapCalculator.create().bestMatchOnly(true).compute(first, second);
+		assertEquals(2, best.size());
+		assertEquals(0, best.get(0).getSecondIndex());
+
+		assertEquals(1, OverlapCalculator.create().minIoU(0.3).compute(first, second).size());
+	}
+
+	@Test
+	void testMatchesNaive() {
+		List<Geometry> first = new ArrayList<>();
+		List<Geometry> second = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < 20; j++) {
+				first.add(box(i * 10, j * 10, 8, 8));
+				second.add(box(i * 10 + 3, j * 10 + 2, 9, 7));
+			}
+		}
+		List<Overlap> overlaps = OverlapCalculator.create().compute(first, second);
+		int count = 0;
+		for (Geometry a : first) {
+			for (Geometry b : second) {
+				if (a.intersection(b).getArea() > 0)
+					count++;
+			}
+		}
+		assertEquals(count, overlaps.size());
+		for (Overlap overlap : overlaps) {
+			Geometry a = first.get(overlap.getFirstIndex());
+			Geometry b = second.get(overlap.getSecondIndex());
+			assertEquals(a.intersection(b).getArea(), overlap.getIntersectionArea(), 1e-6);
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package io.github.petebankhead.imagej.jts.plugins;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import io.github.petebankhead.imagej.jts.geojson.GeoJsonFiles;
+import io.github.petebankhead.imagej.jts.utils.ProgressMonitor;
+
+class LabelImagePluginTest {
+
+	@TempDir
+	Path dir;
+
+	private static ImageProcessor createImage() {
+		ImageProcessor ip = new ShortProcessor(10, 8);
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 5; x++) {
+				ip.set(x, y, 1);
+				ip.set(x + 5, y + 4, 2);
+			}
+		}
+		return ip;
+	}
+
+	@Test
+	void testExportToNewFile() throws IOException {
+		// The format must be chosen from the extension, since the files don't exist yet
+		ImageProcessor ip = createImage();
+		for (String name : new String[] {"labels.geojson", "labels.geojson.gz", "labels.geojsonl", "labels.geojsons"}) {
+			Path path = dir.resolve(name);
+			assertFalse(Files.exists(path));
+			assertEquals(2, LabelImagePlugin.exportLabels(ip, path, null));
+			assertEquals(GeoJsonFiles.isSequencePath(path), GeoJsonFiles.isSequence(path));
+
+			ImagePlus imp = LabelImagePlugin.createLabelImage(path, ip.getWidth(), ip.getHeight(), null);
+			ImageProcessor ip2 = imp.getProcessor();
+			for (int i = 0; i < ip.getPixelCount(); i++)
+				assertEquals(ip.get(i), ip2.get(i));
+		}
+	}
+
+	@Test
+	void testOverwrite() throws IOException {
+		// An existing text sequence shouldn't determine the format of a new .geojson file
+		Path path = dir.resolve("labels.geojson");
+		Files.write(path, new byte[] {0x1e, '{', '}'});
+		LabelImagePlugin.exportLabels(createImage(), path, null);
+		assertFalse(GeoJsonFiles.isSequence(path));
+		assertTrue(new String(Files.readAllBytes(path), "UTF-8").contains("FeatureCollection"));
+	}
+
+	@Test
+	void testFailureDeletesFile() {
+		// An export that fails partway should not leave a file that looks complete
+		Path path = dir.resolve("labels.geojson");
+		ProgressMonitor monitor = (completed, total) -> {
+			throw new IllegalStateException("Export failed");
+		};
+		assertThrows(IllegalStateException.class, () -> LabelImagePlugin.exportLabels(createImage(), path, monitor));
+		assertFalse(Files.exists(path));
+	}
+
+}
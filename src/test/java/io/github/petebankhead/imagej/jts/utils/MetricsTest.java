@@ -0,0 +1,57 @@
+package io.github.petebankhead.imagej.jts.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+	@Test
+	void testCounters() {
+		Metrics metrics = Metrics.create("Test");
+		assertEquals(0, metrics.getCount(Metrics.FEATURES));
+
+		IntStream.range(0, 10_000).parallel().forEach(i -> {
+			metrics.increment(Metrics.FEATURES);
+			metrics.add(Metrics.VERTICES, 5);
+		});
+		assertEquals(10_000, metrics.getCount(Metrics.FEATURES));
+		assertEquals(50_000, metrics.getCount(Metrics.VERTICES));
+
+		// Counters are reported in the order they were first used
+		metrics.increment(Metrics.BYTES);
+		assertEquals(Arrays.asList(Metrics.FEATURES, Metrics.VERTICES, Metrics.BYTES), 
+				new ArrayList<>(metrics.getCounts().keySet()));
+
+		metrics.reset();
+		assertTrue(metrics.getCounts().isEmpty());
+		assertEquals(0, metrics.getCount(Metrics.FEATURES));
+	}
+
+	@Test
+	void testTimers() {
+		Metrics metrics = Metrics.create("Test");
+		metrics.recordNanos("Convert Polygon", 1_000);
+		metrics.recordNanos("Convert Polygon", 3_000);
+		metrics.recordNanos("Convert Point", 500);
+		assertEquals(2, metrics.getTimerCount("Convert Polygon"));
+		assertEquals(4_000, metrics.getTimerNanos("Convert Polygon"));
+		assertEquals(1, metrics.getTimerCount("Convert Point"));
+		assertEquals(0, metrics.getTimerCount("Convert LineString"));
+
+		// Timers aren't counters
+		assertTrue(metrics.getCounts().isEmpty());
+
+		List<String> lines = Arrays.asList(metrics.getSummary().split("\\R"));
+		assertEquals(3, lines.size());
+		assertEquals("Test", lines.get(0));
+		assertTrue(lines.get(1).contains("Convert Polygon: 2"));
+		assertTrue(lines.get(2).contains("Convert Point: 1"));
+	}
+
+}